@@ -0,0 +1,22 @@
+package ua.artcode.taxi.exception;
+
+//the client sent more requests of the method than its limit allows
+public class RateLimitedException extends TaxiAppException {
+
+    private String methodName;
+    private long retryAfterMs;
+
+    public RateLimitedException(String methodName, long retryAfterMs) {
+        super("rate limit of " + methodName + " exceeded, retry after " + retryAfterMs + " ms");
+        this.methodName = methodName;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,15 @@
+package ua.artcode.taxi.exception;
+
+public class ServerBusyException extends TaxiAppException {
+
+    private long retryAfterMs;
+
+    public ServerBusyException(long retryAfterMs) {
+        super("busy, retry after " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
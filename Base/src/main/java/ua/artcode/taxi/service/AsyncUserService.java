@@ -0,0 +1,44 @@
+package ua.artcode.taxi.service;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link UserService} which does not block the caller. Every method returns
+ * at once, the future completes with the result or exceptionally with the
+ * exception the same method of {@link UserService} throws.
+ */
+public interface AsyncUserService {
+
+    //register
+    CompletableFuture<User> registerPassenger(Map<String, String> map);
+    CompletableFuture<User> registerDriver(Map<String, String> map);
+
+    //login (return accessToken)
+    CompletableFuture<String> login(String phone, String pass);
+
+    //actions for passenger
+    CompletableFuture<Order> makeOrder(String accessToken, String lineFrom, String lineTo, String message);
+    CompletableFuture<Order> makeOrderAnonymous(String phone, String name, String from, String to, String message);
+    CompletableFuture<Map<String, Object>> calculateOrder(String lineFrom, String lineTo);
+    CompletableFuture<Order> getOrderInfo(long orderId);
+    CompletableFuture<Order> getLastOrderInfo(String accessToken);
+    CompletableFuture<Order> cancelOrder(long orderId);
+    CompletableFuture<Order> closeOrder(String accessToken, long orderId);
+
+    //actions for driver
+    CompletableFuture<Order> takeOrder(String accessToken, long orderId);
+    CompletableFuture<Map<Integer, Order>> getMapDistancesToDriver(String orderStatus, String lineAddressDriver);
+
+    //actions for all
+    CompletableFuture<User> getUser(String accessToken);
+    CompletableFuture<List<Order>> getAllOrdersUser(String accessToken);
+    CompletableFuture<List<Order>> getOrdersUserPage(String accessToken, long cursor, int pageSize);
+    CompletableFuture<List<Order>> getChangedOrdersUser(String accessToken, long sinceVersion);
+    CompletableFuture<User> updateUser(Map<String, String> map, String accessToken);
+    CompletableFuture<User> deleteUser(String accessToken);
+}
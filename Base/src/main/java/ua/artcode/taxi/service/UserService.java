@@ -40,6 +40,10 @@ public interface UserService {
     //actions for all
     User getUser(String accessToken);
     List<Order> getAllOrdersUser(String accessToken);
+    //newest first, orders older than the cursor (id of the last order of the previous page, 0 for the first)
+    List<Order> getOrdersUserPage(String accessToken, long cursor, int pageSize);
+    //orders created or changed after sinceVersion (Order.getVersion(), 0 for all), oldest change first
+    List<Order> getChangedOrdersUser(String accessToken, long sinceVersion);
     User updateUser(Map<String, String> map, String accessToken) throws RegisterException;
     User deleteUser(String accessToken);
 }
@@ -0,0 +1,120 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ua.artcode.taxi.model.Address;
+
+import java.io.IOException;
+
+public class AddressTypeAdapter extends TypeAdapter<Address> {
+
+    @Override
+    public void write(JsonWriter out, Address address) throws IOException {
+
+        if (address == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        writeString(out, "country", address.getCountry());
+        writeString(out, "city", address.getCity());
+        writeString(out, "street", address.getStreet());
+        writeString(out, "houseNum", address.getHouseNum());
+        out.name("lat").value(address.getLat());
+        out.name("lon").value(address.getLon());
+        out.endObject();
+    }
+
+    @Override
+    public Address read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Address address = new Address();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "country":
+                    address.setCountry(readString(in));
+                    break;
+                case "city":
+                    address.setCity(readString(in));
+                    break;
+                case "street":
+                    address.setStreet(readString(in));
+                    break;
+                case "houseNum":
+                    address.setHouseNum(readString(in));
+                    break;
+                case "lat":
+                    address.setLat(readDouble(in));
+                    break;
+                case "lon":
+                    address.setLon(readDouble(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return address;
+    }
+
+    //null fields are left out, the same as gson does by default
+    static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    //the adapters also read requests, a wrong value must fail as a json error and not as any other exception
+    static int readInt(JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Wrong number at " + in.getPath(), e);
+        }
+    }
+
+    static long readLong(JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Wrong number at " + in.getPath(), e);
+        }
+    }
+
+    static double readDouble(JsonReader in) throws IOException {
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Wrong number at " + in.getPath(), e);
+        }
+    }
+
+    static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        String name = in.nextString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException("Wrong " + type.getSimpleName() + " " + name + " at " + in.getPath(), e);
+        }
+    }
+}
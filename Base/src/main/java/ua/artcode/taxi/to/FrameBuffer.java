@@ -0,0 +1,29 @@
+package ua.artcode.taxi.to;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Growing byte buffer whose content is handed out without a copy.
+ */
+class FrameBuffer extends ByteArrayOutputStream {
+
+    FrameBuffer(int size) {
+        super(Math.max(size, 64));
+    }
+
+    void writeIntLE(int value) {
+        write(value);
+        write(value >>> 8);
+        write(value >>> 16);
+        write(value >>> 24);
+    }
+
+    byte[] bytes() {
+        return buf;
+    }
+
+    ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+}
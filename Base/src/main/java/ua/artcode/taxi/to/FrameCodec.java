@@ -0,0 +1,283 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes messages in one of the two framings of the protocol.
+ *
+ * line   - one json message per line, the only framing old clients know
+ * binary - 4 byte big endian payload length, 1 flags byte, utf-8 json payload
+ *          (compressed when the flags have {@link FrameCompression#FLAG_COMPRESSED})
+ *
+ * Every connection starts with lines, the binary framing is switched on by
+ * the "hello" request. A codec keeps its buffers between messages, so one
+ * instance belongs to one connection and one reading thread.
+ */
+public class FrameCodec {
+
+    public static final String FRAMING_LINE = "line";
+    public static final String FRAMING_BINARY = "binary";
+
+    public static final String HELLO = "hello";
+
+    public static final int HEADER_SIZE = 5;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    //a buffer grown for a huge message is not kept for the rest of the connection
+    private static final int MAX_KEPT_BUFFER_SIZE = 256 * 1024;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private ByteBuffer payload = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    //-1 while the header of the current frame is not complete
+    private int frameLength = -1;
+    private byte frameFlags;
+
+    //set by the hello request, null while frames are not compressed
+    private FrameCompression compression;
+
+    public static ByteBuffer encodeFrame(String message) {
+
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        frame.putInt(bytes.length);
+        frame.put((byte) 0);
+        frame.put(bytes);
+        frame.flip();
+
+        return frame;
+    }
+
+    /**
+     * Serializes the message right into the bytes that go to the socket,
+     * without building the json string first.
+     */
+    public static ByteBuffer encode(Gson gson, Object message, boolean binary) {
+
+        FrameBuffer frame = new FrameBuffer(INITIAL_BUFFER_SIZE);
+        if (binary) {
+            frame.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        }
+
+        Writer writer = new OutputStreamWriter(frame, StandardCharsets.UTF_8);
+        try {
+            gson.toJson(message, message.getClass(), writer);
+            writer.flush();
+        } catch (IOException e) {
+            //writes to memory do not fail
+            throw new IllegalStateException(e);
+        }
+
+        if (!binary) {
+            frame.write('\n');
+            return frame.toBuffer();
+        }
+
+        ByteBuffer encoded = frame.toBuffer();
+        encoded.putInt(0, frame.size() - HEADER_SIZE);
+        return encoded;
+    }
+
+    public static ByteBuffer encodeLine(String message) {
+        return ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void write(OutputStream out, String message, boolean binary) throws IOException {
+        write(out, binary ? encodeFrame(message) : encodeLine(message));
+    }
+
+    public static void write(OutputStream out, ByteBuffer encoded) throws IOException {
+        out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+        out.flush();
+    }
+
+    public void setCompression(FrameCompression compression) {
+        this.compression = compression;
+    }
+
+    // returns null at the end of the stream
+    public String readFrame(InputStream in) throws IOException {
+
+        byte[] headerBytes = header.array();
+        if (!readFully(in, headerBytes, 0, HEADER_SIZE, true)) {
+            return null;
+        }
+
+        int length = ByteBuffer.wrap(headerBytes).getInt();
+        checkLength(length);
+
+        ByteBuffer buffer = payloadBuffer(length);
+        readFully(in, buffer.array(), 0, length, false);
+
+        return message(headerBytes[HEADER_SIZE - 1], length);
+    }
+
+    // returns null at the end of the stream
+    public String readLine(InputStream in) throws IOException {
+
+        payload.clear();
+
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (payload.position() == 0) {
+                    return null;
+                }
+                break;
+            }
+            if (!payload.hasRemaining()) {
+                checkLength(payload.capacity() * 2);
+                payload = grow(payload, payload.capacity() * 2);
+            }
+            payload.put((byte) b);
+        }
+
+        int length = payload.position();
+        if (length > 0 && payload.get(length - 1) == '\r') {
+            length--;
+        }
+
+        String line = new String(payload.array(), 0, length, StandardCharsets.UTF_8);
+        shrink();
+
+        return line;
+    }
+
+    /**
+     * Takes the bytes of a non-blocking read and passes every complete
+     * frame to the consumer. A frame may be split over any number of reads.
+     * Stops after a message when {@code more} says so, the rest of the
+     * buffer is left for the caller.
+     */
+    public void decodeFrames(ByteBuffer in, Consumer<String> messages, BooleanSupplier more) throws IOException {
+
+        while (in.hasRemaining() && more.getAsBoolean()) {
+
+            if (frameLength < 0) {
+                copy(in, header);
+                if (header.hasRemaining()) {
+                    return;
+                }
+                header.flip();
+                frameLength = header.getInt();
+                frameFlags = header.get();
+                header.clear();
+                checkLength(frameLength);
+                payloadBuffer(frameLength).limit(frameLength);
+            }
+
+            copy(in, payload);
+            if (payload.hasRemaining()) {
+                return;
+            }
+
+            String message = message(frameFlags, frameLength);
+            frameLength = -1;
+            payload.clear();
+            shrink();
+
+            messages.accept(message);
+        }
+    }
+
+    /**
+     * Same as {@link #decodeFrames} for the line framing.
+     */
+    public void decodeLines(ByteBuffer in, Consumer<String> messages, BooleanSupplier more) throws IOException {
+
+        while (in.hasRemaining() && more.getAsBoolean()) {
+            byte b = in.get();
+
+            if (b != '\n') {
+                if (!payload.hasRemaining()) {
+                    checkLength(payload.capacity() * 2);
+                    payload = grow(payload, payload.capacity() * 2);
+                }
+                payload.put(b);
+                continue;
+            }
+
+            int length = payload.position();
+            if (length > 0 && payload.get(length - 1) == '\r') {
+                length--;
+            }
+
+            String line = new String(payload.array(), 0, length, StandardCharsets.UTF_8);
+            payload.clear();
+            shrink();
+
+            messages.accept(line);
+        }
+    }
+
+    private String message(byte flags, int length) throws IOException {
+
+        if ((flags & FrameCompression.FLAG_COMPRESSED) == 0) {
+            return new String(payload.array(), 0, length, StandardCharsets.UTF_8);
+        }
+
+        if (compression == null) {
+            throw new IOException("Compressed frame on a connection without compression");
+        }
+        return compression.decompress(payload.array(), 0, length);
+    }
+
+    private ByteBuffer payloadBuffer(int length) {
+        if (payload.capacity() < length) {
+            payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+        }
+        payload.clear();
+        return payload;
+    }
+
+    private void shrink() {
+        if (payload.capacity() > MAX_KEPT_BUFFER_SIZE) {
+            payload = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static void copy(ByteBuffer from, ByteBuffer to) {
+        int count = Math.min(from.remaining(), to.remaining());
+        int limit = from.limit();
+        from.limit(from.position() + count);
+        to.put(from);
+        from.limit(limit);
+    }
+
+    private static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Wrong frame length " + length);
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] bytes, int offset, int length,
+                                     boolean eofAllowed) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(bytes, offset + read, length - read);
+            if (count < 0) {
+                if (eofAllowed && read == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+            read += count;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package ua.artcode.taxi.to;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of binary frames, agreed on by the "hello" request.
+ * Only payloads of at least {@code threshold} bytes are compressed, such
+ * frames have {@link #FLAG_COMPRESSED} in the flags byte.
+ *
+ * One instance belongs to one connection and keeps its Deflater and
+ * Inflater for the whole connection. Every frame is compressed on its
+ * own, so frames can be written in any order.
+ */
+public class FrameCompression {
+
+    public static final String NONE = "none";
+    public static final String DEFLATE = "deflate";
+    public static final String GZIP = "gzip";
+
+    public static final byte FLAG_COMPRESSED = 1;
+
+    //no file name, no mtime, unknown os
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final String algorithm;
+    private final boolean gzip;
+    private final int threshold;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final CRC32 deflateCrc = new CRC32();
+    private final CRC32 inflateCrc = new CRC32();
+    private final byte[] deflateBuffer = new byte[8 * 1024];
+    private final byte[] inflateBuffer = new byte[8 * 1024];
+
+    private volatile boolean ended;
+
+    public FrameCompression(String algorithm, int threshold) {
+        if (!isSupported(algorithm)) {
+            throw new IllegalArgumentException("Unknown compression " + algorithm);
+        }
+        this.algorithm = algorithm;
+        this.gzip = GZIP.equals(algorithm);
+        this.threshold = threshold;
+
+        //gzip has its own header and trailer around the raw deflate data
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+        inflater = new Inflater(gzip);
+    }
+
+    public static boolean isSupported(String algorithm) {
+        return DEFLATE.equals(algorithm) || GZIP.equals(algorithm);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Takes a frame made by {@link FrameCodec} and returns it compressed,
+     * or the same frame when it is too small or does not get smaller.
+     */
+    public ByteBuffer compress(ByteBuffer frame) {
+
+        int length = frame.remaining() - FrameCodec.HEADER_SIZE;
+        if (length < threshold) {
+            return frame;
+        }
+
+        byte[] input = frame.array();
+        int offset = frame.arrayOffset() + frame.position() + FrameCodec.HEADER_SIZE;
+
+        FrameBuffer out = new FrameBuffer(length / 2 + FrameCodec.HEADER_SIZE + GZIP_HEADER.length);
+        out.write(new byte[FrameCodec.HEADER_SIZE], 0, FrameCodec.HEADER_SIZE);
+
+        synchronized (deflater) {
+            if (ended) {
+                return frame;
+            }
+
+            if (gzip) {
+                out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+                deflateCrc.reset();
+                deflateCrc.update(input, offset, length);
+            }
+
+            deflater.reset();
+            deflater.setInput(input, offset, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(deflateBuffer);
+                out.write(deflateBuffer, 0, count);
+            }
+
+            if (gzip) {
+                out.writeIntLE((int) deflateCrc.getValue());
+                out.writeIntLE(length);
+            }
+        }
+
+        int compressedLength = out.size() - FrameCodec.HEADER_SIZE;
+        if (compressedLength >= length) {
+            return frame;
+        }
+
+        ByteBuffer compressed = out.toBuffer();
+        compressed.putInt(0, compressedLength);
+        compressed.put(4, FLAG_COMPRESSED);
+
+        return compressed;
+    }
+
+    public String decompress(byte[] data, int offset, int length) throws IOException {
+
+        synchronized (inflater) {
+            if (ended) {
+                throw new IOException("Connection is closed");
+            }
+
+            if (gzip) {
+                checkGzipHeader(data, offset, length);
+                offset += GZIP_HEADER.length;
+                length -= GZIP_HEADER.length + GZIP_TRAILER_SIZE;
+                inflateCrc.reset();
+            }
+
+            FrameBuffer out = new FrameBuffer(Math.min(length * 4, 1024 * 1024));
+
+            inflater.reset();
+            inflater.setInput(data, offset, length);
+            try {
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(inflateBuffer);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Compressed frame is truncated");
+                    }
+                    if (out.size() + count > FrameCodec.MAX_FRAME_SIZE) {
+                        throw new IOException("Decompressed frame is too large");
+                    }
+                    out.write(inflateBuffer, 0, count);
+                    if (gzip) {
+                        inflateCrc.update(inflateBuffer, 0, count);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Wrong compressed frame", e);
+            }
+
+            if (gzip && readIntLE(data, offset + length) != (int) inflateCrc.getValue()) {
+                throw new IOException("Wrong gzip checksum");
+            }
+
+            return new String(out.bytes(), 0, out.size(), StandardCharsets.UTF_8);
+        }
+    }
+
+    //releases the native memory of the Deflater and Inflater
+    public void end() {
+        ended = true;
+        synchronized (deflater) {
+            deflater.end();
+        }
+        synchronized (inflater) {
+            inflater.end();
+        }
+    }
+
+    private static void checkGzipHeader(byte[] data, int offset, int length) throws IOException {
+        if (length < GZIP_HEADER.length + GZIP_TRAILER_SIZE
+                || data[offset] != GZIP_HEADER[0] || data[offset + 1] != GZIP_HEADER[1]) {
+            throw new IOException("Wrong gzip frame");
+        }
+        //only the header written by compress() is expected, with no optional fields
+        if (data[offset + 3] != 0) {
+            throw new IOException("Unsupported gzip header flags " + data[offset + 3]);
+        }
+    }
+
+    private static int readIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xff)
+                | (data[offset + 1] & 0xff) << 8
+                | (data[offset + 2] & 0xff) << 16
+                | (data[offset + 3] & 0xff) << 24;
+    }
+}
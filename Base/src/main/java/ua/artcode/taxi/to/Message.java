@@ -1,11 +1,22 @@
 package ua.artcode.taxi.to;
 
+import java.util.List;
+
 public class Message {
 
+    //set by clients which keep several requests in flight, echoed back in the response
+    private Long requestId;
+
     private String methodName;
 
     private MessageBody messageBody;
 
+    //exception line of a failed request (only for requests with requestId)
+    private String error;
+
+    //sub-requests of a "batch" request, or their responses in the same order
+    private List<Message> batch;
+
     public Message() {
     }
 
@@ -14,6 +25,14 @@ public class Message {
         this.messageBody = messageBody;
     }
 
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+
     public String getMethodName() {
         return methodName;
     }
@@ -29,4 +48,20 @@ public class Message {
     public void setMessageBody(MessageBody messageBody) {
         this.messageBody = messageBody;
     }
-}
\ No newline at end of file
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<Message> getBatch() {
+        return batch;
+    }
+
+    public void setBatch(List<Message> batch) {
+        this.batch = batch;
+    }
+}
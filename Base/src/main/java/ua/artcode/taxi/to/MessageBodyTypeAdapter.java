@@ -0,0 +1,197 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads and writes the typed values of protocol v2 ({@link Protocol#ORDER},
+ * {@link Protocol#USER}, {@link Protocol#ORDERS}, {@link Protocol#DISTANCES})
+ * straight between the stream and model objects. All other values are read
+ * the way gson reads a plain {@code Map<String, Object>}, so v1 bodies
+ * come out exactly as before.
+ */
+public class MessageBodyTypeAdapter extends TypeAdapter<MessageBody> {
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            return type.getRawType() == MessageBody.class ? (TypeAdapter<T>) new MessageBodyTypeAdapter(gson) : null;
+        }
+    };
+
+    private final Gson gson;
+    private final TypeAdapter<Object> valueAdapter;
+    private final TypeAdapter<Order> orderAdapter;
+    private final TypeAdapter<User> userAdapter;
+
+    private MessageBodyTypeAdapter(Gson gson) {
+        this.gson = gson;
+        this.valueAdapter = gson.getAdapter(Object.class);
+        this.orderAdapter = gson.getAdapter(Order.class);
+        this.userAdapter = gson.getAdapter(User.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, MessageBody body) throws IOException {
+
+        if (body == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (body.getMap() == null) {
+            out.endObject();
+            return;
+        }
+
+        out.name("map").beginObject();
+        for (Map.Entry<String, Object> entry : body.getMap().entrySet()) {
+            out.name(entry.getKey());
+
+            Object value = entry.getValue();
+            if (value == null) {
+                out.nullValue();
+            } else if (Protocol.ORDERS.equals(entry.getKey())) {
+                writeOrders(out, (Collection<Order>) value);
+            } else if (Protocol.DISTANCES.equals(entry.getKey())) {
+                writeDistances(out, (Map<Integer, Order>) value);
+            } else {
+                //the registered adapters of Order and User are picked by the runtime type
+                TypeAdapter<Object> adapter = (TypeAdapter<Object>) gson.getAdapter(value.getClass());
+                adapter.write(out, value);
+            }
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public MessageBody read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        MessageBody body = new MessageBody();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("map".equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                body.setMap(readMap(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return body;
+    }
+
+    private Map<String, Object> readMap(JsonReader in) throws IOException {
+
+        Map<String, Object> map = new HashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            switch (name) {
+                case Protocol.ORDER:
+                    map.put(name, orderAdapter.read(in));
+                    break;
+                case Protocol.USER:
+                    map.put(name, userAdapter.read(in));
+                    break;
+                case Protocol.ORDERS:
+                    map.put(name, readOrders(in));
+                    break;
+                case Protocol.DISTANCES:
+                    map.put(name, readDistances(in));
+                    break;
+                default:
+                    map.put(name, valueAdapter.read(in));
+            }
+        }
+        in.endObject();
+
+        return map;
+    }
+
+    //orders go one by one, the list is never turned into a tree or a string
+    private void writeOrders(JsonWriter out, Collection<Order> orders) throws IOException {
+        out.beginArray();
+        for (Order order : orders) {
+            orderAdapter.write(out, order);
+        }
+        out.endArray();
+    }
+
+    private List<Order> readOrders(JsonReader in) throws IOException {
+
+        List<Order> orders = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            orders.add(orderAdapter.read(in));
+        }
+        in.endArray();
+
+        return orders;
+    }
+
+    //[{"distance": 5, "order": {...}}, ...]
+    private void writeDistances(JsonWriter out, Map<Integer, Order> distances) throws IOException {
+        out.beginArray();
+        for (Map.Entry<Integer, Order> entry : distances.entrySet()) {
+            out.beginObject();
+            out.name("distance").value(entry.getKey());
+            out.name(Protocol.ORDER);
+            orderAdapter.write(out, entry.getValue());
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private Map<Integer, Order> readDistances(JsonReader in) throws IOException {
+
+        Map<Integer, Order> distances = new LinkedHashMap<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            int distance = 0;
+            Order order = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("distance".equals(name)) {
+                    distance = AddressTypeAdapter.readInt(in);
+                } else if (Protocol.ORDER.equals(name)) {
+                    order = orderAdapter.read(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            distances.put(distance, order);
+        }
+        in.endArray();
+
+        return distances;
+    }
+}
@@ -0,0 +1,113 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+
+import java.io.IOException;
+
+import static ua.artcode.taxi.to.AddressTypeAdapter.readEnum;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readInt;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readLong;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readString;
+import static ua.artcode.taxi.to.AddressTypeAdapter.writeString;
+
+/**
+ * Order of the protocol v2. Passenger and driver are written as nested
+ * objects, not as json strings inside the json like in v1.
+ */
+public class OrderTypeAdapter extends TypeAdapter<Order> {
+
+    private final AddressTypeAdapter addressAdapter = new AddressTypeAdapter();
+    private final UserTypeAdapter userAdapter = new UserTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Order order) throws IOException {
+
+        if (order == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("id").value(order.getId());
+        if (order.getOrderStatus() != null) {
+            out.name("orderStatus").value(order.getOrderStatus().name());
+        }
+
+        out.name("from");
+        addressAdapter.write(out, order.getFrom());
+        out.name("to");
+        addressAdapter.write(out, order.getTo());
+
+        if (order.getPassenger() != null) {
+            out.name("passenger");
+            userAdapter.write(out, order.getPassenger());
+        }
+        if (order.getDriver() != null) {
+            out.name("driver");
+            userAdapter.write(out, order.getDriver());
+        }
+
+        out.name("distance").value(order.getDistance());
+        out.name("price").value(order.getPrice());
+        writeString(out, "message", order.getMessage());
+        out.name("version").value(order.getVersion());
+        out.endObject();
+    }
+
+    @Override
+    public Order read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Order order = new Order();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    order.setId(readLong(in));
+                    break;
+                case "orderStatus":
+                    order.setOrderStatus(readEnum(in, OrderStatus.class));
+                    break;
+                case "from":
+                    order.setFrom(addressAdapter.read(in));
+                    break;
+                case "to":
+                    order.setTo(addressAdapter.read(in));
+                    break;
+                case "passenger":
+                    order.setPassenger(userAdapter.read(in));
+                    break;
+                case "driver":
+                    order.setDriver(userAdapter.read(in));
+                    break;
+                case "distance":
+                    order.setDistance(readInt(in));
+                    break;
+                case "price":
+                    order.setPrice(readInt(in));
+                    break;
+                case "message":
+                    order.setMessage(readString(in));
+                    break;
+                case "version":
+                    order.setVersion(readLong(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return order;
+    }
+}
@@ -0,0 +1,58 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+
+/**
+ * Versions of the response format, agreed on by the "hello" request.
+ *
+ * 1 - every entity is a map of strings, nested entities are json strings
+ * 2 - entities are typed json objects under the {@link #ORDER} or {@link #USER} key,
+ *     order lists are json arrays under {@link #ORDERS} or {@link #DISTANCES}
+ */
+public class Protocol {
+
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+
+    //the newest version this code speaks
+    public static final int VERSION = VERSION_2;
+
+    public static final String ORDER = "order";
+    public static final String USER = "user";
+    public static final String ORDERS = "orders";
+    public static final String DISTANCES = "distances";
+
+    //keeps an idle connection open, the answer has an empty body
+    public static final String PING = "ping";
+
+    //method of a request which carries other requests in Message.batch
+    public static final String BATCH = "batch";
+    public static final int MAX_BATCH_SIZE = 64;
+
+    //counters and latency percentiles of the server methods, see StatsCommand
+    public static final String STATS = "stats";
+
+    //orders in one page of getOrdersUserPage
+    public static final int MAX_PAGE_SIZE = 100;
+
+    //feed of NEW orders near a driver, pushed as messages without requestId
+    public static final String SUBSCRIBE_NEW_ORDERS = "subscribeNewOrders";
+    public static final String UNSUBSCRIBE_NEW_ORDERS = "unsubscribeNewOrders";
+    public static final String ORDER_ADDED = "orderAdded";
+    public static final String ORDER_TAKEN = "orderTaken";
+    public static final String ORDER_CANCELLED = "orderCancelled";
+
+    private Protocol() {
+    }
+
+    public static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Order.class, new OrderTypeAdapter())
+                .registerTypeAdapter(User.class, new UserTypeAdapter())
+                .registerTypeAdapterFactory(MessageBodyTypeAdapter.FACTORY)
+                .create();
+    }
+}
@@ -0,0 +1,168 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ua.artcode.taxi.model.Address;
+import ua.artcode.taxi.model.Car;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ua.artcode.taxi.to.AddressTypeAdapter.readEnum;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readInt;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readLong;
+import static ua.artcode.taxi.to.AddressTypeAdapter.readString;
+import static ua.artcode.taxi.to.AddressTypeAdapter.writeString;
+
+/**
+ * User of the protocol v2: numbers stay numbers, address and car are
+ * nested objects and orderIds is an array.
+ */
+public class UserTypeAdapter extends TypeAdapter<User> {
+
+    private final AddressTypeAdapter addressAdapter = new AddressTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, User user) throws IOException {
+
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("id").value(user.getId());
+        if (user.getIdentifier() != null) {
+            out.name("identifier").value(user.getIdentifier().name());
+        }
+        writeString(out, "phone", user.getPhone());
+        writeString(out, "pass", user.getPass());
+        writeString(out, "name", user.getName());
+
+        if (user.getHomeAddress() != null) {
+            out.name("homeAddress");
+            addressAdapter.write(out, user.getHomeAddress());
+        }
+
+        if (user.getCar() != null) {
+            out.name("car");
+            writeCar(out, user.getCar());
+        }
+
+        if (user.getOrderIds() != null) {
+            out.name("orderIds").beginArray();
+            for (Long orderId : new ArrayList<>(user.getOrderIds())) {
+                out.value(orderId);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public User read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        int id = 0;
+        UserIdentifier identifier = null;
+        String phone = null;
+        String pass = null;
+        String name = null;
+        Address homeAddress = null;
+        Car car = null;
+        List<Long> orderIds = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = readInt(in);
+                    break;
+                case "identifier":
+                    identifier = readEnum(in, UserIdentifier.class);
+                    break;
+                case "phone":
+                    phone = readString(in);
+                    break;
+                case "pass":
+                    pass = readString(in);
+                    break;
+                case "name":
+                    name = readString(in);
+                    break;
+                case "homeAddress":
+                    homeAddress = addressAdapter.read(in);
+                    break;
+                case "car":
+                    car = readCar(in);
+                    break;
+                case "orderIds":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        orderIds.add(readLong(in));
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        User user = new User(identifier, phone, name);
+        user.setId(id);
+        user.setPass(pass);
+        user.setHomeAddress(homeAddress);
+        user.setCar(car);
+        user.setOrderIds(orderIds);
+
+        return user;
+    }
+
+    private static void writeCar(JsonWriter out, Car car) throws IOException {
+        out.beginObject();
+        writeString(out, "type", car.getType());
+        writeString(out, "model", car.getModel());
+        writeString(out, "number", car.getNumber());
+        out.endObject();
+    }
+
+    private static Car readCar(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Car car = new Car();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    car.setType(readString(in));
+                    break;
+                case "model":
+                    car.setModel(readString(in));
+                    break;
+                case "number":
+                    car.setNumber(readString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return car;
+    }
+}
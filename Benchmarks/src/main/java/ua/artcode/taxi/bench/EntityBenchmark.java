@@ -0,0 +1,102 @@
+package ua.artcode.taxi.bench;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.remote.RemoteUserService;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.ReflectionFormatter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One user and one order through both protocol versions. The passenger
+ * has {@code orderIds} orders behind him, the v1 maps carry them as one
+ * comma separated string and every order carries its passenger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int orderIds;
+
+    private Gson gson;
+    private RemoteUserService remote;
+    private User user;
+    private Order order;
+
+    private Map<String, Object> userMap;
+    private Map<String, Object> orderMap;
+    private String userJson;
+    private String orderJson;
+
+    @Setup
+    public void setUp() {
+        gson = Protocol.createGson();
+        remote = Payloads.offlineClient();
+
+        user = Payloads.passenger(1, orderIds);
+        order = Payloads.orders(1).get(0);
+        order.setPassenger(user);
+
+        //values as the client sees them after the frame is parsed
+        userMap = new HashMap<>(ReflectionFormatter.userToJsonMap(user));
+        orderMap = new HashMap<>(ReflectionFormatter.orderToJsonMap(order));
+        userJson = gson.toJson(user);
+        orderJson = gson.toJson(order);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        remote.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> userToMapV1() {
+        return ReflectionFormatter.userToJsonMap(user);
+    }
+
+    @Benchmark
+    public User userFromMapV1() {
+        return remote.getUserFromMessage(userMap);
+    }
+
+    @Benchmark
+    public String userToJsonV2() {
+        return gson.toJson(user);
+    }
+
+    @Benchmark
+    public User userFromJsonV2() {
+        return gson.fromJson(userJson, User.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> orderToMapV1() {
+        return ReflectionFormatter.orderToJsonMap(order);
+    }
+
+    @Benchmark
+    public Order orderFromMapV1() {
+        return remote.getOrderFromMessage(orderMap);
+    }
+
+    @Benchmark
+    public String orderToJsonV2() {
+        return gson.toJson(order);
+    }
+
+    @Benchmark
+    public Order orderFromJsonV2() {
+        return gson.fromJson(orderJson, Order.class);
+    }
+}
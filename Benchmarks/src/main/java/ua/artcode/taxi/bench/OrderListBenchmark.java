@@ -0,0 +1,92 @@
+package ua.artcode.taxi.bench;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.remote.RemoteUserService;
+import ua.artcode.taxi.server.command.GetAllOrdersUserCommand;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The answer of getAllOrdersUser both ways: the server encodes the list
+ * into the bytes of one binary frame, as RequestHandler.send does, and
+ * the client parses the frame and decodes the orders, as
+ * RemoteUserService.getAllOrdersUserResult does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderListBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int orders;
+
+    @Param({"1", "2"})
+    private int protocolVersion;
+
+    private Gson gson;
+    private GetAllOrdersUserCommand command;
+    private RemoteUserService remote;
+    private List<Order> list;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        gson = Protocol.createGson();
+        command = new GetAllOrdersUserCommand(null, gson);
+        remote = Payloads.offlineClient();
+        list = Payloads.orders(orders);
+
+        ByteBuffer frame = encode();
+        byte[] json = new byte[frame.remaining() - FrameCodec.HEADER_SIZE];
+        frame.position(frame.position() + FrameCodec.HEADER_SIZE);
+        frame.get(json);
+        encoded = new String(json, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        remote.close();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        Message response = new Message();
+        response.setRequestId(1L);
+        response.setMessageBody(command.encode(list, protocolVersion));
+        return FrameCodec.encode(gson, response, true);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Order> decode() {
+
+        Message response = gson.fromJson(encoded, Message.class);
+        Map<String, Object> body = response.getMessageBody().getMap();
+
+        //v2 orders are read by OrderTypeAdapter while the frame is parsed
+        if (body.get(Protocol.ORDERS) instanceof List) {
+            return (List<Order>) body.get(Protocol.ORDERS);
+        }
+
+        List<Order> result = new ArrayList<>(body.size());
+        for (Object value : body.values()) {
+            Message concreteMessage = gson.fromJson(value.toString(), Message.class);
+            result.add(remote.getOrderFromMessage(concreteMessage.getMessageBody().getMap()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package ua.artcode.taxi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ua.artcode.taxi.dao.OrderIndex;
+import ua.artcode.taxi.dao.OrderLog;
+import ua.artcode.taxi.model.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Appending the order of makeOrder to the list of all orders of AppDB,
+ * the CopyOnWriteArrayList it used to be against the OrderIndex which
+ * OrderLog reads, with 1k to 1M orders stored before. Every append makes
+ * a new order with the next id, as AppDB does. The collection is filled again for every
+ * iteration, so the appends of one iteration do not slow down the next.
+ * A pass over all orders, as the admin listener and the tests make, is
+ * measured too.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class OrderLogBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int stored;
+
+    @Param({"copyOnWrite", "orderLog"})
+    private String log;
+
+    private Order order;
+    private List<Order> history;
+    private Collection<Order> orders;
+    private OrderIndex index;
+    private AtomicInteger lastId;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        order = Payloads.orders(1).get(0);
+        history = new ArrayList<>(stored);
+        for (int i = 0; i < stored; i++) {
+            history.add(nextOrder(i + 1));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        lastId = new AtomicInteger(stored);
+        if ("orderLog".equals(log)) {
+            index = new OrderIndex();
+            for (Order each : history) {
+                index.put(each);
+            }
+            orders = new OrderLog(index);
+        } else {
+            index = null;
+            orders = new CopyOnWriteArrayList<>(history);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int append() {
+        return add(nextOrder(lastId.incrementAndGet()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public int appendFourThreads() {
+        return add(nextOrder(lastId.incrementAndGet()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long iterate() {
+        long ids = 0;
+        for (Order each : orders) {
+            ids += each.getId();
+        }
+        return ids;
+    }
+
+    private int add(Order next) {
+        if (index != null) {
+            index.put(next);
+        } else {
+            orders.add(next);
+        }
+        return orders.size();
+    }
+
+    private Order nextOrder(long id) {
+        Order next = new Order(order.getFrom(), order.getTo(), order.getPassenger(),
+                order.getDistance(), order.getPrice(), order.getMessage());
+        next.setId(id);
+        return next;
+    }
+}
@@ -0,0 +1,81 @@
+package ua.artcode.taxi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ua.artcode.taxi.dao.AppDB;
+import ua.artcode.taxi.dao.OrderDao;
+import ua.artcode.taxi.dao.OrderDaoInnerDbImpl;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding and updating an order by id, as getOrderInfo, takeOrder,
+ * cancelOrder and closeOrder do, with 1k to 10M orders stored. The ids
+ * are random, so the orders are mostly out of the CPU caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class OrderLookupBenchmark {
+
+    private static final int IDS = 1 << 12;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int orders;
+
+    private AppDB appDB;
+    private OrderDao orderDao;
+    private long[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() {
+
+        //the orders share their addresses and users, 10M orders fit into the heap
+        List<Order> templates = Payloads.orders(100);
+        List<Order> list = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            Order template = templates.get(i % templates.size());
+            Order order = new Order(template.getFrom(), template.getTo(), template.getPassenger(),
+                    template.getDistance(), template.getPrice(), template.getMessage());
+            order.setId(i + 1);
+            order.setOrderStatus(OrderStatus.NEW);
+            list.add(order);
+        }
+
+        appDB = new AppDB();
+        appDB.setOrders(list);
+        orderDao = new OrderDaoInnerDbImpl(appDB);
+
+        Random random = new Random(42);
+        ids = new long[IDS];
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = 1 + random.nextInt(orders);
+        }
+    }
+
+    @Benchmark
+    public Order findOrder() {
+        return appDB.findOrder(nextId());
+    }
+
+    //the same path as a status change of UserServiceImpl, the order also gets its next version
+    @Benchmark
+    public Order updateOrder() {
+        Order change = new Order();
+        change.setId(nextId());
+        change.setOrderStatus(OrderStatus.IN_PROGRESS);
+        return orderDao.update(change);
+    }
+
+    private long nextId() {
+        return ids[next++ & (IDS - 1)];
+    }
+}
@@ -0,0 +1,84 @@
+package ua.artcode.taxi.bench;
+
+import ua.artcode.taxi.model.*;
+import ua.artcode.taxi.remote.ClientConfig;
+import ua.artcode.taxi.remote.RemoteUserService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users and orders that look like the ones of a busy server: every order
+ * has its passenger with a short history, every second one a driver.
+ */
+public class Payloads {
+
+    private static final int PASSENGERS = 100;
+    private static final int DRIVERS = 20;
+    private static final int ORDERS_PER_PASSENGER = 10;
+
+    private Payloads() {
+    }
+
+    //only its decoders are used; the connection to the closed port fails once and is not retried
+    public static RemoteUserService offlineClient() {
+        ClientConfig config = new ClientConfig();
+        config.setPort(1);
+        config.setConnectTimeoutMs(100);
+        return new RemoteUserService(config);
+    }
+
+    public static User passenger(int id, int orderCount) {
+        User user = new User(UserIdentifier.P, "+38050" + (1000000 + id), "secret", "Passenger" + id,
+                new Address("Ukraine", "Kiev", "Khreschatik", String.valueOf(id % 200 + 1)));
+        user.setId(id);
+        user.setOrderIds(orderIds(orderCount));
+        return user;
+    }
+
+    public static User driver(int id, int orderCount) {
+        User user = new User(UserIdentifier.D, "+38067" + (1000000 + id), "secret", "Driver" + id,
+                new Car("sedan", "skoda rapid", "AA" + (1000 + id)));
+        user.setId(id);
+        user.setOrderIds(orderIds(orderCount));
+        return user;
+    }
+
+    public static List<Order> orders(int count) {
+
+        List<User> passengers = new ArrayList<>(PASSENGERS);
+        for (int i = 0; i < PASSENGERS; i++) {
+            passengers.add(passenger(i + 1, ORDERS_PER_PASSENGER));
+        }
+        List<User> drivers = new ArrayList<>(DRIVERS);
+        for (int i = 0; i < DRIVERS; i++) {
+            drivers.add(driver(PASSENGERS + i + 1, ORDERS_PER_PASSENGER));
+        }
+
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order(
+                    new Address("Ukraine", "Kiev", "Zhukova", String.valueOf(i % 100 + 1)),
+                    new Address("Ukraine", "Kiev", "Perova", String.valueOf(i % 50 + 1)),
+                    passengers.get(i % PASSENGERS), 5 + i % 20, 30 + 5 * (i % 20), "I have a dog!:)");
+            order.setId(i + 1);
+            order.setVersion(i + 1);
+            if (i % 2 == 0) {
+                order.setOrderStatus(OrderStatus.DONE);
+                order.setDriver(drivers.get(i % DRIVERS));
+            } else {
+                order.setOrderStatus(OrderStatus.NEW);
+            }
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static List<Long> orderIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,25 @@
+package ua.artcode.taxi.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result also shows the
+ * bytes allocated per operation. Takes the usual JMH arguments, e.g.
+ * {@code java -jar Benchmarks/target/benchmarks.jar OrderList -p orders=1000}.
+ */
+public class RunBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
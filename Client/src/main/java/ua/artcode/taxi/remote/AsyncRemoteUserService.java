@@ -0,0 +1,171 @@
+package ua.artcode.taxi.remote;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.to.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * {@link AsyncUserService} of the server. Sends the same requests as
+ * {@link RemoteUserService}, with the same timeout and busy retries, but
+ * no thread waits for the answer: one connection carries any number of
+ * calls in flight.
+ *
+ * The futures complete on the thread which reads the connection, so the
+ * stages added to them must not block; use the *Async methods of
+ * {@link CompletableFuture} with an executor for slow work.
+ */
+public class AsyncRemoteUserService implements AsyncUserService, Closeable {
+
+    private final RemoteUserService remote;
+
+    public AsyncRemoteUserService() {
+        this(ClientConfig.fromSystemProperties());
+    }
+
+    public AsyncRemoteUserService(ClientConfig config) {
+        this(new RemoteUserService(config));
+    }
+
+    //shares the connections of a sync service
+    public AsyncRemoteUserService(RemoteUserService remote) {
+        this.remote = remote;
+    }
+
+    @Override
+    public CompletableFuture<User> registerPassenger(Map<String, String> map) {
+        return send(RemoteUserService.registerRequest("registerPassenger", map), remote::registerResult);
+    }
+
+    @Override
+    public CompletableFuture<User> registerDriver(Map<String, String> map) {
+        return send(RemoteUserService.registerRequest("registerDriver", map), remote::registerResult);
+    }
+
+    @Override
+    public CompletableFuture<String> login(String phone, String pass) {
+        return send(RemoteUserService.loginRequest(phone, pass), remote::loginResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> makeOrder(String accessToken, String lineFrom, String lineTo, String message) {
+        return send(RemoteUserService.makeOrderRequest(accessToken, lineFrom, lineTo, message),
+                remote::makeOrderResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> makeOrderAnonymous(String phone, String name, String from, String to,
+                                                       String message) {
+        return send(RemoteUserService.makeOrderAnonymousRequest(phone, name, from, to, message),
+                remote::makeOrderAnonymousResult);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> calculateOrder(String lineFrom, String lineTo) {
+        return send(RemoteUserService.calculateOrderRequest(lineFrom, lineTo), remote::calculateOrderResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> getOrderInfo(long orderId) {
+        return send(RemoteUserService.request("getOrderInfo", "orderId", orderId), remote::getOrderInfoResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> getLastOrderInfo(String accessToken) {
+        return send(RemoteUserService.request("getLastOrderInfo", "accessToken", accessToken),
+                remote::getLastOrderInfoResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> cancelOrder(long orderId) {
+        return send(RemoteUserService.request("cancelOrder", "orderId", orderId + ""), remote::getOrderInfoResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> closeOrder(String accessToken, long orderId) {
+        return send(RemoteUserService.orderActionRequest("closeOrder", accessToken, orderId + ""),
+                remote::orderActionResult);
+    }
+
+    @Override
+    public CompletableFuture<Order> takeOrder(String accessToken, long orderId) {
+        return send(RemoteUserService.orderActionRequest("takeOrder", accessToken, orderId),
+                remote::orderActionResult);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Order>> getMapDistancesToDriver(String orderStatus,
+                                                                         String lineAddressDriver) {
+        return send(RemoteUserService.getMapDistancesToDriverRequest(orderStatus, lineAddressDriver),
+                remote::getMapDistancesToDriverResult);
+    }
+
+    @Override
+    public CompletableFuture<User> getUser(String accessToken) {
+        return send(RemoteUserService.request("getUser", "accessToken", accessToken), remote::userOf);
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getAllOrdersUser(String accessToken) {
+        return send(RemoteUserService.request("getAllOrdersUser", "accessToken", accessToken),
+                remote::getAllOrdersUserResult);
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getOrdersUserPage(String accessToken, long cursor, int pageSize) {
+        return send(RemoteUserService.getOrdersUserPageRequest(accessToken, cursor, pageSize),
+                remote::getOrdersUserPageResult);
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getChangedOrdersUser(String accessToken, long sinceVersion) {
+        return send(RemoteUserService.getChangedOrdersUserRequest(accessToken, sinceVersion),
+                remote::getAllOrdersUserResult);
+    }
+
+    @Override
+    public CompletableFuture<User> updateUser(Map<String, String> map, String accessToken) {
+        Message src = RemoteUserService.registerRequest("updateUser", map);
+        src.getMessageBody().getMap().put("accessToken", accessToken);
+        return send(src, remote::registerResult);
+    }
+
+    @Override
+    public CompletableFuture<User> deleteUser(String accessToken) {
+        return send(RemoteUserService.request("deleteUser", "accessToken", accessToken), remote::userOf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        remote.close();
+    }
+
+    private <T> CompletableFuture<T> send(Message request, Decoder<T> decoder) {
+        return remote.callAsync(request).thenApply(decoded(decoder));
+    }
+
+    //checked exceptions of the decoders become the cause of the failed future
+    private static <T> Function<Message, T> decoded(Decoder<T> decoder) {
+        return response -> {
+            try {
+                return decoder.decode(response);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    interface Decoder<T> {
+        T decode(Message response) throws Exception;
+    }
+}
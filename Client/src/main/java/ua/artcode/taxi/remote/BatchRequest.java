@@ -0,0 +1,191 @@
+package ua.artcode.taxi.remote;
+
+import ua.artcode.taxi.exception.TaxiAppException;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several UserService calls sent to the server as one "batch" request,
+ * so a screen which needs them all waits for one round trip only.
+ *
+ *     BatchRequest batch = BatchRequest.of(userService);
+ *     BatchResult<User, RuntimeException> user = batch.getUser(accessToken);
+ *     BatchResult<List<Order>, RuntimeException> orders = batch.getAllOrdersUser(accessToken);
+ *     batch.execute();
+ *     user.get();
+ *
+ * A failed call does not stop the others, its result throws the same
+ * exception as the single call would. Services which are not remote, and
+ * servers which do not know batches, get the calls one by one.
+ */
+public class BatchRequest {
+
+    interface Decoder<T> {
+        T decode(Message response) throws TaxiAppException;
+    }
+
+    interface Call<T> {
+        T call(UserService userService) throws TaxiAppException;
+    }
+
+    private final UserService userService;
+    private final RemoteUserService remote;
+    private final List<Entry<?>> entries = new ArrayList<>();
+    private boolean executed;
+
+    BatchRequest(RemoteUserService remote) {
+        this.userService = remote;
+        this.remote = remote;
+    }
+
+    private BatchRequest(UserService userService) {
+        this.userService = userService;
+        this.remote = null;
+    }
+
+    public static BatchRequest of(UserService userService) {
+        return userService instanceof RemoteUserService
+                ? ((RemoteUserService) userService).batch() : new BatchRequest(userService);
+    }
+
+    public BatchResult<User, RuntimeException> getUser(String accessToken) {
+        return add(RemoteUserService.request("getUser", "accessToken", accessToken),
+                response -> remote.userOf(response),
+                service -> service.getUser(accessToken));
+    }
+
+    public BatchResult<Order, TaxiAppException> getLastOrderInfo(String accessToken) {
+        return add(RemoteUserService.request("getLastOrderInfo", "accessToken", accessToken),
+                response -> remote.getLastOrderInfoResult(response),
+                service -> service.getLastOrderInfo(accessToken));
+    }
+
+    public BatchResult<Order, TaxiAppException> getOrderInfo(long orderId) {
+        return add(RemoteUserService.request("getOrderInfo", "orderId", orderId),
+                response -> remote.getOrderInfoResult(response),
+                service -> service.getOrderInfo(orderId));
+    }
+
+    public BatchResult<List<Order>, RuntimeException> getAllOrdersUser(String accessToken) {
+        return add(RemoteUserService.request("getAllOrdersUser", "accessToken", accessToken),
+                response -> remote.getAllOrdersUserResult(response),
+                service -> service.getAllOrdersUser(accessToken));
+    }
+
+    public BatchResult<List<Order>, RuntimeException> getOrdersUserPage(String accessToken, long cursor, int pageSize) {
+        return add(RemoteUserService.getOrdersUserPageRequest(accessToken, cursor, pageSize),
+                response -> remote.getOrdersUserPageResult(response),
+                service -> service.getOrdersUserPage(accessToken, cursor, pageSize));
+    }
+
+    public BatchResult<List<Order>, RuntimeException> getChangedOrdersUser(String accessToken, long sinceVersion) {
+        return add(RemoteUserService.getChangedOrdersUserRequest(accessToken, sinceVersion),
+                response -> remote.getAllOrdersUserResult(response),
+                service -> service.getChangedOrdersUser(accessToken, sinceVersion));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    //sends all added calls, after that every result is ready
+    public void execute() {
+
+        if (executed) {
+            throw new IllegalStateException("Batch is already executed");
+        }
+        executed = true;
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Message> responses = remote == null ? null : send();
+        if (responses == null) {
+            for (Entry<?> entry : entries) {
+                entry.call(userService);
+            }
+            return;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).decode(responses.get(i));
+        }
+    }
+
+    //null when the server can not take the batch in one request
+    private List<Message> send() {
+
+        if (entries.size() > Protocol.MAX_BATCH_SIZE) {
+            return null;
+        }
+
+        List<Message> requests = new ArrayList<>(entries.size());
+        for (Entry<?> entry : entries) {
+            requests.add(entry.request);
+        }
+
+        try {
+            List<Message> responses = remote.callBatch(requests);
+            return responses != null && responses.size() == requests.size() ? responses : null;
+
+        } catch (IllegalStateException e) {
+            //servers before batches answer "Unknown method batch"
+            if (e.getMessage() != null && e.getMessage().contains("Unknown method " + Protocol.BATCH)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private <T, E extends Exception> BatchResult<T, E> add(Message request, Decoder<T> decoder, Call<T> call) {
+
+        if (executed) {
+            throw new IllegalStateException("Batch is already executed");
+        }
+
+        BatchResult<T, E> result = new BatchResult<>();
+        entries.add(new Entry<>(request, decoder, call, result));
+
+        return result;
+    }
+
+    private static class Entry<T> {
+
+        private final Message request;
+        private final Decoder<T> decoder;
+        private final Call<T> call;
+        private final BatchResult<T, ?> result;
+
+        Entry(Message request, Decoder<T> decoder, Call<T> call, BatchResult<T, ?> result) {
+            this.request = request;
+            this.decoder = decoder;
+            this.call = call;
+            this.result = result;
+        }
+
+        void decode(Message response) {
+            try {
+                result.complete(decoder.decode(response));
+
+            } catch (TaxiAppException | RuntimeException e) {
+                result.fail(e);
+            }
+        }
+
+        void call(UserService userService) {
+            try {
+                result.complete(call.call(userService));
+
+            } catch (TaxiAppException | RuntimeException e) {
+                result.fail(e);
+            }
+        }
+    }
+}
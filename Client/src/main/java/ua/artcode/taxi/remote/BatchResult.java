@@ -0,0 +1,53 @@
+package ua.artcode.taxi.remote;
+
+/**
+ * Result of one call of a {@link BatchRequest}, ready after the batch
+ * is executed. {@code E} is what the single call may throw.
+ */
+public class BatchResult<T, E extends Exception> {
+
+    private boolean done;
+    private T value;
+    private Exception exception;
+
+    void complete(T value) {
+        this.value = value;
+        this.done = true;
+    }
+
+    void fail(Exception exception) {
+        this.exception = exception;
+        this.done = true;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isFailed() {
+        return exception != null;
+    }
+
+    //exception line of a failed call
+    public String getError() {
+        return exception == null ? null : exception.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get() throws E {
+
+        if (!done) {
+            throw new IllegalStateException("Batch is not executed yet");
+        }
+
+        if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        }
+        if (exception != null) {
+            //decoders only throw what the single call declares
+            throw (E) exception;
+        }
+
+        return value;
+    }
+}
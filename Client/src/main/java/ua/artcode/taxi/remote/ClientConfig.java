@@ -0,0 +1,114 @@
+package ua.artcode.taxi.remote;
+
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+
+/**
+ * Client settings. Every value can be overridden with a system property,
+ * e.g. {@code java -Dtaxi.client.host=10.0.0.5 -jar Client.jar}.
+ */
+public class ClientConfig {
+
+    private String host;
+    private int port;
+    private int connections;
+    private long connectTimeoutMs;
+    private long requestTimeoutMs;
+    private int busyRetries;
+    private boolean binaryFraming;
+    private String compression;
+
+    public ClientConfig() {
+        host = "127.0.0.1";
+        port = 43009;
+        connections = 1;
+        connectTimeoutMs = 5000;
+        requestTimeoutMs = 30000;
+        busyRetries = 3;
+        binaryFraming = true;
+        compression = FrameCompression.DEFLATE;
+    }
+
+    public static ClientConfig fromSystemProperties() {
+
+        ClientConfig config = new ClientConfig();
+
+        config.setHost(System.getProperty("taxi.client.host", config.getHost()));
+        config.setPort(Integer.getInteger("taxi.client.port", config.getPort()));
+        config.setConnections(Integer.getInteger("taxi.client.connections", config.getConnections()));
+        config.setConnectTimeoutMs(Long.getLong("taxi.client.connectTimeoutMs", config.getConnectTimeoutMs()));
+        config.setRequestTimeoutMs(Long.getLong("taxi.client.requestTimeoutMs", config.getRequestTimeoutMs()));
+        config.setBusyRetries(Integer.getInteger("taxi.client.busyRetries", config.getBusyRetries()));
+        config.setBinaryFraming(FrameCodec.FRAMING_BINARY.equals(System.getProperty("taxi.client.framing",
+                config.isBinaryFraming() ? FrameCodec.FRAMING_BINARY : FrameCodec.FRAMING_LINE)));
+        config.setCompression(System.getProperty("taxi.client.compression", config.getCompression()));
+
+        return config;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    //every connection carries any number of requests at once
+    public int getConnections() {
+        return connections;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(long connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
+    public void setRequestTimeoutMs(long requestTimeoutMs) {
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    //how many times a request refused with ServerBusyException is sent again
+    public int getBusyRetries() {
+        return busyRetries;
+    }
+
+    public void setBusyRetries(int busyRetries) {
+        this.busyRetries = busyRetries;
+    }
+
+    public boolean isBinaryFraming() {
+        return binaryFraming;
+    }
+
+    public void setBinaryFraming(boolean binaryFraming) {
+        this.binaryFraming = binaryFraming;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+}
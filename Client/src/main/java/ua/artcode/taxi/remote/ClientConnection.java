@@ -0,0 +1,395 @@
+package ua.artcode.taxi.remote;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * One socket to the server shared by any number of threads. Every request
+ * gets a requestId and a reader thread hands each response to the caller
+ * waiting for that id, so several requests can be in flight at once and
+ * the server may answer them in any order.
+ *
+ * Right after connect the connection says hello to agree on the framing
+ * (length prefixed frames with {@code binaryFraming}), the protocol
+ * version and the compression of frames ("none", "deflate" or "gzip").
+ * Servers which do not answer hello get lines, v1 and no compression.
+ * They do not echo requestIds either, so their requests go without one
+ * and only one at a time: a response without id belongs to the oldest
+ * request sent.
+ * When the server tells its idle timeout, the connection pings it before
+ * the timeout runs out.
+ */
+public class ClientConnection implements Closeable {
+
+    private static final int HELLO_TIMEOUT_MS = 2000;
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    private final Gson gson;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final FrameCodec codec = new FrameCodec();
+    private boolean binary;
+    private int protocolVersion = Protocol.VERSION_1;
+    private FrameCompression compression;
+    private long idleTimeoutMs;
+
+    //the server closes connections which send nothing for idleTimeoutMs
+    private volatile long lastSentNanos = System.nanoTime();
+    private ScheduledExecutorService keepAlive;
+
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    private final Map<Long, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+
+    //servers which did not answer hello; the head of the queue is the request on the wire
+    private boolean untagged;
+    private final Queue<UntaggedRequest> untaggedRequests = new ArrayDeque<>();
+
+    //messages the server sends on its own, without requestId
+    private volatile Consumer<Message> pushListener;
+    private final AtomicReference<Runnable> closeListener = new AtomicReference<>();
+
+    private volatile boolean closed;
+
+    public ClientConnection(ClientConfig config, Gson gson) throws IOException {
+        this.gson = gson;
+
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(config.getHost(), config.getPort()), (int) config.getConnectTimeoutMs());
+        socket.setTcpNoDelay(true);
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+
+        try {
+            hello(config.isBinaryFraming(), config.getCompression());
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+
+        //before the reader starts, which stops it when the connection is lost
+        if (idleTimeoutMs > 0) {
+            //two periods at most pass between pings, well inside the timeout
+            startKeepAlive(Math.max(100, idleTimeoutMs / 3));
+        }
+
+        Thread reader = new Thread(this::readResponses, "taxi-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<Message> send(Message request) {
+
+        CompletableFuture<Message> response = new CompletableFuture<>();
+
+        if (closed) {
+            response.completeExceptionally(new IOException("Connection to server is closed"));
+            return response;
+        }
+
+        if (untagged) {
+            sendUntagged(new UntaggedRequest(gson.toJson(request), response));
+            return response;
+        }
+
+        long requestId = nextRequestId.getAndIncrement();
+        request.setRequestId(requestId);
+        pending.put(requestId, response);
+
+        //a caller which stops waiting cancels the future, the late response is dropped
+        response.whenComplete((message, e) -> pending.remove(requestId));
+
+        String jsonMessage = gson.toJson(request);
+        lastSentNanos = System.nanoTime();
+        try {
+            synchronized (out) {
+                FrameCodec.write(out, encode(jsonMessage));
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            response.completeExceptionally(e);
+        }
+
+        return response;
+    }
+
+    //called by the reader thread, must not block
+    public void setPushListener(Consumer<Message> pushListener) {
+        this.pushListener = pushListener;
+    }
+
+    //called once by the reader thread when the connection is lost, at once if it is already
+    public void setCloseListener(Runnable closeListener) {
+        this.closeListener.set(closeListener);
+        if (closed) {
+            closed();
+        }
+    }
+
+    public boolean isBinaryFraming() {
+        return binary;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public String getCompression() {
+        return compression == null ? FrameCompression.NONE : compression.getAlgorithm();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+    }
+
+    //the ping thread, the socket and the native memory of the compression, by close() or a lost connection
+    private void release() {
+        closed = true;
+        if (keepAlive != null) {
+            keepAlive.shutdownNow();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Can not close connection to server: " + e);
+        }
+        if (compression != null) {
+            compression.end();
+        }
+    }
+
+    private ByteBuffer encode(String jsonMessage) {
+        if (!binary) {
+            return FrameCodec.encodeLine(jsonMessage);
+        }
+        ByteBuffer frame = FrameCodec.encodeFrame(jsonMessage);
+        return compression == null ? frame : compression.compress(frame);
+    }
+
+    //pings only when nothing else was sent for a while
+    private void startKeepAlive(long periodMs) {
+        keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "taxi-client-ping");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepAlive.scheduleWithFixedDelay(() -> {
+            if (!closed && System.nanoTime() - lastSentNanos >= TimeUnit.MILLISECONDS.toNanos(periodMs)) {
+                send(new Message(Protocol.PING, new MessageBody()));
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void readResponses() {
+
+        IOException cause = new IOException("Connection to server is closed");
+
+        try {
+            String jsonResponse;
+            while ((jsonResponse = binary ? codec.readFrame(in) : codec.readLine(in)) != null) {
+                System.out.println("SERVER OUT ---> CLIENT TAKE: " + jsonResponse);
+                dispatch(jsonResponse);
+            }
+
+        } catch (IOException e) {
+            cause = e;
+        }
+
+        release();
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<Message> response = pending.remove(requestId);
+            if (response != null) {
+                response.completeExceptionally(cause);
+            }
+        }
+        synchronized (untaggedRequests) {
+            UntaggedRequest request;
+            while ((request = untaggedRequests.poll()) != null) {
+                request.response.completeExceptionally(cause);
+            }
+        }
+        closed();
+    }
+
+    private void closed() {
+        Runnable listener = closeListener.getAndSet(null);
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private void sendUntagged(UntaggedRequest request) {
+        synchronized (untaggedRequests) {
+            untaggedRequests.add(request);
+            if (untaggedRequests.size() == 1) {
+                writeUntagged(request);
+            }
+        }
+    }
+
+    //the answer of the request on the wire came, the next one may go; a cancelled caller still waits its turn
+    private void untaggedResponse(Message response) {
+        synchronized (untaggedRequests) {
+            UntaggedRequest answered = untaggedRequests.poll();
+            if (answered == null) {
+                System.out.println("Response without request is skipped");
+                return;
+            }
+            answered.response.complete(response);
+
+            UntaggedRequest next = untaggedRequests.peek();
+            if (next != null) {
+                writeUntagged(next);
+            }
+        }
+    }
+
+    //under the lock of untaggedRequests
+    private void writeUntagged(UntaggedRequest request) {
+        lastSentNanos = System.nanoTime();
+        try {
+            synchronized (out) {
+                FrameCodec.write(out, encode(request.json));
+            }
+        } catch (IOException e) {
+            //the reader thread sees the broken socket and fails the rest
+            request.response.completeExceptionally(e);
+        }
+    }
+
+    //runs before the reader thread starts, so the answer is read right here
+    private void hello(boolean binaryFraming, String requestedCompression) throws IOException {
+
+        Message hello = new Message();
+        hello.setRequestId(nextRequestId.getAndIncrement());
+        hello.setMethodName(FrameCodec.HELLO);
+        hello.setMessageBody(new MessageBody());
+        hello.getMessageBody().getMap().put("framing",
+                binaryFraming ? FrameCodec.FRAMING_BINARY : FrameCodec.FRAMING_LINE);
+        hello.getMessageBody().getMap().put("version", Protocol.VERSION);
+        hello.getMessageBody().getMap().put("compression", requestedCompression);
+
+        FrameCodec.write(out, gson.toJson(hello), false);
+
+        int timeout = socket.getSoTimeout();
+        socket.setSoTimeout(HELLO_TIMEOUT_MS);
+        try {
+            Message response = gson.fromJson(codec.readLine(in), Message.class);
+            if (response == null || response.getMessageBody() == null) {
+                return;
+            }
+
+            Map<String, Object> agreed = response.getMessageBody().getMap();
+            binary = FrameCodec.FRAMING_BINARY.equals(agreed.get("framing"));
+            if (agreed.get("version") instanceof Number) {
+                protocolVersion = ((Number) agreed.get("version")).intValue();
+            }
+            if (agreed.get("idleTimeout") instanceof Number) {
+                idleTimeoutMs = ((Number) agreed.get("idleTimeout")).longValue();
+            }
+            Object agreedCompression = agreed.get("compression");
+            if (binary && FrameCompression.isSupported(String.valueOf(agreedCompression))) {
+                compression = new FrameCompression(agreedCompression.toString(), COMPRESSION_THRESHOLD);
+                codec.setCompression(compression);
+            }
+
+        } catch (SocketTimeoutException | JsonParseException e) {
+            //older servers do not answer unknown methods
+            System.out.println("Server does not answer hello, using lines, protocol v1 and one request at a time");
+            untagged = true;
+
+        } finally {
+            socket.setSoTimeout(timeout);
+        }
+    }
+
+    private void dispatch(String jsonResponse) {
+
+        Message response;
+        try {
+            response = gson.fromJson(jsonResponse, Message.class);
+        } catch (JsonParseException e) {
+            response = null;
+        }
+
+        if (response != null && response.getRequestId() == null && response.getMethodName() != null) {
+            push(response);
+            return;
+        }
+
+        //servers without hello answer a failed request with the bare exception line
+        if (untagged) {
+            untaggedResponse(response != null ? response : errorLine(jsonResponse));
+            return;
+        }
+
+        if (response == null || response.getRequestId() == null) {
+            System.out.println("Response without requestId is skipped");
+            return;
+        }
+
+        CompletableFuture<Message> waiting = pending.remove(response.getRequestId());
+        if (waiting != null) {
+            waiting.complete(response);
+        }
+    }
+
+    private static Message errorLine(String line) {
+        Message response = new Message();
+        response.setError(line);
+        return response;
+    }
+
+    private void push(Message message) {
+
+        Consumer<Message> listener = pushListener;
+        if (listener == null) {
+            return;
+        }
+
+        //a broken listener must not stop the responses
+        try {
+            listener.accept(message);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class UntaggedRequest {
+
+        private final String json;
+        private final CompletableFuture<Message> response;
+
+        UntaggedRequest(String json, CompletableFuture<Message> response) {
+            this.json = json;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ua.artcode.taxi.remote;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.to.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A few {@link ClientConnection}s to one server, requests go round robin.
+ * Every connection carries many requests at once, so a small pool is
+ * enough for any number of threads. A connection which is closed or
+ * failed is opened again by the next request which picks it.
+ */
+public class ConnectionPool implements Closeable {
+
+    private final ClientConfig config;
+    private final Gson gson;
+    private final AtomicReferenceArray<ClientConnection> connections;
+    private final Object[] reconnectLocks;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(ClientConfig config, Gson gson) {
+        this.config = config;
+        this.gson = gson;
+        this.connections = new AtomicReferenceArray<>(config.getConnections());
+        this.reconnectLocks = new Object[config.getConnections()];
+        for (int i = 0; i < reconnectLocks.length; i++) {
+            reconnectLocks[i] = new Object();
+        }
+    }
+
+    //opens all connections now, so a missing server is seen at start
+    public void connect() throws IOException {
+        for (int i = 0; i < connections.length(); i++) {
+            connection(i);
+        }
+    }
+
+    public CompletableFuture<Message> send(Message request) {
+        try {
+            return connection(Math.abs(next.getAndIncrement() % connections.length())).send(request);
+
+        } catch (IOException e) {
+            CompletableFuture<Message> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    //requests which need the same session every time, like the order feed, go here
+    public ClientConnection first() throws IOException {
+        return connection(0);
+    }
+
+    public int size() {
+        return connections.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (int i = 0; i < connections.length(); i++) {
+            synchronized (reconnectLocks[i]) {
+                ClientConnection connection = connections.getAndSet(i, null);
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private ClientConnection connection(int index) throws IOException {
+
+        ClientConnection connection = connections.get(index);
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+
+        //only the threads which picked this slot wait for the new connection
+        synchronized (reconnectLocks[index]) {
+            if (closed) {
+                throw new IOException("Connection pool is closed");
+            }
+            connection = connections.get(index);
+            if (connection != null && !connection.isClosed()) {
+                return connection;
+            }
+
+            //the old one may still hold its socket and threads, a flapping network must not pile them up
+            if (connection != null) {
+                connections.set(index, null);
+                connection.close();
+            }
+
+            connection = new ClientConnection(config, gson);
+            connections.set(index, connection);
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ua.artcode.taxi.remote;
+
+import ua.artcode.taxi.model.Order;
+
+import java.util.List;
+
+/**
+ * Changes of the NEW orders near a driver, see
+ * {@link RemoteUserService#subscribeNewOrders}. Called by the reader thread
+ * of the connection, so swing views should move to the event thread.
+ */
+public interface NewOrdersListener {
+
+    //distance from the driver in km
+    void orderAdded(Order order, int distance);
+
+    void orderTaken(Order order);
+
+    void orderCancelled(Order order);
+
+    //the connection was lost and the subscription is made again on a new one, these are
+    //the NEW orders now, nearest first; the others told about before are gone meanwhile
+    default void resubscribed(List<Order> orders) {
+    }
+
+    //the subscription could not be made again, no more changes come
+    default void subscriptionLost(Exception cause) {
+    }
+}
@@ -0,0 +1,66 @@
+package ua.artcode.taxi.remote;
+
+import ua.artcode.taxi.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Orders of one user as the client last saw them, kept by
+ * {@link RemoteUserService#syncOrdersUser(String)}. Readers never wait
+ * for the server.
+ */
+public class OrderMirror {
+
+    private final ConcurrentSkipListMap<Long, Order> orders = new ConcurrentSkipListMap<>();
+    private volatile long version;
+
+    //changed orders replace the copies with the same id
+    void apply(List<Order> changed) {
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        long newest = 0;
+        for (Order order : changed) {
+            newest = Math.max(newest, order.getVersion());
+        }
+
+        //the upper bits of the version change when the server is restarted, it sends everything again
+        if (newest >>> 32 != version >>> 32) {
+            orders.clear();
+        }
+
+        for (Order order : changed) {
+            orders.put(order.getId(), order);
+        }
+        version = newest;
+    }
+
+    //highest Order.getVersion() the mirror has seen
+    public long getVersion() {
+        return version;
+    }
+
+    //by id, oldest first
+    public List<Order> getOrders() {
+        return new ArrayList<>(orders.values());
+    }
+
+    public Order getOrder(long orderId) {
+        return orders.get(orderId);
+    }
+
+    //null when the user has no orders
+    public Order getLastOrder() {
+        Map.Entry<Long, Order> last = orders.lastEntry();
+        return last == null ? null : last.getValue();
+    }
+
+    public int size() {
+        return orders.size();
+    }
+}
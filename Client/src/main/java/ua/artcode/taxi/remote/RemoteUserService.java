@@ -6,156 +6,213 @@ import ua.artcode.taxi.model.*;
 import ua.artcode.taxi.service.UserService;
 import ua.artcode.taxi.to.Message;
 import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
 
 import javax.security.auth.login.LoginException;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-public class RemoteUserService implements UserService {
+/**
+ * UserService of the server, safe to share between any number of threads.
+ * Requests go through a {@link ConnectionPool}, wait at most
+ * {@link ClientConfig#getRequestTimeoutMs()} for the answer and are sent
+ * again when the server is busy. {@link AsyncRemoteUserService} sends the
+ * same requests without blocking.
+ */
+public class RemoteUserService implements UserService, Closeable {
+
+    private static final Pattern RETRY_AFTER = Pattern.compile("retry after (\\d+) ms");
+
+    //pause before the order feed is asked again after its connection was lost
+    private static final long RESUBSCRIBE_DELAY_MS = 1000;
 
     private Gson gson;
-    private Socket connection;
-    private BufferedReader bf;
-    private PrintWriter pw;
+    private ClientConfig config;
+    private ConnectionPool pool;
+
+    //orders of every logged in user, see syncOrdersUser
+    private final Map<String, OrderMirror> mirrors = new ConcurrentHashMap<>();
+
+    //timeouts and busy retries of all requests
+    private ScheduledExecutorService timer;
+
+    //made again on a new connection when the connection of the order feed is lost
+    private volatile FeedSubscription feedSubscription;
+    private volatile boolean closed;
 
     public RemoteUserService() {
+        this(ClientConfig.fromSystemProperties());
+    }
 
-        gson = new Gson();
+    public RemoteUserService(ClientConfig config) {
+
+        this.config = config;
+        gson = Protocol.createGson();
+        pool = new ConnectionPool(config, gson);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "taxi-client-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         try {
-            connection = new Socket("127.0.0.1", 43009);
-            bf = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream()));
-            pw = new PrintWriter(connection.getOutputStream());
+            pool.connect();
 
         } catch (IOException e) {
+            //the next request tries again
             e.printStackTrace();
         }
     }
 
     @Override
     public User registerPassenger(Map<String, String> map) throws RegisterException {
+        return registerResult(call(registerRequest("registerPassenger", map)));
+    }
 
-        Message src = new Message();
-        src.setMethodName("registerPassenger");
-
-        MessageBody messageBody = new MessageBody();
-        for (String key : map.keySet()) {
-            messageBody.getMap().put(key, map.get(key));
-        }
-
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+    @Override
+    public User registerDriver(Map<String, String> map) throws RegisterException {
+        return registerResult(call(registerRequest("registerDriver", map)));
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    @Override
+    public String login(String phone, String pass) throws LoginException {
+        return loginResult(call(loginRequest(phone, pass)));
+    }
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public Order makeOrder(String accessToken, String lineFrom, String lineTo, String message)
+                        throws OrderMakeException, UserNotFoundException, InputDataWrongException {
+        return makeOrderResult(call(makeOrderRequest(accessToken, lineFrom, lineTo, message)));
+    }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (registerPassenger): " + jsonResponse);
+    @Override
+    public Order makeOrderAnonymous(String phone, String name, String from, String to, String message)
+                                                    throws OrderMakeException, InputDataWrongException {
+        return makeOrderAnonymousResult(call(makeOrderAnonymousRequest(phone, name, from, to, message)));
+    }
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("RegisterException")) {
-            throw new RegisterException(jsonResponse);
-        }
+    @Override
+    public Map<String, Object> calculateOrder(String from, String to) throws InputDataWrongException {
+        return calculateOrderResult(call(calculateOrderRequest(from, to)));
+    }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
+    @Override
+    public Order getOrderInfo(long orderId) throws OrderNotFoundException {
+        return getOrderInfoResult(call(request("getOrderInfo", "orderId", orderId)));
+    }
 
-        return getUserFromMessage(response.getMessageBody().getMap());
+    @Override
+    public Order getLastOrderInfo(String accessToken) throws UserNotFoundException, OrderNotFoundException {
+        return getLastOrderInfoResult(call(request("getLastOrderInfo", "accessToken", accessToken)));
     }
 
     @Override
-    public User registerDriver(Map<String, String> map) throws RegisterException {
+    public Order cancelOrder(long orderId) throws OrderNotFoundException {
+        return getOrderInfoResult(call(request("cancelOrder", "orderId", orderId + "")));
+    }
 
-        Message src = new Message();
-        src.setMethodName("registerDriver");
+    @Override
+    public Order closeOrder(String accessToken, long orderId) throws
+            OrderNotFoundException, WrongStatusOrderException, DriverOrderActionException {
+        return orderActionResult(call(orderActionRequest("closeOrder", accessToken, orderId + "")));
+    }
 
-        MessageBody messageBody = new MessageBody();
-        for (String key : map.keySet()) {
-            messageBody.getMap().put(key, map.get(key));
-        }
+    @Override
+    public Order takeOrder(String accessToken, long orderId) throws
+            OrderNotFoundException, WrongStatusOrderException, DriverOrderActionException {
+        return orderActionResult(call(orderActionRequest("takeOrder", accessToken, orderId)));
+    }
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+    @Override
+    public Map<Integer, Order> getMapDistancesToDriver(String orderStatus, String lineAddressDriver)
+                                                                                throws InputDataWrongException {
+        return getMapDistancesToDriverResult(call(getMapDistancesToDriverRequest(orderStatus, lineAddressDriver)));
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    @Override
+    public User getUser(String accessToken) {
+        return userOf(call(request("getUser", "accessToken", accessToken)));
+    }
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public List<Order> getAllOrdersUser(String accessToken) {
+        return getAllOrdersUserResult(call(request("getAllOrdersUser", "accessToken", accessToken)));
+    }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (registerDriver): " + jsonResponse);
+    @Override
+    public List<Order> getOrdersUserPage(String accessToken, long cursor, int pageSize) {
+        return getOrdersUserPageResult(call(getOrdersUserPageRequest(accessToken, cursor, pageSize)));
+    }
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("RegisterException")) {
-            throw new RegisterException(jsonResponse);
-        }
+    @Override
+    public List<Order> getChangedOrdersUser(String accessToken, long sinceVersion) {
+        return getAllOrdersUserResult(call(getChangedOrdersUserRequest(accessToken, sinceVersion)));
+    }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
+    /**
+     * Local copy of the orders of the user, brought up to date with the
+     * orders changed since the last call. When nothing has changed the
+     * server answers with an empty list.
+     */
+    public OrderMirror syncOrdersUser(String accessToken) {
+        OrderMirror mirror = mirrors.computeIfAbsent(accessToken, key -> new OrderMirror());
+        synchronized (mirror) {
+            mirror.apply(getChangedOrdersUser(accessToken, mirror.getVersion()));
+        }
+        return mirror;
+    }
 
-        return getUserFromMessage(response.getMessageBody().getMap());
+    @Override
+    public User updateUser(Map<String, String> map, String accessToken) throws RegisterException {
+        Message src = registerRequest("updateUser", map);
+        src.getMessageBody().getMap().put("accessToken", accessToken);
+        return registerResult(call(src));
     }
 
     @Override
-    public String login(String phone, String pass) throws LoginException {
+    public User deleteUser(String accessToken) {
+        mirrors.remove(accessToken);
+        return userOf(call(request("deleteUser", "accessToken", accessToken)));
+    }
 
-        Message src = new Message();
-        src.setMethodName("login");
+    //requests and their decoders, shared with BatchRequest and AsyncRemoteUserService
+
+    static Message request(String methodName, String key, Object value) {
 
         MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("phone", phone);
-        messageBody.getMap().put("pass", pass);
+        messageBody.getMap().put(key, value);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+        return new Message(methodName, messageBody);
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    static Message registerRequest(String methodName, Map<String, String> map) {
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        MessageBody messageBody = new MessageBody();
+        for (String key : map.keySet()) {
+            messageBody.getMap().put(key, map.get(key));
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (login): " + jsonResponse);
+        return new Message(methodName, messageBody);
+    }
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("LoginException")) {
-            throw new LoginException();
-        }
+    static Message loginRequest(String phone, String pass) {
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put("phone", phone);
+        messageBody.getMap().put("pass", pass);
 
-        return response.getMessageBody().getMap().get("accessKey").toString();
+        return new Message("login", messageBody);
     }
 
-    @Override
-    public Order makeOrder(String accessToken, String lineFrom, String lineTo, String message)
-                        throws OrderMakeException, UserNotFoundException, InputDataWrongException {
-
-        Message src = new Message();
-        src.setMethodName("makeOrder");
+    static Message makeOrderRequest(String accessToken, String lineFrom, String lineTo, String message) {
 
         MessageBody messageBody = new MessageBody();
         messageBody.getMap().put("accessToken", accessToken);
@@ -163,42 +220,10 @@ public class RemoteUserService implements UserService {
         messageBody.getMap().put("addressTo", lineTo);
         messageBody.getMap().put("messageText", message);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        System.out.println("SERVER OUT ---> CLIENT TAKE (makeOrder): " + jsonResponse);
-
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderMakeException")) {
-            throw new OrderMakeException(jsonResponse);
-        } else if (jsonResponse.contains("UserNotFoundException")) {
-            throw new UserNotFoundException(jsonResponse);
-        } else if (jsonResponse.contains("InputDataWrongException")) {
-            throw new InputDataWrongException(jsonResponse);
-        }
-
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return new Message("makeOrder", messageBody);
     }
 
-    @Override
-    public Order makeOrderAnonymous(String phone, String name, String from, String to, String message)
-                                                    throws OrderMakeException, InputDataWrongException {
-
-        Message src = new Message();
-        src.setMethodName("makeOrderAnonymous");
+    static Message makeOrderAnonymousRequest(String phone, String name, String from, String to, String message) {
 
         MessageBody messageBody = new MessageBody();
         messageBody.getMap().put("phone", phone);
@@ -207,299 +232,152 @@ public class RemoteUserService implements UserService {
         messageBody.getMap().put("addressTo", to);
         messageBody.getMap().put("message", message);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        System.out.println("SERVER OUT ---> CLIENT TAKE (makeOrderAnonymous): " + jsonResponse);
-
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderMakeException")) {
-            throw new OrderMakeException(jsonResponse);
-        } else if (jsonResponse.contains("InputDataWrongException")) {
-            throw new InputDataWrongException(jsonResponse);
-        }
-
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return new Message("makeOrderAnonymous", messageBody);
     }
 
-    @Override
-    public Map<String, Object> calculateOrder(String from, String to) throws InputDataWrongException {
-
-        Message src = new Message();
-        src.setMethodName("calculateOrder");
+    static Message calculateOrderRequest(String from, String to) {
 
         MessageBody messageBody = new MessageBody();
         messageBody.getMap().put("addressFrom", from);
         messageBody.getMap().put("addressTo", to);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        System.out.println("SERVER OUT ---> CLIENT TAKE (calculateOrder): " + jsonResponse);
-
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("InputDataWrongException")) {
-            throw new InputDataWrongException(jsonResponse);
-        }
-
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return response.getMessageBody().getMap();
+        return new Message("calculateOrder", messageBody);
     }
 
-    @Override
-    public Order getOrderInfo(long orderId) throws OrderNotFoundException {
-
-        Message src = new Message();
-        src.setMethodName("getOrderInfo");
+    static Message orderActionRequest(String methodName, String accessToken, Object orderId) {
 
         MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put("accessToken", accessToken);
         messageBody.getMap().put("orderId", orderId);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        System.out.println("SERVER OUT ---> CLIENT TAKE (getOrderInfo): " + jsonResponse);
-
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new OrderNotFoundException(jsonResponse);
-        }
-
-        Message response = gson.fromJson(jsonResponse, Message.class);
+        return new Message(methodName, messageBody);
+    }
 
-        return getOrderFromMessage(response.getMessageBody().getMap());
+    static Message getOrdersUserPageRequest(String accessToken, long cursor, int pageSize) {
+        Message message = request("getOrdersUserPage", "accessToken", accessToken);
+        message.getMessageBody().getMap().put("cursor", cursor);
+        message.getMessageBody().getMap().put("pageSize", pageSize);
+        return message;
     }
 
-    @Override
-    public Order getLastOrderInfo(String accessToken) throws UserNotFoundException, OrderNotFoundException {
+    static Message getChangedOrdersUserRequest(String accessToken, long sinceVersion) {
+        Message message = request("getChangedOrdersUser", "accessToken", accessToken);
+        message.getMessageBody().getMap().put("sinceVersion", sinceVersion);
+        return message;
+    }
 
-        Message src = new Message();
-        src.setMethodName("getLastOrderInfo");
+    static Message getMapDistancesToDriverRequest(String orderStatus, String lineAddressDriver) {
 
         MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
-
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
+        messageBody.getMap().put("orderStatus", orderStatus);
+        messageBody.getMap().put("addressDriver", lineAddressDriver);
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return new Message("getMapDistancesToDriver", messageBody);
+    }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (getLastOrderInfo): " + jsonResponse);
+    User registerResult(Message response) throws RegisterException {
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new OrderNotFoundException(jsonResponse);
-        } else if (jsonResponse.contains("UserNotFoundException")) {
-            throw new UserNotFoundException(jsonResponse);
-        } else if (jsonResponse.contains("NullPointerException")) {
-            throw new UserNotFoundException(jsonResponse);
+        if (failed(response, "RegisterException")) {
+            throw new RegisterException(response.getError());
         }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return userOf(response);
     }
 
-    @Override
-    public Order cancelOrder(long orderId) throws OrderNotFoundException {
-
-        Message src = new Message();
-        src.setMethodName("cancelOrder");
-
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("orderId", orderId + "");
-
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
-
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        System.out.println("SERVER OUT ---> CLIENT TAKE (cancelOrder): " + jsonResponse);
+    String loginResult(Message response) throws LoginException {
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new OrderNotFoundException(jsonResponse);
+        if (failed(response, "LoginException")) {
+            throw new LoginException();
         }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return bodyOf(response).get("accessKey").toString();
     }
 
-    @Override
-    public Order closeOrder(String accessToken, long orderId) throws
-            OrderNotFoundException, WrongStatusOrderException, DriverOrderActionException {
-
-        Message src = new Message();
-        src.setMethodName("closeOrder");
-
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
-        messageBody.getMap().put("orderId", orderId + "");
-
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+    Order makeOrderResult(Message response)
+            throws OrderMakeException, UserNotFoundException, InputDataWrongException {
 
-        pw.println(jsonMessage);
-        pw.flush();
-
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (failed(response, "OrderMakeException")) {
+            throw new OrderMakeException(response.getError());
+        } else if (failed(response, "UserNotFoundException")) {
+            throw new UserNotFoundException(response.getError());
+        } else if (failed(response, "InputDataWrongException")) {
+            throw new InputDataWrongException(response.getError());
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (closeOrder): " + jsonResponse);
+        return orderOf(response);
+    }
+
+    Order makeOrderAnonymousResult(Message response) throws OrderMakeException, InputDataWrongException {
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new OrderNotFoundException(jsonResponse);
-        } else if (jsonResponse.contains("WrongStatusOrderException")) {
-            throw new WrongStatusOrderException(jsonResponse);
-        } else if (jsonResponse.contains("DriverOrderActionException")) {
-            throw new DriverOrderActionException(jsonResponse);
+        if (failed(response, "OrderMakeException")) {
+            throw new OrderMakeException(response.getError());
+        } else if (failed(response, "InputDataWrongException")) {
+            throw new InputDataWrongException(response.getError());
         }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return orderOf(response);
     }
 
-    @Override
-    public Order takeOrder(String accessToken, long orderId) throws
-            OrderNotFoundException, WrongStatusOrderException, DriverOrderActionException {
-
-        Message src = new Message();
-        src.setMethodName("takeOrder");
+    Map<String, Object> calculateOrderResult(Message response) throws InputDataWrongException {
 
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
-        messageBody.getMap().put("orderId", orderId);
+        if (failed(response, "InputDataWrongException")) {
+            throw new InputDataWrongException(response.getError());
+        }
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+        return bodyOf(response);
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    //also the answer of cancelOrder
+    Order getOrderInfoResult(Message response) throws OrderNotFoundException {
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (failed(response, "OrderNotFoundException")) {
+            throw new OrderNotFoundException(response.getError());
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (takeOrder): " + jsonResponse);
+        return orderOf(response);
+    }
+
+    Order getLastOrderInfoResult(Message response) throws UserNotFoundException, OrderNotFoundException {
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new OrderNotFoundException(jsonResponse);
-        } else if (jsonResponse.contains("WrongStatusOrderException")) {
-            throw new WrongStatusOrderException(jsonResponse);
-        } else if (jsonResponse.contains("DriverOrderActionException")) {
-            throw new DriverOrderActionException(jsonResponse);
+        if (failed(response, "OrderNotFoundException")) {
+            throw new OrderNotFoundException(response.getError());
+        } else if (failed(response, "UserNotFoundException")) {
+            throw new UserNotFoundException(response.getError());
+        } else if (failed(response, "NullPointerException")) {
+            throw new UserNotFoundException(response.getError());
         }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        return getOrderFromMessage(response.getMessageBody().getMap());
+        return orderOf(response);
     }
 
-    @Override
-    public Map<Integer, Order> getMapDistancesToDriver(String orderStatus, String lineAddressDriver)
-                                                                                throws InputDataWrongException {
+    //answer of closeOrder and takeOrder
+    Order orderActionResult(Message response)
+            throws OrderNotFoundException, WrongStatusOrderException, DriverOrderActionException {
 
-        Message src = new Message();
-        src.setMethodName("getMapDistancesToDriver");
-
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("orderStatus", orderStatus);
-        messageBody.getMap().put("addressDriver", lineAddressDriver);
+        if (failed(response, "OrderNotFoundException")) {
+            throw new OrderNotFoundException(response.getError());
+        } else if (failed(response, "WrongStatusOrderException")) {
+            throw new WrongStatusOrderException(response.getError());
+        } else if (failed(response, "DriverOrderActionException")) {
+            throw new DriverOrderActionException(response.getError());
+        }
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+        return orderOf(response);
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    @SuppressWarnings("unchecked")
+    Map<Integer, Order> getMapDistancesToDriverResult(Message response) throws InputDataWrongException {
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (failed(response, "InputDataWrongException")) {
+            throw new InputDataWrongException(response.getError());
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (getMapDistanceToDriver): " + jsonResponse);
-
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("OrderNotFoundException")) {
-            throw new InputDataWrongException(jsonResponse);
+        if (bodyOf(response).get(Protocol.DISTANCES) instanceof Map) {
+            return (Map<Integer, Order>) bodyOf(response).get(Protocol.DISTANCES);
         }
 
-
         // json -> Object
-        Message response = gson.fromJson(jsonResponse, Message.class);
-
-        // json -> Object
-        Map<String, Object> mapOfOrders = response.getMessageBody().getMap();
+        Map<String, Object> mapOfOrders = bodyOf(response);
         Map<Integer, Order> distances = new HashMap<>();
 
         if (mapOfOrders != null) {
@@ -513,140 +391,286 @@ public class RemoteUserService implements UserService {
         return distances;
     }
 
-    @Override
-    public User getUser(String accessToken) {
+    @SuppressWarnings("unchecked")
+    List<Order> getAllOrdersUserResult(Message response) {
 
-        Message src = new Message();
-        src.setMethodName("getUser");
+        if (bodyOf(response).get(Protocol.ORDERS) instanceof List) {
+            return (List<Order>) bodyOf(response).get(Protocol.ORDERS);
+        }
 
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
+        // json -> Object
+        Map<String, Object> mapOfOrders = bodyOf(response);
+        List<Order> orders = new ArrayList<>();
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+        if (mapOfOrders != null) {
+            for (String key : mapOfOrders.keySet()) {
+                Message concreteMessage = gson.fromJson(mapOfOrders.get(key) + "", Message.class);
+                orders.add(getOrderFromMessage(concreteMessage.getMessageBody().getMap()));
+            }
+        }
 
-        pw.println(jsonMessage);
-        pw.flush();
+        return orders;
+    }
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+    //the server keeps the order of the page, the v1 map of orders does not
+    List<Order> getOrdersUserPageResult(Message response) {
+        List<Order> page = getAllOrdersUserResult(response);
+        if (!(bodyOf(response).get(Protocol.ORDERS) instanceof List)) {
+            page.sort((first, second) -> Long.compare(second.getId(), first.getId()));
         }
+        return page;
+    }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (getUser): " + jsonResponse);
-        Message response = gson.fromJson(jsonResponse, Message.class);
+    /**
+     * Asks the server to push the changes of NEW orders within {@code radius}
+     * km of the logged in driver to the listener, instead of asking for them again
+     * and again. Returns the NEW orders there now, nearest first. When the
+     * connection is lost the subscription is made again on a new one, see
+     * {@link NewOrdersListener#resubscribed(List)}.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Order> subscribeNewOrders(String accessToken, String lineAddressDriver, double radius,
+                                          NewOrdersListener listener)
+                                          throws InputDataWrongException, DriverNotFoundException {
+
+        //the subscription belongs to one session, so it always uses the same connection
+        ClientConnection connection = feedConnection();
+        FeedSubscription subscription = new FeedSubscription(accessToken, lineAddressDriver, radius, listener);
+
+        Message response = await(subscribe(connection, subscription));
+
+        if (failed(response, "InputDataWrongException")) {
+            connection.setPushListener(null);
+            throw new InputDataWrongException(response.getError());
+        } else if (failed(response, "DriverNotFoundException")) {
+            connection.setPushListener(null);
+            throw new DriverNotFoundException(response.getError());
+        } else if (response.getError() != null) {
+            connection.setPushListener(null);
+        }
+
+        List<Order> orders = (List<Order>) bodyOf(response).get(Protocol.ORDERS);
+
+        feedSubscription = subscription;
+        connection.setCloseListener(() -> feedLost(subscription));
+        return orders;
+    }
 
-        return getUserFromMessage(response.getMessageBody().getMap());
+    public void unsubscribeNewOrders() {
+        feedSubscription = null;
+        ClientConnection connection = feedConnection();
+        Message src = new Message(Protocol.UNSUBSCRIBE_NEW_ORDERS, new MessageBody());
+        bodyOf(await(callAsync(src, connection::send)));
+        connection.setPushListener(null);
     }
 
     @Override
-    public List<Order> getAllOrdersUser(String accessToken) {
+    public void close() throws IOException {
+        closed = true;
+        timer.shutdownNow();
+        pool.close();
+    }
 
-        Message src = new Message();
-        src.setMethodName("getAllOrdersUser");
+    private CompletableFuture<Message> subscribe(ClientConnection connection, FeedSubscription subscription) {
 
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
+        //set before the request, events may come right after the answer
+        connection.setPushListener(message -> pushed(message, subscription.listener));
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+        Message src = request(Protocol.SUBSCRIBE_NEW_ORDERS, "accessToken", subscription.accessToken);
+        src.getMessageBody().getMap().put("addressDriver", subscription.lineAddressDriver);
+        src.getMessageBody().getMap().put("radius", subscription.radius);
 
-        pw.println(jsonMessage);
-        pw.flush();
+        return callAsync(src, connection::send);
+    }
 
-        String jsonResponse =  null;
+    //reader thread of the lost connection
+    private void feedLost(FeedSubscription subscription) {
+        if (!closed && feedSubscription == subscription) {
+            timer.schedule(() -> CompletableFuture.runAsync(() -> resubscribe(subscription)),
+                    RESUBSCRIBE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //opening the connection may take long, so not on the timer thread
+    @SuppressWarnings("unchecked")
+    private void resubscribe(FeedSubscription subscription) {
+
+        if (closed || feedSubscription != subscription) {
+            return;
+        }
+
+        ClientConnection connection;
         try {
-            jsonResponse = bf.readLine();
+            connection = pool.first();
         } catch (IOException e) {
-            e.printStackTrace();
+            feedLost(subscription);
+            return;
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (getAllUserOrders): " + jsonResponse);
-        Message response = gson.fromJson(jsonResponse, Message.class);
+        subscribe(connection, subscription).whenComplete((response, e) -> {
+            if (feedSubscription != subscription) {
+                return;
+            }
 
-        // json -> Object
-        Map<String, Object> mapOfOrders = response.getMessageBody().getMap();
-        List<Order> orders = new ArrayList<>();
+            if (e != null) {
+                feedLost(subscription);
 
-        if (mapOfOrders != null) {
-            for (String key : mapOfOrders.keySet()) {
-                Message concreteMessage = gson.fromJson(mapOfOrders.get(key) + "", Message.class);
-                orders.add(getOrderFromMessage(concreteMessage.getMessageBody().getMap()));
+            } else if (response.getError() != null) {
+                connection.setPushListener(null);
+                feedSubscription = null;
+                subscription.listener.subscriptionLost(new IllegalStateException(response.getError()));
+
+            } else {
+                connection.setCloseListener(() -> feedLost(subscription));
+                subscription.listener.resubscribed((List<Order>) bodyOf(response).get(Protocol.ORDERS));
             }
-        }
+        });
+    }
 
-        return orders;
+    private ClientConnection feedConnection() {
+        try {
+            return pool.first();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not connect to server", e);
+        }
     }
 
-    @Override
-    public User updateUser(Map<String, String> map, String accessToken) throws RegisterException {
+    private static void pushed(Message message, NewOrdersListener listener) {
 
-        Message src = new Message();
-        src.setMethodName("updateUser");
+        Map<String, Object> body = message.getMessageBody().getMap();
+        Order order = (Order) body.get(Protocol.ORDER);
 
-        MessageBody messageBody = new MessageBody();
-        for (String key : map.keySet()) {
-            messageBody.getMap().put(key, map.get(key));
+        switch (message.getMethodName()) {
+            case Protocol.ORDER_ADDED:
+                listener.orderAdded(order, ((Number) body.get("distance")).intValue());
+                break;
+            case Protocol.ORDER_TAKEN:
+                listener.orderTaken(order);
+                break;
+            case Protocol.ORDER_CANCELLED:
+                listener.orderCancelled(order);
+                break;
+            default:
         }
-        messageBody.getMap().put("accessToken", accessToken);
+    }
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+    /**
+     * Starts a batch: the calls added to it go to the server in one request
+     * when {@link BatchRequest#execute()} is called.
+     */
+    public BatchRequest batch() {
+        return new BatchRequest(this);
+    }
 
-        pw.println(jsonMessage);
-        pw.flush();
+    //one round trip for all requests, the responses come in the same order
+    List<Message> callBatch(List<Message> requests) {
 
-        String jsonResponse =  null;
-        try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+        Message src = new Message();
+        src.setMethodName(Protocol.BATCH);
+        src.setBatch(requests);
+
+        Message response = call(src);
+        if (response.getError() != null) {
+            throw new IllegalStateException(response.getError());
         }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (updateUser): " + jsonResponse);
+        return response.getBatch();
+    }
 
-        if (jsonResponse == null) {
-            // ??
-        } else if (jsonResponse.contains("RegisterException")) {
-            throw new RegisterException(jsonResponse);
-        }
+    //sends request and waits only for its own response, other threads may use the connection meanwhile
+    private Message call(Message request) {
+        return await(callAsync(request));
+    }
 
-        Message response = gson.fromJson(jsonResponse, Message.class);
+    CompletableFuture<Message> callAsync(Message request) {
+        return callAsync(request, pool::send);
+    }
 
-        return getUserFromMessage(response.getMessageBody().getMap());
+    //completes with the response, with an error after the timeout, never blocks the caller
+    private CompletableFuture<Message> callAsync(Message request,
+                                                 Function<Message, CompletableFuture<Message>> transport) {
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        attempt(request, transport, 0, result);
+        return result;
     }
 
-    @Override
-    public User deleteUser(String accessToken) {
+    private void attempt(Message request, Function<Message, CompletableFuture<Message>> transport,
+                         int attempt, CompletableFuture<Message> result) {
 
-        Message src = new Message();
-        src.setMethodName("deleteUser");
+        CompletableFuture<Message> response = transport.apply(request);
 
-        MessageBody messageBody = new MessageBody();
-        messageBody.getMap().put("accessToken", accessToken);
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (response.cancel(false)) {
+                result.completeExceptionally(new IllegalStateException("Request " + request.getMethodName()
+                        + " timed out after " + config.getRequestTimeoutMs() + " ms"));
+            }
+        }, config.getRequestTimeoutMs(), TimeUnit.MILLISECONDS);
+
+        response.whenComplete((message, e) -> {
+            timeout.cancel(false);
 
-        src.setMessageBody(messageBody);
-        String jsonMessage = gson.toJson(src);
+            if (e instanceof CancellationException) {
+                return;
+            }
+            if (e != null) {
+                result.completeExceptionally(new IllegalStateException(
+                        "Request " + request.getMethodName() + " failed", e));
 
-        pw.println(jsonMessage);
-        pw.flush();
+            //the server has not started a refused request, so it is safe to send it again
+            } else if (attempt < config.getBusyRetries() && failed(message, "ServerBusyException")) {
+                timer.schedule(() -> attempt(request, transport, attempt + 1, result),
+                        retryAfterMs(message), TimeUnit.MILLISECONDS);
+
+            } else {
+                result.complete(message);
+            }
+        });
+    }
 
-        String jsonResponse =  null;
+    //callAsync always completes, the timeout is inside
+    private static Message await(CompletableFuture<Message> response) {
         try {
-            jsonResponse = bf.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return response.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            throw (IllegalStateException) e.getCause();
         }
+    }
 
-        System.out.println("SERVER OUT ---> CLIENT TAKE (deleteUser): " + jsonResponse);
-        Message response = gson.fromJson(jsonResponse, Message.class);
+    private static long retryAfterMs(Message response) {
+        Matcher matcher = RETRY_AFTER.matcher(response.getError());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 200;
+    }
 
-        return getUserFromMessage(response.getMessageBody().getMap());
+    private static boolean failed(Message response, String exceptionName) {
+        return response.getError() != null && response.getError().contains(exceptionName);
     }
 
-    //additional methods for client
+    //errors not declared by the called method
+    private static Map<String, Object> bodyOf(Message response) {
+        if (response.getError() != null) {
+            throw new IllegalStateException(response.getError());
+        }
+        return response.getMessageBody().getMap();
+    }
+
+    //v2 servers send typed objects which are already decoded while reading the response
+    private Order orderOf(Message response) {
+        Map<String, Object> body = bodyOf(response);
+        return body.get(Protocol.ORDER) instanceof Order
+                ? (Order) body.get(Protocol.ORDER) : getOrderFromMessage(body);
+    }
+
+    User userOf(Message response) {
+        Map<String, Object> body = bodyOf(response);
+        return body.get(Protocol.USER) instanceof User
+                ? (User) body.get(Protocol.USER) : getUserFromMessage(body);
+    }
+
+    //additional methods for client, decoders of the protocol v1
     public User getUserFromMessage(Map<String, Object> map) {
 
         //create User
@@ -713,6 +737,26 @@ public class RemoteUserService implements UserService {
         order.setPrice(Integer.parseInt(map.get("price").toString()));
         order.setMessage(map.get("message").toString());
 
+        //servers before versions do not send it
+        if (map.get("version") != null) {
+            order.setVersion(Long.parseLong(map.get("version").toString()));
+        }
+
         return order;
     }
-}
\ No newline at end of file
+
+    private static class FeedSubscription {
+
+        private final String accessToken;
+        private final String lineAddressDriver;
+        private final double radius;
+        private final NewOrdersListener listener;
+
+        FeedSubscription(String accessToken, String lineAddressDriver, double radius, NewOrdersListener listener) {
+            this.accessToken = accessToken;
+            this.lineAddressDriver = lineAddressDriver;
+            this.radius = radius;
+            this.listener = listener;
+        }
+    }
+}
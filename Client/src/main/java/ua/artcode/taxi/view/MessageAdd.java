@@ -1,11 +1,12 @@
 package ua.artcode.taxi.view;
 
-import ua.artcode.taxi.exception.OrderNotFoundException;
-import ua.artcode.taxi.exception.UserNotFoundException;
+import ua.artcode.taxi.exception.TaxiAppException;
 import ua.artcode.taxi.model.ClientAccessToken;
 import ua.artcode.taxi.model.Order;
 import ua.artcode.taxi.model.User;
 import ua.artcode.taxi.model.UserIdentifier;
+import ua.artcode.taxi.remote.BatchRequest;
+import ua.artcode.taxi.remote.BatchResult;
 import ua.artcode.taxi.service.UserService;
 import ua.artcode.taxi.view.driver_view.DriverOrderInfo;
 import ua.artcode.taxi.view.passenger_view.PassengerOrderInfo;
@@ -78,10 +79,15 @@ public class MessageAdd extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 try {
-                    User currentUser = userService.getUser(ClientAccessToken.accessToken);
-
-                    Order currentOrder = userService.getOrderInfo(userService.getLastOrderInfo
-                            (ClientAccessToken.accessToken).getId());
+                    //the last order comes whole, no need to ask for it once more by id
+                    BatchRequest batch = BatchRequest.of(userService);
+                    BatchResult<User, RuntimeException> userResult = batch.getUser(ClientAccessToken.accessToken);
+                    BatchResult<Order, TaxiAppException> orderResult =
+                            batch.getLastOrderInfo(ClientAccessToken.accessToken);
+                    batch.execute();
+
+                    User currentUser = userResult.get();
+                    Order currentOrder = orderResult.get();
                     dispose();
 
                     if (currentUser.getIdentifier().equals(UserIdentifier.P)) {
@@ -91,9 +97,7 @@ public class MessageAdd extends JFrame {
                         new DriverOrderInfo(userService, currentOrder);
                     }
 
-                } catch (OrderNotFoundException e1) {
-                    e1.printStackTrace();
-                } catch (UserNotFoundException e1) {
+                } catch (TaxiAppException e1) {
                     e1.printStackTrace();
                 }
 
@@ -3,6 +3,8 @@ package ua.artcode.taxi.view.driver_view;
 import ua.artcode.taxi.model.ClientAccessToken;
 import ua.artcode.taxi.model.Order;
 import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.remote.BatchRequest;
+import ua.artcode.taxi.remote.BatchResult;
 import ua.artcode.taxi.service.UserService;
 
 import javax.swing.*;
@@ -47,22 +49,30 @@ public class DriverHistory extends JFrame {
         GridLayout gridLayout = new GridLayout(14, 1);
         setLayout(gridLayout);
 
+        //user and orders in one round trip
+        BatchRequest batch = BatchRequest.of(userService);
+        BatchResult<User, RuntimeException> userResult = batch.getUser(ClientAccessToken.getAccessToken());
+        BatchResult<List<Order>, RuntimeException> ordersResult =
+                batch.getOrdersUserPage(ClientAccessToken.getAccessToken(), 0, 10);
+        batch.execute();
+
         userLabel = new JLabel("DRIVER:");
-        final User currentDriver = userService.getUser(ClientAccessToken.getAccessToken());
+        final User currentDriver = userResult.get();
         userText = new JTextField("id " + currentDriver.getId() +
                 ", name " + currentDriver.getName() +
                 ", phone " + currentDriver.getPhone());
         userText.setEditable(false);
 
         //create list orders
-        List<Order> allUserOrders = userService.getAllOrdersUser(ClientAccessToken.getAccessToken());
+        //the newest 10 orders, newest first
+        List<Order> allUserOrders = ordersResult.get();
         int length = allUserOrders.size() < 10 ? allUserOrders.size() : 10;
         String[] textOrders = new String[10];
 
         orderLabel = new JLabel("YOU HAVE " + length + " ORDERS:");
 
-        for (int i = length - 1; i >= 0; i--) {
-            textOrders[length - 1 - i] = allUserOrders.get(i).toStringForView();
+        for (int i = 0; i < length; i++) {
+            textOrders[i] = allUserOrders.get(i).toStringForView();
         }
         for (int i = length; i < 10; i++) {
             textOrders[i] = "";
@@ -0,0 +1,217 @@
+package ua.artcode.taxi.load;
+
+/**
+ * Load test settings. Every value can be overridden with a system property,
+ * e.g. {@code java -Dtaxi.load.passengers=500 -jar LoadTest.jar}.
+ */
+public class LoadConfig {
+
+    public static final String DRIVERS_POLL = "poll";
+    public static final String DRIVERS_SUBSCRIBE = "subscribe";
+
+    private String host;
+    private int port;
+    private boolean embeddedServer;
+    private long geoLatencyMs;
+    private int passengers;
+    private int drivers;
+    private double passengerArrivalsPerSecond;
+    private double driverArrivalsPerSecond;
+    private long passengerThinkMs;
+    private long driverThinkMs;
+    private long rideMs;
+    private double cancelRate;
+    private long orderWaitMs;
+    private String driverMode;
+    private long pollMs;
+    private int durationSeconds;
+
+    public LoadConfig() {
+        host = "127.0.0.1";
+        port = 43009;
+        embeddedServer = true;
+        geoLatencyMs = 20;
+        passengers = 100;
+        drivers = 20;
+        passengerArrivalsPerSecond = 20;
+        driverArrivalsPerSecond = 10;
+        passengerThinkMs = 2000;
+        driverThinkMs = 500;
+        rideMs = 3000;
+        cancelRate = 0.2;
+        orderWaitMs = 10000;
+        driverMode = DRIVERS_POLL;
+        pollMs = 1000;
+        durationSeconds = 60;
+    }
+
+    public static LoadConfig fromSystemProperties() {
+
+        LoadConfig config = new LoadConfig();
+
+        config.setHost(System.getProperty("taxi.load.host", config.getHost()));
+        config.setPort(Integer.getInteger("taxi.load.port", config.getPort()));
+        config.setEmbeddedServer(Boolean.parseBoolean(System.getProperty("taxi.load.embeddedServer",
+                String.valueOf(config.isEmbeddedServer()))));
+        config.setGeoLatencyMs(Long.getLong("taxi.load.geoLatencyMs", config.getGeoLatencyMs()));
+        config.setPassengers(Integer.getInteger("taxi.load.passengers", config.getPassengers()));
+        config.setDrivers(Integer.getInteger("taxi.load.drivers", config.getDrivers()));
+        config.setPassengerArrivalsPerSecond(Double.parseDouble(System.getProperty(
+                "taxi.load.passengerArrivalsPerSecond", String.valueOf(config.getPassengerArrivalsPerSecond()))));
+        config.setDriverArrivalsPerSecond(Double.parseDouble(System.getProperty(
+                "taxi.load.driverArrivalsPerSecond", String.valueOf(config.getDriverArrivalsPerSecond()))));
+        config.setPassengerThinkMs(Long.getLong("taxi.load.passengerThinkMs", config.getPassengerThinkMs()));
+        config.setDriverThinkMs(Long.getLong("taxi.load.driverThinkMs", config.getDriverThinkMs()));
+        config.setRideMs(Long.getLong("taxi.load.rideMs", config.getRideMs()));
+        config.setCancelRate(Double.parseDouble(System.getProperty("taxi.load.cancelRate",
+                String.valueOf(config.getCancelRate()))));
+        config.setOrderWaitMs(Long.getLong("taxi.load.orderWaitMs", config.getOrderWaitMs()));
+        config.setDriverMode(System.getProperty("taxi.load.driverMode", config.getDriverMode()));
+        config.setPollMs(Long.getLong("taxi.load.pollMs", config.getPollMs()));
+        config.setDurationSeconds(Integer.getInteger("taxi.load.durationSeconds", config.getDurationSeconds()));
+
+        return config;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    //true starts RunServer in this process, with the Google Maps stub and users in memory
+    public boolean isEmbeddedServer() {
+        return embeddedServer;
+    }
+
+    public void setEmbeddedServer(boolean embeddedServer) {
+        this.embeddedServer = embeddedServer;
+    }
+
+    //how long every call of the Google Maps stub of the embedded server waits
+    public long getGeoLatencyMs() {
+        return geoLatencyMs;
+    }
+
+    public void setGeoLatencyMs(long geoLatencyMs) {
+        this.geoLatencyMs = geoLatencyMs;
+    }
+
+    public int getPassengers() {
+        return passengers;
+    }
+
+    public void setPassengers(int passengers) {
+        this.passengers = passengers;
+    }
+
+    public int getDrivers() {
+        return drivers;
+    }
+
+    public void setDrivers(int drivers) {
+        this.drivers = drivers;
+    }
+
+    //passengers come one by one, the time between two is random with this mean rate
+    public double getPassengerArrivalsPerSecond() {
+        return passengerArrivalsPerSecond;
+    }
+
+    public void setPassengerArrivalsPerSecond(double passengerArrivalsPerSecond) {
+        this.passengerArrivalsPerSecond = passengerArrivalsPerSecond;
+    }
+
+    public double getDriverArrivalsPerSecond() {
+        return driverArrivalsPerSecond;
+    }
+
+    public void setDriverArrivalsPerSecond(double driverArrivalsPerSecond) {
+        this.driverArrivalsPerSecond = driverArrivalsPerSecond;
+    }
+
+    //mean pause between two orders of a passenger
+    public long getPassengerThinkMs() {
+        return passengerThinkMs;
+    }
+
+    public void setPassengerThinkMs(long passengerThinkMs) {
+        this.passengerThinkMs = passengerThinkMs;
+    }
+
+    //mean pause of a driver after a ride and before taking an order
+    public long getDriverThinkMs() {
+        return driverThinkMs;
+    }
+
+    public void setDriverThinkMs(long driverThinkMs) {
+        this.driverThinkMs = driverThinkMs;
+    }
+
+    //mean time from taking an order to closing it
+    public long getRideMs() {
+        return rideMs;
+    }
+
+    public void setRideMs(long rideMs) {
+        this.rideMs = rideMs;
+    }
+
+    //share of orders cancelled by the passenger before a driver takes them
+    public double getCancelRate() {
+        return cancelRate;
+    }
+
+    public void setCancelRate(double cancelRate) {
+        this.cancelRate = cancelRate;
+    }
+
+    //a passenger cancels an order nobody took in this time
+    public long getOrderWaitMs() {
+        return orderWaitMs;
+    }
+
+    public void setOrderWaitMs(long orderWaitMs) {
+        this.orderWaitMs = orderWaitMs;
+    }
+
+    //poll - drivers ask getMapDistancesToDriver, subscribe - the server pushes new orders
+    public String getDriverMode() {
+        return driverMode;
+    }
+
+    public void setDriverMode(String driverMode) {
+        this.driverMode = driverMode;
+    }
+
+    public boolean isDriversSubscribe() {
+        return DRIVERS_SUBSCRIBE.equalsIgnoreCase(driverMode);
+    }
+
+    //how often waiting passengers and polling drivers ask again
+    public long getPollMs() {
+        return pollMs;
+    }
+
+    public void setPollMs(long pollMs) {
+        this.pollMs = pollMs;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+}
@@ -0,0 +1,71 @@
+package ua.artcode.taxi.load;
+
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.metrics.OperationStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text tables of the client side latencies, in milliseconds, measured
+ * from the call until its response is decoded.
+ */
+public class LoadReport {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private LoadReport() {
+    }
+
+    //one line while the test runs
+    public static String progress(Metrics metrics, long elapsedNanos) {
+
+        long calls = 0;
+        long errors = 0;
+        for (OperationStats stats : metrics.getAll()) {
+            calls += stats.getCount();
+            errors += stats.getErrors();
+        }
+
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format(Locale.ROOT, "%6.0f s: %d calls, %d errors, %.1f calls/s",
+                seconds, calls, errors, calls / seconds);
+    }
+
+    public static String format(Metrics metrics, long elapsedNanos) {
+
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        List<OperationStats> operations = new ArrayList<>(metrics.getAll());
+        operations.sort(Comparator.comparing(OperationStats::getName));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%n%-24s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "command", "count", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms"));
+
+        long calls = 0;
+        long errors = 0;
+        for (OperationStats stats : operations) {
+            if (stats.getCount() == 0) {
+                continue;
+            }
+            calls += stats.getCount();
+            errors += stats.getErrors();
+
+            long[] values = stats.getLatency().percentiles(QUANTILES);
+            report.append(String.format(Locale.ROOT, "%-24s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    stats.getName(), stats.getCount(), stats.getErrors(), stats.getCount() / seconds,
+                    millis(values[0]), millis(values[1]), millis(values[2]), millis(values[3]), millis(values[4])));
+        }
+
+        report.append(String.format(Locale.ROOT, "%-24s %9d %7d %9.1f%n", "total", calls, errors, calls / seconds));
+        return report.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
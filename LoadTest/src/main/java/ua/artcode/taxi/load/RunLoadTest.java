@@ -0,0 +1,164 @@
+package ua.artcode.taxi.load;
+
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.run.RunServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives simulated passengers and drivers through the socket protocol of
+ * RunServer and prints throughput and latency percentiles per command.
+ *
+ * By default the server is started in this process with the Google Maps
+ * stub and users kept in memory, so the test needs neither internet nor
+ * MySQL. With {@code -Dtaxi.load.embeddedServer=false} it goes to
+ * {@code taxi.load.host:taxi.load.port} instead; start that server with
+ * {@code -Dtaxi.server.geo=stub -Dtaxi.server.userStorage=memory
+ * -Dtaxi.server.rateLimits=} to test it offline.
+ */
+public class RunLoadTest {
+
+    //makes the phones of one run unique, a server can take several runs
+    static final long RUN_ID = System.currentTimeMillis();
+
+    public static void main(String[] args) throws Exception {
+
+        LoadConfig config = LoadConfig.fromSystemProperties();
+
+        if (config.isEmbeddedServer()) {
+            startEmbeddedServer(config);
+        }
+        awaitServer(config);
+
+        Metrics metrics = new Metrics();
+        List<SimulatedUser> users = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        System.out.println("Load test: " + config.getPassengers() + " passengers, " + config.getDrivers()
+                + " drivers (" + config.getDriverMode() + "), " + config.getDurationSeconds() + " s against "
+                + config.getHost() + ":" + config.getPort());
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+
+        Thread drivers = arrivals("load-drivers", config.getDrivers(), config.getDriverArrivalsPerSecond(), end,
+                index -> new SimulatedDriver(index, config, metrics), users, threads);
+        Thread passengers = arrivals("load-passengers", config.getPassengers(),
+                config.getPassengerArrivalsPerSecond(), end,
+                index -> new SimulatedPassenger(index, config, metrics), users, threads);
+
+        long left;
+        while ((left = end - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(left, TimeUnit.SECONDS.toNanos(10)));
+            System.out.println(LoadReport.progress(metrics, System.nanoTime() - start));
+        }
+
+        drivers.interrupt();
+        passengers.interrupt();
+        drivers.join();
+        passengers.join();
+
+        synchronized (users) {
+            users.forEach(SimulatedUser::stop);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        //users finish the call they are in, thinking ones are woken up
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+
+        System.out.println(LoadReport.format(metrics, elapsed));
+        System.exit(0);
+    }
+
+    interface UserFactory {
+        SimulatedUser create(int index);
+    }
+
+    //starts count users with random gaps of mean 1/perSecond, until the end of the test
+    private static Thread arrivals(String name, int count, double perSecond, long end, UserFactory factory,
+                                  List<SimulatedUser> users, List<Thread> threads) {
+
+        Thread arrivals = new Thread(() -> {
+            try {
+                for (int i = 0; i < count && System.nanoTime() < end; i++) {
+                    if (perSecond > 0) {
+                        TimeUnit.MILLISECONDS.sleep(SimulatedUser.randomExponential(1000 / perSecond));
+                    }
+
+                    SimulatedUser user = factory.create(i);
+                    Thread thread = new Thread(user, name + "-" + i);
+                    thread.setDaemon(true);
+
+                    synchronized (users) {
+                        users.add(user);
+                    }
+                    synchronized (threads) {
+                        threads.add(thread);
+                    }
+                    thread.start();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+
+        arrivals.start();
+        return arrivals;
+    }
+
+    private static void startEmbeddedServer(LoadConfig config) {
+
+        //explicit -Dtaxi.server.* settings win
+        setDefault("taxi.server.port", String.valueOf(config.getPort()));
+        setDefault("taxi.server.geo", "stub");
+        setDefault("taxi.server.geoStubLatencyMs", String.valueOf(config.getGeoLatencyMs()));
+        setDefault("taxi.server.userStorage", "memory");
+        setDefault("taxi.server.rateLimits", "");
+        setDefault("taxi.server.maxConnectionsPerIp", String.valueOf(10 * (config.getPassengers()
+                + config.getDrivers())));
+
+        Thread server = new Thread(() -> {
+            try {
+                RunServer.main(new String[0]);
+            } catch (IOException e) {
+                System.out.println("Embedded server failed: " + e);
+            }
+        }, "load-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static void awaitServer(LoadConfig config) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(config.getHost(), config.getPort()), 1000);
+                return;
+
+            } catch (IOException e) {
+                if (attempt >= 50) {
+                    throw new IllegalStateException("Server " + config.getHost() + ":" + config.getPort()
+                            + " does not answer", e);
+                }
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+    }
+}
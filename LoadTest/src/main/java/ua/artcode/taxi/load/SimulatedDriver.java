@@ -0,0 +1,130 @@
+package ua.artcode.taxi.load;
+
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.metrics.OperationStats;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.remote.NewOrdersListener;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers, logs in and then again and again: finds the nearest NEW
+ * order, takes it, rides and closes it. In poll mode the driver asks
+ * getMapDistancesToDriver every {@code pollMs}; in subscribe mode the
+ * server pushes the orders, see {@link #subscribe(String)}. Orders taken by
+ * another driver first fail to take and count as errors of takeOrder.
+ */
+public class SimulatedDriver extends SimulatedUser implements NewOrdersListener {
+
+    //the whole city
+    private static final double RADIUS_KM = 50;
+
+    private final String address = randomAddress();
+
+    //order id -> distance in km, filled by the feed in subscribe mode
+    private final Map<Long, Integer> offered = new ConcurrentHashMap<>();
+
+    public SimulatedDriver(int index, LoadConfig config, Metrics metrics) {
+        super(index, config, metrics);
+    }
+
+    @Override
+    protected String start() throws Exception {
+
+        Map<String, String> map = new HashMap<>();
+        map.put("phone", phone("d"));
+        map.put("pass", "load");
+        map.put("name", "Driver" + index);
+        map.put("carType", "sedan");
+        map.put("carModel", "skoda");
+        map.put("carNumber", "LT" + index);
+
+        service.registerDriver(map);
+        String accessToken = service.login(map.get("phone"), map.get("pass"));
+
+        if (config.isDriversSubscribe()) {
+            subscribe(accessToken);
+        }
+        return accessToken;
+    }
+
+    @Override
+    protected void step(String accessToken) throws Exception {
+
+        think(config.getDriverThinkMs());
+
+        Long orderId = config.isDriversSubscribe() ? nearestOffered() : nearestPolled();
+        if (orderId == null) {
+            TimeUnit.MILLISECONDS.sleep(config.getPollMs());
+            return;
+        }
+
+        offered.remove(orderId);
+        service.takeOrder(accessToken, orderId);
+
+        think(config.getRideMs());
+        service.closeOrder(accessToken, orderId);
+    }
+
+    //subscribeNewOrders is not a UserService method, so it is timed here
+    private void subscribe(String accessToken) throws Exception {
+
+        OperationStats stats = metrics.get("subscribeNewOrders");
+        long start = stats.start();
+        boolean failed = true;
+        try {
+            List<Order> now = remote.subscribeNewOrders(accessToken, address, RADIUS_KM, this);
+            for (Order order : now) {
+                offered.putIfAbsent(order.getId(), order.getDistance());
+            }
+            failed = false;
+
+        } finally {
+            stats.stop(start, failed);
+        }
+    }
+
+    private Long nearestOffered() {
+        return offered.entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private Long nearestPolled() throws Exception {
+        Map<Integer, Order> distances = service.getMapDistancesToDriver(OrderStatus.NEW.toString(), address);
+        return distances.entrySet().stream()
+                .min(Comparator.comparing(Map.Entry::getKey))
+                .map(entry -> entry.getValue().getId())
+                .orElse(null);
+    }
+
+    @Override
+    public void orderAdded(Order order, int distance) {
+        offered.put(order.getId(), distance);
+    }
+
+    @Override
+    public void orderTaken(Order order) {
+        offered.remove(order.getId());
+    }
+
+    @Override
+    public void orderCancelled(Order order) {
+        offered.remove(order.getId());
+    }
+
+    @Override
+    public void resubscribed(List<Order> orders) {
+        offered.clear();
+        for (Order order : orders) {
+            offered.put(order.getId(), order.getDistance());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ua.artcode.taxi.load;
+
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers, logs in and then again and again: thinks, asks the price,
+ * makes an order and waits until a driver takes it. Some orders are
+ * cancelled on purpose, the rest when nobody takes them in
+ * {@code orderWaitMs}.
+ */
+public class SimulatedPassenger extends SimulatedUser {
+
+    public SimulatedPassenger(int index, LoadConfig config, Metrics metrics) {
+        super(index, config, metrics);
+    }
+
+    @Override
+    protected String start() throws Exception {
+
+        Map<String, String> map = new HashMap<>();
+        map.put("phone", phone("p"));
+        map.put("pass", "load");
+        map.put("name", "Passenger" + index);
+        map.put("homeAddress", randomAddress());
+
+        service.registerPassenger(map);
+        return service.login(map.get("phone"), map.get("pass"));
+    }
+
+    @Override
+    protected void step(String accessToken) throws Exception {
+
+        think(config.getPassengerThinkMs());
+
+        String from = randomAddress();
+        String to = randomAddress();
+
+        service.calculateOrder(from, to);
+        Order order = service.makeOrder(accessToken, from, to, "load test");
+
+        if (ThreadLocalRandom.current().nextDouble() < config.getCancelRate()) {
+            think(config.getPollMs());
+            service.cancelOrder(order.getId());
+            return;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getOrderWaitMs());
+        while (isRunning() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(config.getPollMs());
+            if (service.getOrderInfo(order.getId()).getOrderStatus() != OrderStatus.NEW) {
+                service.getLastOrderInfo(accessToken);
+                return;
+            }
+        }
+        if (isRunning()) {
+            service.cancelOrder(order.getId());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ua.artcode.taxi.load;
+
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.remote.ClientConfig;
+import ua.artcode.taxi.remote.RemoteUserService;
+import ua.artcode.taxi.service.UserService;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client of the load test with its own connection to the server.
+ * Every call through {@link #service} is counted in the metrics under the
+ * method name.
+ */
+public abstract class SimulatedUser implements Runnable {
+
+    private final static Logger LOG = Logger.getLogger(SimulatedUser.class);
+
+    private static final String[] STREETS = {"Khreschatik", "Zhukova", "Starokievskaya", "Perova",
+            "Shevchenka", "Liskovskaya", "Saksaganskogo", "Velyka_Vasylkivska", "Obolonska", "Lvivska"};
+
+    protected final int index;
+    protected final LoadConfig config;
+    protected final Metrics metrics;
+    protected final RemoteUserService remote;
+    protected final UserService service;
+
+    private volatile boolean running = true;
+
+    protected SimulatedUser(int index, LoadConfig config, Metrics metrics) {
+        this.index = index;
+        this.config = config;
+        this.metrics = metrics;
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setHost(config.getHost());
+        clientConfig.setPort(config.getPort());
+
+        this.remote = new RemoteUserService(clientConfig);
+        this.service = metrics.instrument(UserService.class, remote, "");
+    }
+
+    @Override
+    public void run() {
+        try {
+            String accessToken = start();
+            while (running) {
+                try {
+                    step(accessToken);
+
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    //counted by the metrics already, a real user would try again a bit later
+                    LOG.debug(getClass().getSimpleName() + " " + index + " failed: " + e);
+                    think(config.getPollMs());
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            //could not register or log in, the user leaves
+            LOG.warn(getClass().getSimpleName() + " " + index + " stopped: " + e);
+        } finally {
+            try {
+                remote.close();
+            } catch (IOException e) {
+                LOG.warn("Can not close connection of " + getClass().getSimpleName() + " " + index);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    protected boolean isRunning() {
+        return running;
+    }
+
+    //registers and logs in, returns the access token
+    protected abstract String start() throws Exception;
+
+    //one round of work, repeated until the test stops
+    protected abstract void step(String accessToken) throws Exception;
+
+    //phones are unique within one run of the test
+    protected String phone(String prefix) {
+        return prefix + index + "-" + Long.toString(RunLoadTest.RUN_ID, 36);
+    }
+
+    //"Ukraine Kiev Street 12", the format Address(String) reads
+    protected static String randomAddress() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return "Ukraine Kiev " + STREETS[random.nextInt(STREETS.length)] + " " + (1 + random.nextInt(200));
+    }
+
+    //exponentially distributed, so pauses of many users do not line up
+    protected static void think(long meanMs) throws InterruptedException {
+        if (meanMs > 0) {
+            TimeUnit.MILLISECONDS.sleep(randomExponential(meanMs));
+        }
+    }
+
+    static long randomExponential(double mean) {
+        return (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+}
@@ -1,36 +1,61 @@
 package ua.artcode.taxi.dao;
 
 import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
 import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AppDB {
 
     private AtomicInteger userIdCounter = new AtomicInteger(1);
     private AtomicInteger orderIdCounter = new AtomicInteger(1);
-    private Map<User, List<Order>> users;
-    private Collection<Order> orders;
+    private Map<Integer, User> users = new ConcurrentHashMap<>();
+
+    //ids of the orders of every user by the user id, in the order they were added;
+    //the pages and the changes of the orders of a user are read from it
+    private Map<Integer, OrderIdList> userOrderIds = new ConcurrentHashMap<>();
+
+    //every phone belongs to one passenger or driver, login and registration look it up here;
+    //anonymous orders make a new user every time and are not in it
+    private Map<String, User> usersByPhone = new ConcurrentHashMap<>();
+    private OrderIndex orderIndex = new OrderIndex();
+    private Collection<Order> orders = new OrderLog(orderIndex);
+
+    //orders by their status, moved under changeLock on every change of an order
+    private Map<OrderStatus, Map<Long, Order>> ordersByStatus = new EnumMap<>(OrderStatus.class);
+
+    //versions are counted in the lower 32 bits, above them is a random number of this run,
+    //so a version of a client from before a restart is told apart; the v1 maps carry
+    //numbers as doubles, the versions stay below 2^52
+    private static final int EPOCH_SHIFT = 32;
+    private final long epoch = ThreadLocalRandom.current().nextInt(1, 1 << 20);
+
+    private final Object changeLock = new Object();
+    private AtomicLong orderVersionCounter = new AtomicLong(epoch << EPOCH_SHIFT);
+    private volatile long publishedVersion = epoch << EPOCH_SHIFT;
 
     public AppDB() {
-        users = new ConcurrentHashMap<>();
-        orders = new CopyOnWriteArrayList<>();
+        indexStatuses();
     }
 
     public AppDB(Map<User, List<Order>> users, List<Order> orders) {
-        this.users = users;
-        this.orders = orders;
+        indexOrders(orders);
+        indexUsers(users);
     }
 
-    public Map<User, List<Order>> getUsers() {
-        return users;
+    public Collection<User> getUsers() {
+        return users.values();
     }
 
+    //users with their orders, the ids they have are kept
     public void setUsers(Map<User, List<Order>> users) {
-        this.users = users;
+        indexUsers(users);
     }
 
     public Collection<Order> getOrders() {
@@ -38,7 +63,7 @@ public class AppDB {
     }
 
     public void setOrders(List<Order> orders) {
-        this.orders = orders;
+        indexOrders(orders);
     }
 
     @Override
@@ -49,10 +74,23 @@ public class AppDB {
                 '}';
     }
 
+    //null if the phone is taken, of two registrations with one phone only the first gets in
     public User addUser(User user){
 
+        if (user == null || hasAccount(user) && user.getPhone() == null) {
+            return null;
+        }
+
+        //the user is stored with its id before login can find it by the phone
         user.setId(userIdCounter.getAndIncrement());
-        users.put(user, new ArrayList<>());
+        userOrderIds.put(user.getId(), new OrderIdList());
+        users.put(user.getId(), user);
+
+        if (hasAccount(user) && usersByPhone.putIfAbsent(user.getPhone(), user) != null) {
+            users.remove(user.getId());
+            userOrderIds.remove(user.getId());
+            return null;
+        }
 
         return user;
     }
@@ -60,39 +98,342 @@ public class AppDB {
     public Order addOrder(User user, Order order){
 
         order.setId(orderIdCounter.getAndIncrement());
-        orders.add(order);
+        orderIndex.put(order);
 
-        List<Order> newList = users.get(user);
-        newList.add(order);
-        users.replace(user, newList);
+        orderIdsOf(user).add(order.getId());
+        orderChanged(order);
 
         return order;
     }
 
     public Order findOrder(long id){
-        for (Order order : orders) {
-            if (order.getId() == id) {
-                return order;
+        return orderIndex.get(id);
+    }
+
+    public User findUser(String phone){
+        return phone == null ? null : usersByPhone.get(phone);
+    }
+
+    public User findUser(int id) {
+        return users.get(id);
+    }
+
+    //false if the phone belongs to another user
+    public boolean changePhone(User user, String phone) {
+
+        if (phone == null) {
+            return false;
+        }
+
+        synchronized (user) {
+            //a deleted user keeps his phone free
+            if (users.get(user.getId()) != user) {
+                return false;
+            }
+
+            String oldPhone = user.getPhone();
+            if (phone.equals(oldPhone)) {
+                return true;
             }
+
+            User owner = usersByPhone.putIfAbsent(phone, user);
+            if (owner != null && owner != user) {
+                return false;
+            }
+
+            user.setPhone(phone);
+            if (oldPhone != null) {
+                usersByPhone.remove(oldPhone, user);
+            }
+            return true;
         }
-        return null;
     }
 
-    public User findUser(String phone){
-        for (User user : users.keySet()) {
-            if (user.getPhone().equals(phone)) {
-                return user;
+    public User removeUser(User user) {
+
+        if (user == null) {
+            return null;
+        }
+
+        synchronized (user) {
+            if (!users.remove(user.getId(), user)) {
+                return null;
             }
+            usersByPhone.remove(user.getPhone(), user);
         }
-        return null;
+
+        userOrderIds.remove(user.getId());
+        return user;
     }
 
     public Order addOrderToDriver(User user, Order order) {
 
-        List<Order> newList = users.get(user);
-        newList.add(order);
-        users.replace(user, newList);
+        orderIdsOf(user).add(order.getId());
+        orderChanged(order);
 
         return order;
     }
+
+    /**
+     * Orders of the user changed after {@code sinceVersion}, oldest change
+     * first. Changes which are not finished yet are left for the next call,
+     * so the highest version in the answer is safe to ask from next time.
+     * The versions of all orders of the user are read, a user has few.
+     */
+    public List<Order> findChangedOrders(User user, long sinceVersion) {
+
+        OrderIdList ids = userOrderIds.get(user.getId());
+        long published = publishedVersion;
+
+        //a version from before a restart of the server, all orders are new to it
+        if (sinceVersion >>> EPOCH_SHIFT != epoch) {
+            sinceVersion = 0;
+        }
+
+        if (ids == null || sinceVersion == published) {
+            return new ArrayList<>();
+        }
+
+        //by the version read once, the order may change again meanwhile
+        NavigableMap<Long, Order> changed = new TreeMap<>();
+
+        for (int i = 0, size = ids.size(); i < size; i++) {
+            Order order = findOrder(ids.get(i));
+            long version = order == null ? 0 : order.getVersion();
+            if (version > sinceVersion && version <= published) {
+                changed.put(version, order);
+            }
+        }
+
+        return new ArrayList<>(changed.values());
+    }
+
+    /**
+     * Live view of the orders with the status, iterating it sees the
+     * changes made meanwhile. The service sets the status of an order
+     * before it is moved here, so the orders are checked for the status
+     * when they are read; one which is just changing its status may be
+     * missed. The size counts such orders still.
+     */
+    public Collection<Order> findOrdersByStatus(OrderStatus status) {
+        return new OrdersWithStatus(status, ordersByStatus.get(status).values());
+    }
+
+    public int countOrders(OrderStatus status) {
+        return ordersByStatus.get(status).size();
+    }
+
+    public Map<OrderStatus, Integer> countOrdersByStatus() {
+
+        Map<OrderStatus, Integer> counts = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            counts.put(status, countOrders(status));
+        }
+        return counts;
+    }
+
+    public long getOrderVersion() {
+        return publishedVersion;
+    }
+
+    /**
+     * All orders of the user, in the order they were added. The list shows
+     * the orders the user had when it was made, without copying them.
+     */
+    public List<Order> findOrdersOfUser(User user) {
+
+        OrderIdList ids = user == null ? null : userOrderIds.get(user.getId());
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+
+        return new OrdersOfUser(ids, ids.size());
+    }
+
+    /**
+     * Up to {@code limit} orders of the user added before the one with id
+     * {@code beforeId}, newest first; {@code beforeId} 0 starts from the
+     * newest order. The orders of a passenger come by id; a driver may take
+     * an older order later, so the page goes on from where {@code beforeId}
+     * stands in the list of the driver, or from the orders with a lower id if it is not
+     * in it.
+     */
+    public List<Order> findOrdersOfUser(User user, long beforeId, int limit) {
+
+        OrderIdList ids = user == null ? null : userOrderIds.get(user.getId());
+        List<Order> page = new ArrayList<>(Math.min(limit, 16));
+        if (ids == null) {
+            return page;
+        }
+
+        int index = ids.size() - 1;
+        long below = Long.MAX_VALUE;
+        if (beforeId > 0) {
+            int before = ids.lastIndexOf(beforeId, index);
+            if (before >= 0) {
+                index = before - 1;
+            } else {
+                below = beforeId;
+            }
+        }
+
+        for (; index >= 0 && page.size() < limit; index--) {
+            long id = ids.get(index);
+            Order order = id < below ? findOrder(id) : null;
+            if (order != null) {
+                page.add(order);
+            }
+        }
+        return page;
+    }
+
+    //the order gets the next version, the changes of its users are found by it
+    public void orderChanged(Order order) {
+        synchronized (changeLock) {
+            long version = orderVersionCounter.incrementAndGet();
+            order.setVersion(version);
+            publishedVersion = version;
+            statusChanged(order);
+        }
+    }
+
+    //the service sets the new status before the update, so the order is looked for under every other one
+    private void statusChanged(Order order) {
+        for (Map.Entry<OrderStatus, Map<Long, Order>> entry : ordersByStatus.entrySet()) {
+            if (entry.getKey() == order.getOrderStatus()) {
+                entry.getValue().put(order.getId(), order);
+            } else {
+                entry.getValue().remove(order.getId());
+            }
+        }
+    }
+
+    private static boolean hasAccount(User user) {
+        return user.getIdentifier() != UserIdentifier.A;
+    }
+
+    private OrderIdList orderIdsOf(User user) {
+        return userOrderIds.computeIfAbsent(user.getId(), key -> new OrderIdList());
+    }
+
+    private void indexOrders(List<Order> loaded) {
+        orderIndex = new OrderIndex();
+        orders = new OrderLog(orderIndex);
+        indexStatuses();
+        for (Order order : loaded) {
+            indexOrder(order);
+        }
+        orderIndex.loaded();
+    }
+
+    //new ids go after the loaded ones
+    private void indexOrder(Order order) {
+        orderIndex.put(order);
+        statusChanged(order);
+        orderIdCounter.accumulateAndGet((int) order.getId() + 1, Math::max);
+    }
+
+    private void indexStatuses() {
+        ordersByStatus = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            ordersByStatus.put(status, new ConcurrentHashMap<>());
+        }
+    }
+
+    private void indexUsers(Map<User, List<Order>> usersWithOrders) {
+        users = new ConcurrentHashMap<>();
+        usersByPhone = new ConcurrentHashMap<>();
+        userOrderIds = new ConcurrentHashMap<>();
+
+        for (Map.Entry<User, List<Order>> entry : usersWithOrders.entrySet()) {
+            User user = entry.getKey();
+            users.put(user.getId(), user);
+            userIdCounter.accumulateAndGet(user.getId() + 1, Math::max);
+            if (hasAccount(user)) {
+                usersByPhone.put(user.getPhone(), user);
+            }
+
+            OrderIdList ids = orderIdsOf(user);
+            for (Order order : entry.getValue()) {
+                indexOrder(order);
+                ids.add(order.getId());
+                orderChanged(order);
+            }
+        }
+        orderIndex.loaded();
+    }
+
+    private static class OrdersWithStatus extends AbstractCollection<Order> {
+
+        private final OrderStatus status;
+        private final Collection<Order> orders;
+
+        OrdersWithStatus(OrderStatus status, Collection<Order> orders) {
+            this.status = status;
+            this.orders = orders;
+        }
+
+        @Override
+        public Iterator<Order> iterator() {
+            Iterator<Order> all = orders.iterator();
+            return new Iterator<Order>() {
+
+                private Order next = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Order next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Order order = next;
+                    next = advance();
+                    return order;
+                }
+
+                private Order advance() {
+                    while (all.hasNext()) {
+                        Order order = all.next();
+                        if (order.getOrderStatus() == status) {
+                            return order;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return orders.size();
+        }
+    }
+
+    private class OrdersOfUser extends AbstractList<Order> implements RandomAccess {
+
+        private final OrderIdList ids;
+        private final int size;
+
+        OrdersOfUser(OrderIdList ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        @Override
+        public Order get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return findOrder(ids.get(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package ua.artcode.taxi.dao;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * OrderDao which tells its listeners about created and updated orders,
+ * so nobody has to scan all orders to find out what has changed.
+ */
+public class ObservableOrderDao implements OrderDao {
+
+    private final OrderDao orderDao;
+    private final List<OrderListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ObservableOrderDao(OrderDao orderDao) {
+        this.orderDao = orderDao;
+    }
+
+    public void addListener(OrderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OrderListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public Order create(User user, Order order) {
+        Order created = orderDao.create(user, order);
+        if (created != null) {
+            for (OrderListener listener : listeners) {
+                listener.orderCreated(created);
+            }
+        }
+        return created;
+    }
+
+    @Override
+    public Collection<Order> getAll() {
+        return orderDao.getAll();
+    }
+
+    @Override
+    public Order update(Order newOrder) {
+        Order updated = orderDao.update(newOrder);
+        if (updated != null) {
+            for (OrderListener listener : listeners) {
+                listener.orderUpdated(updated);
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public Order delete(long id) {
+        return orderDao.delete(id);
+    }
+
+    @Override
+    public Order find(long id) {
+        return orderDao.find(id);
+    }
+
+    @Override
+    public Collection<Order> getOrdersByStatus(OrderStatus status) {
+        return orderDao.getOrdersByStatus(status);
+    }
+
+    //the update which follows tells about the new driver
+    @Override
+    public Order addToDriver(User user, Order order) {
+        return orderDao.addToDriver(user, order);
+    }
+
+    @Override
+    public List<Order> getChangedOrders(User user, long sinceVersion) {
+        return orderDao.getChangedOrders(user, sinceVersion);
+    }
+}
@@ -15,6 +15,10 @@ public interface OrderDao {
     Order delete(long id);
 
     Order find(long id);
-    List<Order> getOrdersByStatus(OrderStatus status);
+    //live view, not a copy
+    Collection<Order> getOrdersByStatus(OrderStatus status);
     Order addToDriver(User user, Order order);
+
+    //orders of the user created or changed after sinceVersion, by version
+    List<Order> getChangedOrders(User user, long sinceVersion);
 }
@@ -4,7 +4,6 @@ import ua.artcode.taxi.model.Order;
 import ua.artcode.taxi.model.OrderStatus;
 import ua.artcode.taxi.model.User;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -30,18 +29,13 @@ public class OrderDaoInnerDbImpl implements OrderDao {
     @Override
     public Order update(Order newOrder) {
 
-        Order result = null;
+        Order order = appDB.findOrder(newOrder.getId());
 
-        for (Order order : appDB.getOrders()) {
-
-            if (order.getId() == newOrder.getId()) {
-
-                order.setOrderStatus(newOrder.getOrderStatus());
-
-                result = order;
-            }
+        if (order != null) {
+            order.setOrderStatus(newOrder.getOrderStatus());
+            appDB.orderChanged(order);
         }
-        return result;
+        return order;
     }
 
     @Override
@@ -56,22 +50,17 @@ public class OrderDaoInnerDbImpl implements OrderDao {
     }
 
     @Override
-    public List<Order> getOrdersByStatus(OrderStatus status) {
-
-        Collection<Order> allOrders = appDB.getOrders();
-        List<Order> orders = new ArrayList<>();
-
-        for (Order order : allOrders) {
-            if (order.getOrderStatus().equals(status)){
-                orders.add(order);
-            }
-        }
-
-        return orders;
+    public Collection<Order> getOrdersByStatus(OrderStatus status) {
+        return appDB.findOrdersByStatus(status);
     }
 
     @Override
     public Order addToDriver(User user, Order order) {
         return appDB.addOrderToDriver(user, order);
     }
+
+    @Override
+    public List<Order> getChangedOrders(User user, long sinceVersion) {
+        return appDB.findChangedOrders(user, sinceVersion);
+    }
 }
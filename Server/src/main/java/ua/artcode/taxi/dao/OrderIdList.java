@@ -0,0 +1,58 @@
+package ua.artcode.taxi.dao;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the orders of one user, in the order they were added. Appends
+ * take the lock of the list, reads take none: the array is only replaced
+ * by a longer copy and the size is published after the id is written, so
+ * a reader sees every id below the size it read.
+ */
+public class OrderIdList {
+
+    private volatile long[] ids = new long[4];
+    private volatile int size;
+
+    public synchronized void add(long id) {
+
+        long[] current = ids;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            ids = current;
+        }
+
+        current[size] = id;
+        size = size + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int index) {
+
+        int size = this.size;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ids[index];
+    }
+
+    //the last index of the id at or below from, -1 if it is not there
+    public int lastIndexOf(long id, int from) {
+
+        int size = this.size;
+        long[] ids = this.ids;
+        for (int i = Math.min(from, size - 1); i >= 0; i--) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long[] toArray() {
+        int size = this.size;
+        return Arrays.copyOf(ids, size);
+    }
+}
@@ -0,0 +1,84 @@
+package ua.artcode.taxi.dao;
+
+import ua.artcode.taxi.model.Order;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Orders by id. The ids come from the int counter of AppDB, so they are
+ * dense and an order sits at a fixed slot of a chunk: finding it costs two
+ * array reads however many orders there are. Chunks of 16384 slots are
+ * created when the first id of their range is put; reads take no lock.
+ *
+ * It is the only place the orders are kept, {@link OrderLog} walks it in
+ * the order of the ids.
+ */
+public class OrderIndex {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    //enough chunks for every positive int id
+    private static final int CHUNKS = (int) ((Integer.MAX_VALUE + 1L) >>> CHUNK_BITS);
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Order>> chunks = new AtomicReferenceArray<>(CHUNKS);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger highestId = new AtomicInteger();
+
+    //ids up to it were loaded, a missing one among them is never put
+    private volatile int loadedId;
+
+    public Order get(long id) {
+
+        if (id <= 0 || id > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        AtomicReferenceArray<Order> chunk = chunks.get((int) (id >>> CHUNK_BITS));
+        return chunk == null ? null : chunk.get((int) id & CHUNK_MASK);
+    }
+
+    public void put(Order order) {
+
+        long id = order.getId();
+        if (id <= 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Order id out of range: " + id);
+        }
+
+        if (chunkOf((int) (id >>> CHUNK_BITS)).getAndSet((int) id & CHUNK_MASK, order) == null) {
+            size.incrementAndGet();
+        }
+        highestId.accumulateAndGet((int) id, Math::max);
+    }
+
+    //after the stored orders are put, so that the ids they miss do not stop the walk over the orders
+    public void loaded() {
+        loadedId = highestId.get();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getHighestId() {
+        return highestId.get();
+    }
+
+    //true if an id is missing for good, above the loaded ids it is only not put yet
+    boolean isHole(long id) {
+        return id <= loadedId;
+    }
+
+    private AtomicReferenceArray<Order> chunkOf(int index) {
+
+        AtomicReferenceArray<Order> chunk = chunks.get(index);
+        if (chunk == null) {
+            //of two threads opening the same chunk one wins, the other takes its chunk
+            chunks.compareAndSet(index, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,14 @@
+package ua.artcode.taxi.dao;
+
+import ua.artcode.taxi.model.Order;
+
+/**
+ * Gets the orders changed through an {@link ObservableOrderDao},
+ * called by the thread which made the change.
+ */
+public interface OrderListener {
+
+    void orderCreated(Order order);
+
+    void orderUpdated(Order order);
+}
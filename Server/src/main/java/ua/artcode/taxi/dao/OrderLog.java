@@ -0,0 +1,71 @@
+package ua.artcode.taxi.dao;
+
+import ua.artcode.taxi.model.Order;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * All orders in the order they were made, read from the {@link OrderIndex}
+ * by ascending id, so an order is kept once and nothing is copied on an
+ * append. Orders are never removed.
+ *
+ * An id is taken before its order is put, so an iterator stops at the first
+ * id which is taken but not put yet: it sees a gapless prefix of the orders
+ * and a reader which goes on from the last id it saw misses none. Like the
+ * iterators of the concurrent maps it does not throw
+ * ConcurrentModificationException.
+ */
+public class OrderLog extends AbstractCollection<Order> {
+
+    private final OrderIndex index;
+
+    public OrderLog(OrderIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Iterator<Order> iterator() {
+        return new Iterator<Order>() {
+
+            private final int end = index.getHighestId();
+            private int id;
+            private Order next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Order next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Order order = next;
+                next = advance();
+                return order;
+            }
+
+            private Order advance() {
+                while (id < end) {
+                    id++;
+                    Order order = index.get(id);
+                    if (order != null) {
+                        return order;
+                    }
+                    if (!index.isHole(id)) {
+                        id = end;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+}
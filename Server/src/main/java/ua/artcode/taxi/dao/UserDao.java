@@ -18,4 +18,7 @@ public interface UserDao {
     List<User> getAllPassenger();
     List<User> getAllDrivers();
     List<Order> getOrdersOfUser(User user);
+
+    //newest first, orders with id below beforeId; 0 starts from the newest
+    List<Order> getOrdersOfUser(User user, long beforeId, int limit);
 }
\ No newline at end of file
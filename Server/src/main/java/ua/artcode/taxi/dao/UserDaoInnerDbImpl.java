@@ -23,43 +23,34 @@ public class UserDaoInnerDbImpl implements UserDao {
 
     @Override
     public Collection<User> getAllUsers() {
-        return appDB.getUsers().keySet();
+        return appDB.getUsers();
     }
 
     @Override
     public User updateUser(User newUser) {
 
-        User result = null;
-
-        for (User user : appDB.getUsers().keySet()) {
-
-            if (user.getId() == newUser.getId()) {
-
-                user.setPhone(newUser.getPhone());
-                user.setName(newUser.getName());
-                user.setPass(newUser.getPass());
-                user.setHomeAddress(newUser.getHomeAddress());
-                user.setCar(newUser.getCar());
+        User user = newUser == null ? null : appDB.findUser(newUser.getId());
+        if (user == null) {
+            return null;
+        }
 
-                result = user;
+        //two updates of one user do not mix their fields
+        synchronized (user) {
+            if (!appDB.changePhone(user, newUser.getPhone())) {
+                return null;
             }
+
+            user.setName(newUser.getName());
+            user.setPass(newUser.getPass());
+            user.setHomeAddress(newUser.getHomeAddress());
+            user.setCar(newUser.getCar());
         }
-        return result;
+        return user;
     }
 
     @Override
     public User deleteUser(int id) {
-
-        User result = null;
-
-        for (User user : appDB.getUsers().keySet()) {
-            if (user.getId() == id) {
-                result = user;
-            }
-        }
-        appDB.getUsers().remove(result);
-
-        return result;
+        return appDB.removeUser(appDB.findUser(id));
     }
 
     @Override
@@ -72,7 +63,7 @@ public class UserDaoInnerDbImpl implements UserDao {
 
         List<User> passengers = new ArrayList<>();
 
-        for (User user : appDB.getUsers().keySet()) {
+        for (User user : appDB.getUsers()) {
             if (user.getIdentifier().equals(UserIdentifier.P)) {
                 passengers.add(user);
             }
@@ -85,7 +76,7 @@ public class UserDaoInnerDbImpl implements UserDao {
 
         List<User> drivers = new ArrayList<>();
 
-        for (User user : appDB.getUsers().keySet()) {
+        for (User user : appDB.getUsers()) {
             if (user.getIdentifier().equals(UserIdentifier.D)) {
                 drivers.add(user);
             }
@@ -95,6 +86,11 @@ public class UserDaoInnerDbImpl implements UserDao {
 
     @Override
     public List<Order> getOrdersOfUser(User user) {
-        return appDB.getUsers().get(user);
+        return appDB.findOrdersOfUser(user);
+    }
+
+    @Override
+    public List<Order> getOrdersOfUser(User user, long beforeId, int limit) {
+        return appDB.findOrdersOfUser(user, beforeId, limit);
     }
 }
@@ -65,4 +65,9 @@ public class UserJdbcDao implements UserDao {
     public List<Order> getOrdersOfUser(User user) {
         return null;
     }
+
+    @Override
+    public List<Order> getOrdersOfUser(User user, long beforeId, int limit) {
+        return null;
+    }
 }
@@ -0,0 +1,90 @@
+package ua.artcode.taxi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, bucketed the way
+ * HdrHistogram does it: every power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so a recorded value is off by at
+ * most 1/32 (about 3%) of itself. Values from 0 up to {@link #MAX_VALUE}
+ * (about 18 minutes) take 1152 counters, whatever the load.
+ *
+ * Recording is one atomic increment, so any number of request threads
+ * record at once; percentiles are read from the live counters and may
+ * miss the values recorded meanwhile.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0, Math.min(nanos, MAX_VALUE))));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Highest value of the bucket which holds the given share of all
+     * recorded values, e.g. 0.99 for p99; 0 when nothing was recorded.
+     */
+    public long percentile(double quantile) {
+        return percentiles(quantile)[0];
+    }
+
+    //one pass over the counters for all the quantiles, which go in ascending order
+    public long[] percentiles(double... quantiles) {
+
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] result = new long[quantiles.length];
+        if (total == 0) {
+            return result;
+        }
+
+        int index = 0;
+        long seen = 0;
+        for (int q = 0; q < quantiles.length; q++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            while (seen + snapshot[index] < rank && index < snapshot.length - 1) {
+                seen += snapshot[index];
+                index++;
+            }
+            result[q] = highestValueOf(index);
+        }
+        return result;
+    }
+
+    //values below SUB_BUCKETS have a bucket each, above they share one per 1/32 of their power of two
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
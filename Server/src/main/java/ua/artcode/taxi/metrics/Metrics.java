@@ -0,0 +1,88 @@
+package ua.artcode.taxi.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link OperationStats} of the server by name, e.g. "command.makeOrder"
+ * for the remote method and "service.makeOrder" for the UserService call
+ * it makes, "geo.getDistance" for a Google Maps call. Read at runtime
+ * with the "stats" request or from the admin listener.
+ */
+public class Metrics {
+
+    public static final String COMMAND = "command.";
+    public static final String SERVICE = "service.";
+    public static final String GEO = "geo.";
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final long startTime = System.nanoTime();
+
+    public OperationStats get(String name) {
+        OperationStats stats = operations.get(name);
+        return stats != null ? stats : operations.computeIfAbsent(name, OperationStats::new);
+    }
+
+    public Collection<OperationStats> getAll() {
+        return operations.values();
+    }
+
+    //name -> counters, by name; only the operations which start with prefix, all for null
+    public Map<String, Map<String, Object>> snapshot(String prefix) {
+
+        long uptime = System.nanoTime() - startTime;
+
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        for (OperationStats stats : operations.values()) {
+            if (prefix == null || stats.getName().startsWith(prefix)) {
+                snapshot.put(stats.getName(), stats.toMap(uptime));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * The same service with every interface method counted as
+     * {@code prefix + methodName}. Exceptions of the target pass through
+     * unchanged and are counted as errors.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T instrument(Class<T> type, T target, String prefix) {
+
+        Map<Method, OperationStats> byMethod = new ConcurrentHashMap<>();
+        for (Method method : type.getMethods()) {
+            byMethod.put(method, get(prefix + method.getName()));
+        }
+
+        InvocationHandler handler = (proxy, method, args) -> {
+
+            OperationStats stats = byMethod.get(method);
+            if (stats == null) {
+                //equals, hashCode and toString of Object
+                return method.invoke(target, args);
+            }
+
+            long start = stats.start();
+            boolean failed = true;
+            try {
+                Object result = method.invoke(target, args);
+                failed = false;
+                return result;
+
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+
+            } finally {
+                stats.stop(start, failed);
+            }
+        };
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
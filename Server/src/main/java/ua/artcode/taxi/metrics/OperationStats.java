@@ -0,0 +1,96 @@
+package ua.artcode.taxi.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one operation: calls, failed calls, calls running now and
+ * the latency of the finished ones. Nothing here takes a lock.
+ *
+ * <pre>
+ * long start = stats.start();
+ * try {
+ *     ...
+ *     stats.stop(start, false);
+ * } catch (Exception e) {
+ *     stats.stop(start, true);
+ * }
+ * </pre>
+ */
+public class OperationStats {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    //returns the start time to pass to stop
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void stop(long start, boolean failed) {
+        long nanos = System.nanoTime() - start;
+        latency.record(nanos);
+        totalNanos.add(nanos);
+        inFlight.decrement();
+        count.increment();
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    //time of all the finished calls together
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    //latencies in microseconds; the calls per second are the average of the whole uptime,
+    //not the current throughput, which comes from the differences of two reads of the count
+    public Map<String, Object> toMap(long uptimeNanos) {
+
+        long calls = getCount();
+        long[] percentiles = latency.percentiles(0.5, 0.99, 0.999, 1.0);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", calls);
+        map.put("errors", getErrors());
+        map.put("inFlight", getInFlight());
+        map.put("averagePerSecond", uptimeNanos <= 0 ? 0 : calls * (double) TimeUnit.SECONDS.toNanos(1) / uptimeNanos);
+        map.put("p50", TimeUnit.NANOSECONDS.toMicros(percentiles[0]));
+        map.put("p99", TimeUnit.NANOSECONDS.toMicros(percentiles[1]));
+        map.put("p999", TimeUnit.NANOSECONDS.toMicros(percentiles[2]));
+        map.put("max", TimeUnit.NANOSECONDS.toMicros(percentiles[3]));
+
+        return map;
+    }
+}
@@ -0,0 +1,110 @@
+package ua.artcode.taxi.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text exposition format of Prometheus, version 0.0.4.
+ *
+ * <pre>
+ * # TYPE taxi_connections_open gauge
+ * taxi_connections_open 12
+ * </pre>
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    public PrometheusWriter gauge(String name, double value) {
+        return type(name, "gauge").sample(name, null, value);
+    }
+
+    public PrometheusWriter counter(String name, double value) {
+        return type(name, "counter").sample(name, null, value);
+    }
+
+    //one sample per key, e.g. taxi_orders{status="NEW"} 5
+    public PrometheusWriter gauge(String name, String label, Map<?, ? extends Number> values) {
+        type(name, "gauge");
+        for (Map.Entry<?, ? extends Number> entry : values.entrySet()) {
+            sample(name, label + "=\"" + escape(String.valueOf(entry.getKey())) + "\"", entry.getValue().doubleValue());
+        }
+        return this;
+    }
+
+    /**
+     * Latency summary in seconds, plus call, error and in-flight counts,
+     * of every operation whose name starts with prefix. The rest of the
+     * name goes to the "name" label: "command.makeOrder" becomes
+     * {@code taxi_command_seconds{name="makeOrder",quantile="0.99"}}.
+     */
+    public PrometheusWriter operations(String metric, String prefix, Iterable<OperationStats> operations) {
+
+        type(metric + "_seconds", "summary");
+        for (OperationStats stats : operations) {
+            if (!stats.getName().startsWith(prefix)) {
+                continue;
+            }
+            String label = "name=\"" + escape(stats.getName().substring(prefix.length())) + "\"";
+
+            long[] values = stats.getLatency().percentiles(QUANTILES);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sample(metric + "_seconds", label + ",quantile=\"" + QUANTILES[i] + "\"",
+                        values[i] / NANOS_PER_SECOND);
+            }
+            sample(metric + "_seconds_sum", label, stats.getTotalNanos() / NANOS_PER_SECOND);
+            sample(metric + "_seconds_count", label, stats.getCount());
+        }
+
+        type(metric + "_errors_total", "counter");
+        for (OperationStats stats : operations) {
+            if (stats.getName().startsWith(prefix)) {
+                sample(metric + "_errors_total",
+                        "name=\"" + escape(stats.getName().substring(prefix.length())) + "\"", stats.getErrors());
+            }
+        }
+
+        type(metric + "_in_flight", "gauge");
+        for (OperationStats stats : operations) {
+            if (stats.getName().startsWith(prefix)) {
+                sample(metric + "_in_flight",
+                        "name=\"" + escape(stats.getName().substring(prefix.length())) + "\"", stats.getInFlight());
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private PrometheusWriter type(String name, String type) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    private PrometheusWriter sample(String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(String.format(Locale.ROOT, "%.9f", value));
+        }
+        out.append('\n');
+        return this;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
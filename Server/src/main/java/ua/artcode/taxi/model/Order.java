@@ -16,6 +16,10 @@ public class Order {
 
     private LocalDateTime makeOrderTime;
 
+    //grows on every change of the order, see OrderDao.getChangedOrders; the bits above
+    //the lower 32 tell the run of the server, a version of another run is not comparable
+    private volatile long version;
+
     public Order() {
     }
 
@@ -114,6 +118,14 @@ public class Order {
         this.makeOrderTime = makeOrderTime;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String toStringForView() {
         return "id " + id +
                 ", status " + orderStatus +
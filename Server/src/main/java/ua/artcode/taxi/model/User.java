@@ -1,6 +1,7 @@
 package ua.artcode.taxi.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class User implements PassengerActive, DriverActive {
@@ -12,7 +13,8 @@ public class User implements PassengerActive, DriverActive {
     private String name;
     private Address homeAddress;
     private Car car;
-    private List<Long> orderIds = new ArrayList<>();
+    //the service adds to it while the user is sent, copy it before iterating
+    private List<Long> orderIds = Collections.synchronizedList(new ArrayList<>());
 
     //for passenger
     public User(UserIdentifier identifier, String phone, String pass, String name, Address homeAddress) {
@@ -106,7 +108,7 @@ public class User implements PassengerActive, DriverActive {
 
     @Override
     public void setOrderIds(List<Long> orderIds) {
-        this.orderIds = orderIds;
+        this.orderIds = orderIds == null ? null : Collections.synchronizedList(new ArrayList<>(orderIds));
     }
 
     @Override
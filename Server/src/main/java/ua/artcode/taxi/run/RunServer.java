@@ -2,38 +2,74 @@ package ua.artcode.taxi.run;
 
 import com.google.gson.Gson;
 import ua.artcode.taxi.dao.*;
-import ua.artcode.taxi.exception.*;
+import ua.artcode.taxi.metrics.Metrics;
 import ua.artcode.taxi.model.*;
+import ua.artcode.taxi.server.*;
+import ua.artcode.taxi.server.command.CommandRegistry;
+import ua.artcode.taxi.server.command.StatsCommand;
 import ua.artcode.taxi.service.UserService;
 import ua.artcode.taxi.service.UserServiceImpl;
 import ua.artcode.taxi.service.ValidatorImpl;
-import ua.artcode.taxi.to.Message;
-import ua.artcode.taxi.to.MessageBody;
-import ua.artcode.taxi.utils.ReflectionFormatter;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.geolocation.GoogleMapsAPI;
+import ua.artcode.taxi.utils.geolocation.GoogleMapsAPIImpl;
+import ua.artcode.taxi.utils.geolocation.StubGoogleMapsAPI;
 
-import javax.security.auth.login.LoginException;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RunServer {
 
     public static void main(String[] args) throws IOException {
-        ServerSocket serverSocket = new ServerSocket(43009);
+        ServerConfig config = ServerConfig.fromSystemProperties();
 
-        Gson gson = new Gson();
+        Gson gson = Protocol.createGson();
 
         //create test data
         AppDB appDB = new AppDB();
-        UserDao userDao = new UserJdbcDao();
-        OrderDao orderDao = new OrderDaoInnerDbImpl(appDB);
+        UserDao userDao = config.isMemoryUserStorage() ? new UserDaoInnerDbImpl(appDB) : new UserJdbcDao();
+        ObservableOrderDao orderDao = new ObservableOrderDao(new OrderDaoInnerDbImpl(appDB));
         ValidatorImpl validator = new ValidatorImpl(appDB);
 
-        UserService userService = new UserServiceImpl(userDao, orderDao, validator);
+        //counts and latencies of every command and service call, read with the "stats" request
+        Metrics metrics = new Metrics();
+
+        GoogleMapsAPI googleMapsAPI = metrics.instrument(GoogleMapsAPI.class, config.isGeoStub()
+                ? new StubGoogleMapsAPI(config.getGeoStubLatencyMs()) : new GoogleMapsAPIImpl(), Metrics.GEO);
+
+        UserServiceImpl userServiceImpl = new UserServiceImpl(userDao, orderDao, validator, googleMapsAPI);
+        UserService userService = metrics.instrument(UserService.class, userServiceImpl, Metrics.SERVICE);
+
+        //requests waiting for Google Maps do not hold the request threads
+        AsyncUserServiceAdapter asyncUserService = new AsyncUserServiceAdapter(userService, config);
+
+        //drivers get new orders pushed instead of asking for all of them again
+        OrderFeed orderFeed = new OrderFeed(orderDao, googleMapsAPI, asyncUserService, gson);
+        orderDao.addListener(orderFeed);
+
+        CommandRegistry commandRegistry = CommandRegistry.create(userService, asyncUserService, gson)
+                .register(new StatsCommand(metrics));
+        //each client may ask Google Maps only so often
+        RateLimiter rateLimiter = new RateLimiter(config);
+        rateLimiter.start();
+
+        RequestHandler requestHandler = new RequestHandler(gson, commandRegistry, orderFeed, metrics, rateLimiter);
+        RequestExecutor requestExecutor = new RequestExecutor(config);
+        RequestDispatcher requestDispatcher = new RequestDispatcher(requestHandler, requestExecutor, config);
+
+        ConnectionManager connectionManager = new ConnectionManager(config);
+        connectionManager.start();
+
+        //prometheus metrics and health checks over http, off unless taxi.server.adminPort is set
+        AdminServer adminServer = new AdminServer(config, metrics, appDB, userServiceImpl,
+                connectionManager, orderFeed, gson);
+        if (config.isAdmin()) {
+            adminServer.start();
+        }
 /*
         User passenger1 = new User(UserIdentifier.P,
                 "1234", "test", "Vasya", new Address("Ukraine", "Kiev", "Khreschatik", "5"));
@@ -71,22 +107,55 @@ public class RunServer {
         orderDao.create(passenger1, order6);
 */
 
+        if (config.isNio()) {
+            new NioServer(config, requestDispatcher, connectionManager).start();
+            adminServer.setReady(true);
+            return;
+        }
+
+        ServerSocket serverSocket = new ServerSocket(config.getPort());
+        adminServer.setReady(true);
+
+        //every blocking session is written by one of these, the request threads only queue
+        ExecutorService writer = Executors.newCachedThreadPool(new NamedThreadFactory("taxi-write-"));
+
         while(true){
             // waiting for new client
             Socket clientSocket = serverSocket.accept();
 
-            PrintWriter pw = new PrintWriter(clientSocket.getOutputStream());
-            BufferedReader bf = new BufferedReader(
-                    new InputStreamReader(clientSocket.getInputStream()));
+            if (!connectionManager.admit(clientSocket.getInetAddress())) {
+                refuse(clientSocket, connectionManager);
+                continue;
+            }
 
+            OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream());
+            InputStream in = new BufferedInputStream(clientSocket.getInputStream());
 
-            Runnable clientThreadLogic = new ClientThreadLogic(gson, userService, pw, bf) ;
-            Thread clientThread = new Thread(clientThreadLogic);
+
+            Session session = new StreamSession(clientSocket, out, writer);
+            connectionManager.opened(session, clientSocket.getInetAddress());
+
+            Runnable clientThreadLogic = new ClientThreadLogic(requestDispatcher, session, in) ;
+            Thread clientThread = requestExecutor.newConnectionThread(clientThreadLogic);
             clientThread.start();
         }
     }
 
 
+    private static void refuse(Socket clientSocket, ConnectionManager connectionManager) {
+        try {
+            FrameCodec.write(clientSocket.getOutputStream(), connectionManager.refusal());
+        } catch (IOException e) {
+            System.out.println("Can not tell the refused client why: " + e);
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public static String getMenu(){
 
         return "1. Add user \n" + "2. Exit\n";
@@ -96,440 +165,46 @@ public class RunServer {
 class ClientThreadLogic implements Runnable {
 
 
-    private Gson gson;
-    private UserService userService;
+    private RequestDispatcher requestDispatcher;
+    private Session session;
 
-    private PrintWriter pw;
-    private BufferedReader bf;
+    private InputStream in;
 
-    public ClientThreadLogic(Gson gson, UserService userService,
-                             PrintWriter pw, BufferedReader bf) {
-        this.gson = gson;
-        this.userService = userService;
-        this.pw = pw;
-        this.bf = bf;
+    public ClientThreadLogic(RequestDispatcher requestDispatcher, Session session, InputStream in) {
+        this.requestDispatcher = requestDispatcher;
+        this.session = session;
+        this.in = in;
     }
 
+    //this thread only reads, requests run with the bounded executor
     @Override
     public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
 
-            String requestBody = null;
-            try {
-                requestBody = bf.readLine() + "\n";
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            System.out.print("\nCLIENT OUT ---> SERVER TAKE: " + requestBody);
+                FrameCodec codec = session.getCodec();
+                String request = session.isBinaryFraming() ? codec.readFrame(in) : codec.readLine(in);
 
-            Message message = gson.fromJson(requestBody, Message.class);
-
-            //registerPassenger
-            if ("registerPassenger".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Map<String, String> mapForNewUser = new HashMap<>();
-                for (String key : map.keySet()) {
-                    mapForNewUser.put(key, map.get(key).toString());
-                }
-
-                try {
-                    User newUser = userService.registerPassenger(mapForNewUser);
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.userToJsonMap(newUser));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (RegisterException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //registerDriver
-            if ("registerDriver".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Map<String, String> mapForNewUser = new HashMap<>();
-                for (String key : map.keySet()) {
-                    mapForNewUser.put(key, map.get(key).toString());
-                }
-
-                try {
-                    User newUser = userService.registerDriver(mapForNewUser);
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.userToJsonMap(newUser));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (RegisterException e) {
-                    pw.println(e);
-                    pw.flush();
+                //the client has closed the connection
+                if (request == null) {
+                    return;
                 }
-            }
-
-            //login
-            if ("login".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object phone = map.get("phone");
-                Object pass = map.get("pass");
-
-                try {
-                    String accessKey = userService.login(phone.toString(), pass.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody();
-
-                    messageBody.getMap().put("accessKey", accessKey);
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
 
-                } catch (LoginException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
+                requestDispatcher.received(session, request);
             }
 
-            //makeOrder
-            if ("makeOrder".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-                Object addressFrom = map.get("addressFrom");
-                Object addressTo = map.get("addressTo");
-                Object messageText = map.get("messageText");
-                try {
-                    Order newOrder = userService.makeOrder(
-                            accessToken.toString(),
-                            addressFrom.toString(),
-                            addressTo.toString(),
-                            messageText.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(newOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderMakeException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (UserNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (InputDataWrongException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (UnknownHostException e) {
-                    e.printStackTrace();
-                }
+        } catch (IOException e) {
+            //closed by the idle timeout, or a dropped connection
+            if (session.isOpen()) {
+                System.out.println("Connection " + session.getId() + " failed: " + e);
             }
 
-            //makerOrderAnonymous
-            if ("makeOrderAnonymous".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object phone = map.get("phone");
-                Object name = map.get("name");
-                Object addressFrom = map.get("addressFrom");
-                Object addressTo = map.get("addressTo");
-                Object messageText = map.get("message");
-                try {
-                    Order newOrder = userService.makeOrderAnonymous(
-                            phone.toString(),
-                            name.toString(),
-                            addressFrom.toString(),
-                            addressTo.toString(),
-                            messageText.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(newOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderMakeException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (InputDataWrongException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (UnknownHostException e) {
-                    e.printStackTrace();
-                }
-            }
+        } catch (RuntimeException e) {
+            System.out.println("Connection " + session.getId() + " failed: " + e);
+            e.printStackTrace();
 
-            //calculateOrder
-            if ("calculateOrder".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object addressFrom = map.get("addressFrom");
-                Object addressTo = map.get("addressTo");
-                try {
-                    Map<String, Object> mapForMessage = userService.calculateOrder(
-                            addressFrom.toString(), addressTo.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(mapForMessage);
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (InputDataWrongException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (UnknownHostException e) {
-                    e.printStackTrace();
-                }
-            }
-
-            //getOrderInfo
-            if ("getOrderInfo".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object orderId = map.get("orderId");
-                try {
-                    Order foundOrder = userService.getOrderInfo(
-                            Long.parseLong(orderId.toString()));
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(foundOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //getLastOrderInfo
-            if ("getLastOrderInfo".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-                try {
-                    Order foundLastOrder = userService.getLastOrderInfo(
-                            accessToken.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(foundLastOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (UserNotFoundException | NullPointerException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //cancelOrder
-            if ("cancelOrder".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object orderId = map.get("orderId");
-                try {
-                    Order cancelledOrder = userService.cancelOrder(
-                            Long.parseLong(orderId.toString()));
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(cancelledOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //closeOrder
-            if ("closeOrder".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-                Object orderId = map.get("orderId");
-                try {
-                    Order closedOrder = userService.closeOrder(
-                            accessToken.toString(),
-                            Long.parseLong(orderId.toString()));
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(closedOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (WrongStatusOrderException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (DriverOrderActionException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //takeOrder
-            if ("takeOrder".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-                Object orderId = map.get("orderId");
-                try {
-                    Order takenOrder = userService.takeOrder(
-                            accessToken.toString(),
-                            Double.valueOf(orderId + "").longValue());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.orderToJsonMap(takenOrder));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (OrderNotFoundException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (WrongStatusOrderException e) {
-                    pw.println(e);
-                    pw.flush();
-                } catch (DriverOrderActionException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //getMapDistancesToDriver
-            if ("getMapDistancesToDriver".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object orderStatus = map.get("orderStatus");
-                Object addressDriver = map.get("addressDriver");
-
-                Map<Integer, Order> ordersMap = null;
-                try {
-                    ordersMap = userService.getMapDistancesToDriver(
-                            orderStatus.toString(),
-                            addressDriver.toString());
-
-                    Map<String, Object> mapForMessage = new HashMap<>();
-                    for (Integer key : ordersMap.keySet()) {
-                        Map<String, Object> concreteOrder = ReflectionFormatter.orderToJsonMap(ordersMap.get(key));
-                        Message concreteMessage = new Message();
-                        MessageBody concreteMessageBody = new MessageBody(concreteOrder);
-                        concreteMessage.setMessageBody(concreteMessageBody);
-
-                        mapForMessage.put(key + "", gson.toJson(concreteMessage));
-                    }
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(mapForMessage);
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (InputDataWrongException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-
-
-            }
-
-            //getUser
-            if ("getUser".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-
-                User foundUser = userService.getUser(accessToken.toString());
-
-                Message responseMessage = new Message();
-                MessageBody messageBody = new MessageBody(ReflectionFormatter.userToJsonMap(foundUser));
-                responseMessage.setMessageBody(messageBody);
-
-                pw.println(gson.toJson(responseMessage));
-                pw.flush();
-            }
-
-            //getAllOrdersUser
-            if ("getAllOrdersUser".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-
-                List<Order> orders = userService.getAllOrdersUser(accessToken.toString());
-
-                Map<String, Object> mapForMessage = new HashMap<>();
-                for (int i = 0; i < orders.size(); i++) {
-                    Map<String, Object> concreteOrder = ReflectionFormatter.orderToJsonMap(orders.get(i));
-                    Message concreteMessage = new Message();
-                    MessageBody concreteMessageBody = new MessageBody(concreteOrder);
-                    concreteMessage.setMessageBody(concreteMessageBody);
-
-                    mapForMessage.put(orders.get(i).getId() + "", gson.toJson(concreteMessage));
-                }
-
-                Message responseMessage = new Message();
-                MessageBody messageBody = new MessageBody(mapForMessage);
-                responseMessage.setMessageBody(messageBody);
-
-                pw.println(gson.toJson(responseMessage));
-                pw.flush();
-            }
-
-            //updateUser
-            if ("updateUser".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Map<String, String> mapForNewUser = new HashMap<>();
-                for (String key : map.keySet()) {
-                    mapForNewUser.put(key, map.get(key).toString());
-                }
-                Object accessToken = map.get("accessToken");
-
-                try {
-                    User updatedUser = userService.updateUser(mapForNewUser, accessToken.toString());
-
-                    Message responseMessage = new Message();
-                    MessageBody messageBody = new MessageBody(ReflectionFormatter.userToJsonMap(updatedUser));
-                    responseMessage.setMessageBody(messageBody);
-
-                    pw.println(gson.toJson(responseMessage));
-                    pw.flush();
-
-                } catch (RegisterException e) {
-                    pw.println(e);
-                    pw.flush();
-                }
-            }
-
-            //deleteUser
-            if ("deleteUser".equals(message.getMethodName())) {
-                Map<String, Object> map = message.getMessageBody().getMap();
-                Object accessToken = map.get("accessToken");
-
-                User deletedUser = userService.deleteUser(
-                        accessToken.toString());
-
-                Message responseMessage = new Message();
-                MessageBody messageBody = new MessageBody(ReflectionFormatter.userToJsonMap(deletedUser));
-                responseMessage.setMessageBody(messageBody);
-
-                pw.println(gson.toJson(responseMessage));
-                pw.flush();
-            }
+        } finally {
+            session.close();
         }
     }
 }
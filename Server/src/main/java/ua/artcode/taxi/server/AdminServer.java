@@ -0,0 +1,159 @@
+package ua.artcode.taxi.server;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.dao.AppDB;
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.metrics.PrometheusWriter;
+import ua.artcode.taxi.service.UserServiceImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional HTTP listener for monitoring, on {@code adminHost:adminPort}
+ * (localhost only by default, off when the port is 0).
+ *
+ * GET /metrics - Prometheus text: command, service and Google Maps latencies,
+ *                orders by status, users, sessions, connections and threads
+ * GET /health  - json, 200 while the process runs
+ * GET /ready   - json, 200 when clients are accepted, 503 otherwise
+ *
+ * Everything is read from counters the request threads keep anyway, on the
+ * one admin thread, so a scrape never waits for or blocks a request.
+ */
+public class AdminServer {
+
+    private final static Logger LOG = Logger.getLogger(AdminServer.class);
+
+    private final ServerConfig config;
+    private final Metrics metrics;
+    private final AppDB appDB;
+    private final UserServiceImpl userService;
+    private final ConnectionManager connectionManager;
+    private final OrderFeed orderFeed;
+    private final Gson gson;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final long startTime = System.nanoTime();
+    private volatile boolean ready;
+
+    private HttpServer httpServer;
+    private ExecutorService adminThread;
+
+    public AdminServer(ServerConfig config, Metrics metrics, AppDB appDB, UserServiceImpl userService,
+                       ConnectionManager connectionManager, OrderFeed orderFeed, Gson gson) {
+        this.config = config;
+        this.metrics = metrics;
+        this.appDB = appDB;
+        this.userService = userService;
+        this.connectionManager = connectionManager;
+        this.orderFeed = orderFeed;
+        this.gson = gson;
+    }
+
+    public void start() throws IOException {
+
+        httpServer = HttpServer.create(new InetSocketAddress(config.getAdminHost(), config.getAdminPort()), 0);
+        httpServer.createContext("/metrics", exchange -> respond(exchange, 200,
+                PrometheusWriter.CONTENT_TYPE, metrics()));
+        httpServer.createContext("/health", exchange -> respond(exchange, 200,
+                "application/json", gson.toJson(health())));
+        httpServer.createContext("/ready", exchange -> respond(exchange, isReady() ? 200 : 503,
+                "application/json", gson.toJson(health())));
+
+        adminThread = Executors.newSingleThreadExecutor(new NamedThreadFactory("taxi-admin-"));
+        httpServer.setExecutor(adminThread);
+        httpServer.start();
+
+        LOG.info("Admin listener started on " + config.getAdminHost() + ":" + config.getAdminPort());
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            adminThread.shutdownNow();
+        }
+    }
+
+    //the configured port, or the one the system gave for port 0
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    //set once the client port is bound
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public boolean isReady() {
+        return ready && connectionManager.getOpenConnections() < config.getMaxConnections();
+    }
+
+    String metrics() {
+
+        PrometheusWriter writer = new PrometheusWriter()
+                .operations("taxi_command", Metrics.COMMAND, metrics.getAll())
+                .operations("taxi_service", Metrics.SERVICE, metrics.getAll())
+                .operations("taxi_geo", Metrics.GEO, metrics.getAll())
+                .gauge("taxi_orders", "status", appDB.countOrdersByStatus())
+                .gauge("taxi_users", appDB.getUsers().size())
+                .gauge("taxi_sessions", userService.getSessionCount())
+                .gauge("taxi_connections_open", connectionManager.getOpenConnections())
+                .counter("taxi_connections_accepted_total", connectionManager.getAcceptedConnections())
+                .counter("taxi_connections_refused_total", connectionManager.getRefusedConnections())
+                .counter("taxi_connections_idle_closed_total", connectionManager.getIdleClosedConnections())
+                .counter("taxi_connections_overflow_closed_total", connectionManager.getOverflowClosedConnections())
+                .gauge("taxi_threads", threads.getThreadCount())
+                .gauge("taxi_threads_daemon", threads.getDaemonThreadCount())
+                .gauge("taxi_threads_peak", threads.getPeakThreadCount())
+                .gauge("taxi_uptime_seconds", uptimeSeconds());
+
+        if (orderFeed != null) {
+            writer.gauge("taxi_feed_subscriptions", orderFeed.getSubscriptionCount());
+        }
+        return writer.toString();
+    }
+
+    private Map<String, Object> health() {
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", "UP");
+        health.put("ready", isReady());
+        health.put("uptimeSeconds", uptimeSeconds());
+        health.put("connections", connectionManager.getOpenConnections());
+        health.put("maxConnections", config.getMaxConnections());
+        return health;
+    }
+
+    private long uptimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
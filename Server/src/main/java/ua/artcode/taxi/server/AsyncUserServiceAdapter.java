@@ -0,0 +1,177 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.ServerBusyException;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * {@link AsyncUserService} over the blocking {@link UserService}.
+ *
+ * The methods which ask Google Maps (makeOrder, makeOrderAnonymous,
+ * calculateOrder, getMapDistancesToDriver) run on their own pool of
+ * {@code geoThreads} threads, so slow lookups do not hold the request
+ * threads. The rest only touch memory and complete before they return.
+ * When the pool and its queue are full the future fails with
+ * {@link ServerBusyException}.
+ */
+public class AsyncUserServiceAdapter implements AsyncUserService {
+
+    private final static Logger LOG = Logger.getLogger(AsyncUserServiceAdapter.class);
+
+    private final UserService userService;
+    private final ExecutorService geoExecutor;
+    private final long retryAfterMs;
+
+    public AsyncUserServiceAdapter(UserService userService, ServerConfig config) {
+        this.userService = userService;
+        this.retryAfterMs = config.getBusyRetryAfterMs();
+
+        //no queue at all with depth 0, as in the RequestExecutor
+        int queueDepth = config.getRequestQueueDepth();
+        BlockingQueue<Runnable> queue = queueDepth > 0 ? new ArrayBlockingQueue<>(queueDepth) : new SynchronousQueue<>();
+
+        this.geoExecutor = new ThreadPoolExecutor(config.getGeoThreads(), config.getGeoThreads(),
+                60, TimeUnit.SECONDS, queue, new NamedThreadFactory("taxi-geo-"));
+
+        LOG.info("Google Maps requests run on a pool of " + config.getGeoThreads() + " threads");
+    }
+
+    @Override
+    public CompletableFuture<User> registerPassenger(Map<String, String> map) {
+        return now(() -> userService.registerPassenger(map));
+    }
+
+    @Override
+    public CompletableFuture<User> registerDriver(Map<String, String> map) {
+        return now(() -> userService.registerDriver(map));
+    }
+
+    @Override
+    public CompletableFuture<String> login(String phone, String pass) {
+        return now(() -> userService.login(phone, pass));
+    }
+
+    @Override
+    public CompletableFuture<Order> makeOrder(String accessToken, String lineFrom, String lineTo, String message) {
+        return geo(() -> userService.makeOrder(accessToken, lineFrom, lineTo, message));
+    }
+
+    @Override
+    public CompletableFuture<Order> makeOrderAnonymous(String phone, String name, String from, String to,
+                                                       String message) {
+        return geo(() -> userService.makeOrderAnonymous(phone, name, from, to, message));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> calculateOrder(String lineFrom, String lineTo) {
+        return geo(() -> userService.calculateOrder(lineFrom, lineTo));
+    }
+
+    @Override
+    public CompletableFuture<Order> getOrderInfo(long orderId) {
+        return now(() -> userService.getOrderInfo(orderId));
+    }
+
+    @Override
+    public CompletableFuture<Order> getLastOrderInfo(String accessToken) {
+        return now(() -> userService.getLastOrderInfo(accessToken));
+    }
+
+    @Override
+    public CompletableFuture<Order> cancelOrder(long orderId) {
+        return now(() -> userService.cancelOrder(orderId));
+    }
+
+    @Override
+    public CompletableFuture<Order> closeOrder(String accessToken, long orderId) {
+        return now(() -> userService.closeOrder(accessToken, orderId));
+    }
+
+    @Override
+    public CompletableFuture<Order> takeOrder(String accessToken, long orderId) {
+        return now(() -> userService.takeOrder(accessToken, orderId));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Order>> getMapDistancesToDriver(String orderStatus,
+                                                                         String lineAddressDriver) {
+        return geo(() -> userService.getMapDistancesToDriver(orderStatus, lineAddressDriver));
+    }
+
+    @Override
+    public CompletableFuture<User> getUser(String accessToken) {
+        return now(() -> userService.getUser(accessToken));
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getAllOrdersUser(String accessToken) {
+        return now(() -> userService.getAllOrdersUser(accessToken));
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getOrdersUserPage(String accessToken, long cursor, int pageSize) {
+        return now(() -> userService.getOrdersUserPage(accessToken, cursor, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getChangedOrdersUser(String accessToken, long sinceVersion) {
+        return now(() -> userService.getChangedOrdersUser(accessToken, sinceVersion));
+    }
+
+    @Override
+    public CompletableFuture<User> updateUser(Map<String, String> map, String accessToken) {
+        return now(() -> userService.updateUser(map, accessToken));
+    }
+
+    @Override
+    public CompletableFuture<User> deleteUser(String accessToken) {
+        return now(() -> userService.deleteUser(accessToken));
+    }
+
+    //for other lookups which must not wait on their own threads, e.g. of the OrderFeed
+    public Executor getGeoExecutor() {
+        return geoExecutor;
+    }
+
+    //runs any Google Maps call on the geo pool, with the same ServerBusyException when it is full
+    public <T> CompletableFuture<T> lookUp(Callable<T> call) {
+        return geo(call);
+    }
+
+    public void shutdown() {
+        geoExecutor.shutdown();
+    }
+
+    private static <T> CompletableFuture<T> now(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        complete(result, call);
+        return result;
+    }
+
+    private <T> CompletableFuture<T> geo(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            geoExecutor.execute(() -> complete(result, call));
+
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ServerBusyException(retryAfterMs));
+        }
+        return result;
+    }
+
+    //the future fails with the exception itself, as the blocking method throws it
+    private static <T> void complete(CompletableFuture<T> result, Callable<T> call) {
+        try {
+            result.complete(call.call());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
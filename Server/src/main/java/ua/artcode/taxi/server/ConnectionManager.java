@@ -0,0 +1,194 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.ServerBusyException;
+import ua.artcode.taxi.to.FrameCodec;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open client connections of both transports.
+ *
+ * A new connection is refused when there are {@code maxConnections} open
+ * connections already, or {@code maxConnectionsPerIp} from the same address.
+ * Sessions which sent no request for {@code idleTimeoutMs} are closed, so
+ * clients which vanished without closing the socket do not keep a thread
+ * or a slot forever.
+ */
+public class ConnectionManager {
+
+    private final static Logger LOG = Logger.getLogger(ConnectionManager.class);
+
+    private final int maxConnections;
+    private final int maxConnectionsPerIp;
+    private final long idleTimeoutMs;
+    private final long busyRetryAfterMs;
+    private final long maxQueuedBytes;
+
+    //slots are taken before the session exists and given back when it is closed
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<InetAddress, Integer> connectionsPerIp = new ConcurrentHashMap<>();
+    private final Map<Session, InetAddress> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong idleClosed = new AtomicLong();
+    private final AtomicLong overflowClosed = new AtomicLong();
+    private long refusedLogged;
+
+    private ScheduledExecutorService reaper;
+
+    public ConnectionManager(ServerConfig config) {
+        this.maxConnections = config.getMaxConnections();
+        this.maxConnectionsPerIp = config.getMaxConnectionsPerIp();
+        this.idleTimeoutMs = config.getIdleTimeoutMs();
+        this.busyRetryAfterMs = config.getBusyRetryAfterMs();
+        this.maxQueuedBytes = config.getMaxQueuedBytes() > 0 ? config.getMaxQueuedBytes() : Long.MAX_VALUE;
+    }
+
+    public void start() {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+        long period = Math.max(1000, idleTimeoutMs / 4);
+        reaper = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("taxi-idle-"));
+        reaper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    // false when the new connection must be closed at once
+    public boolean admit(InetAddress address) {
+
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            refused.incrementAndGet();
+            return false;
+        }
+
+        boolean[] admitted = new boolean[1];
+        connectionsPerIp.compute(address, (ip, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConnectionsPerIp) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+
+        if (!admitted[0]) {
+            connections.decrementAndGet();
+            refused.incrementAndGet();
+            return false;
+        }
+
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    //the admitted connection has its session now
+    public void opened(Session session, InetAddress address) {
+        sessions.put(session, address);
+        session.setAddress(address);
+        session.setMaxQueuedBytes(maxQueuedBytes);
+        session.setConnectionManager(this);
+
+        //closed before the manager was set
+        if (!session.isOpen()) {
+            closed(session);
+        }
+    }
+
+    //the admitted connection is gone before it got a session
+    public void release(InetAddress address) {
+        connectionsPerIp.computeIfPresent(address, (ip, count) -> count > 1 ? count - 1 : null);
+        connections.decrementAndGet();
+    }
+
+    //called from Session.released(), only the first call counts
+    void closed(Session session) {
+        InetAddress address = sessions.remove(session);
+        if (address != null) {
+            release(address);
+        }
+    }
+
+    //the session did not read its responses and had more than maxQueuedBytes waiting
+    void overflowed(Session session) {
+        overflowClosed.incrementAndGet();
+        LOG.warn("Session " + session.getId() + " has more than " + maxQueuedBytes
+                + " bytes waiting to be sent, closing");
+    }
+
+    //what a refused client reads before the socket is closed
+    public ByteBuffer refusal() {
+        return FrameCodec.encodeLine(new ServerBusyException(busyRetryAfterMs).toString());
+    }
+
+    public int getOpenConnections() {
+        return sessions.size();
+    }
+
+    public int getOpenConnections(InetAddress address) {
+        Integer count = connectionsPerIp.get(address);
+        return count == null ? 0 : count;
+    }
+
+    public long getAcceptedConnections() {
+        return accepted.get();
+    }
+
+    public long getRefusedConnections() {
+        return refused.get();
+    }
+
+    public long getIdleClosedConnections() {
+        return idleClosed.get();
+    }
+
+    public long getOverflowClosedConnections() {
+        return overflowClosed.get();
+    }
+
+    //reaper thread
+    private void closeIdle() {
+
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        int closedNow = 0;
+
+        for (Session session : sessions.keySet()) {
+            if (!session.isOpen()) {
+                //a transport which did not say it was closed
+                closed(session);
+
+            } else if (now - session.getLastReadNanos() > timeout) {
+                LOG.info("Session " + session.getId() + " is idle for more than " + idleTimeoutMs + " ms, closing");
+                session.close();
+                closed(session);
+                idleClosed.incrementAndGet();
+                closedNow++;
+            }
+        }
+
+        long refusedNow = refused.get() - refusedLogged;
+        refusedLogged += refusedNow;
+
+        if (closedNow > 0 || refusedNow > 0) {
+            LOG.info(getOpenConnections() + " connections open, " + closedNow + " idle closed, "
+                    + refusedNow + " refused since the last check");
+        }
+    }
+}
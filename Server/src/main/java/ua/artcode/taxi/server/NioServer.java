@@ -0,0 +1,328 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking server mode. A few selector threads read json requests
+ * from all connections and hand complete messages to the
+ * {@link RequestDispatcher}. Wire format is the same as for the blocking
+ * mode: lines, or length prefixed frames after the hello request.
+ */
+public class NioServer {
+
+    private final static Logger LOG = Logger.getLogger(NioServer.class);
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private ServerConfig config;
+    private RequestDispatcher requestDispatcher;
+    private ConnectionManager connectionManager;
+
+    private ServerSocketChannel serverChannel;
+    private IoLoop[] loops;
+    private AtomicInteger nextLoop = new AtomicInteger();
+
+    public NioServer(ServerConfig config, RequestDispatcher requestDispatcher, ConnectionManager connectionManager) {
+        this.config = config;
+        this.requestDispatcher = requestDispatcher;
+        this.connectionManager = connectionManager;
+    }
+
+    public void start() throws IOException {
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(config.getPort()));
+
+        loops = new IoLoop[config.getIoThreads()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(i);
+        }
+
+        //the first loop also accepts new clients
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (IoLoop loop : loops) {
+            Thread thread = new Thread(loop, "taxi-io-" + loop.index);
+            thread.start();
+        }
+
+        LOG.info("NIO server started on port " + config.getPort() + " with " + loops.length + " io threads");
+    }
+
+    //the configured port, or the one the system gave for port 0
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() throws IOException {
+
+        serverChannel.close();
+
+        for (IoLoop loop : loops) {
+            loop.running = false;
+            loop.selector.wakeup();
+        }
+    }
+
+    private void accept() throws IOException {
+
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            InetAddress address = channel.socket().getInetAddress();
+            if (!connectionManager.admit(address)) {
+                refuse(channel);
+                continue;
+            }
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            IoLoop loop = loops[Math.abs(nextLoop.getAndIncrement() % loops.length)];
+            loop.register(new Connection(loop, channel, address));
+        }
+    }
+
+    //the busy line is small enough for the socket buffer of a new connection
+    private void refuse(SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            channel.write(connectionManager.refusal());
+        } catch (IOException e) {
+            LOG.debug("Can not tell the refused client why", e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.error("Can not close refused channel", e);
+            }
+        }
+    }
+
+    private class IoLoop implements Runnable {
+
+        private final int index;
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        //connections and write requests coming from other threads
+        private final Queue<Connection> newConnections = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean running = true;
+
+        IoLoop(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+        }
+
+        void register(Connection connection) {
+            newConnections.add(connection);
+            selector.wakeup();
+        }
+
+        void requestWrite(Connection connection) {
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+
+                    registerNewConnections();
+                    flushPendingWrites();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if (!key.isValid()) {
+                            continue;
+                        }
+
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read(readBuffer);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (RuntimeException e) {
+                            failed(connection, e);
+                        }
+                    }
+
+                } catch (IOException | RuntimeException e) {
+                    LOG.error("Selector loop " + index + " failed", e);
+                }
+            }
+
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                LOG.error("Can not close selector loop " + index, e);
+            }
+        }
+
+        private void registerNewConnections() {
+            Connection connection;
+            while ((connection = newConnections.poll()) != null) {
+                try {
+                    connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                    connectionManager.opened(connection, connection.address);
+                } catch (ClosedChannelException e) {
+                    LOG.info("Client disconnected before registration");
+                    connectionManager.release(connection.address);
+                }
+            }
+        }
+
+        private void flushPendingWrites() {
+            Connection connection;
+            while ((connection = pendingWrites.poll()) != null) {
+                try {
+                    connection.flush();
+                } catch (RuntimeException e) {
+                    failed(connection, e);
+                }
+            }
+        }
+
+        //one broken connection must not stop the loop, the others on it would freeze
+        private void failed(Connection connection, RuntimeException e) {
+            LOG.error("Session " + connection.getId() + " failed, closing it", e);
+            readBuffer.clear();
+            connection.close();
+        }
+    }
+
+    private class Connection extends Session {
+
+        private final IoLoop loop;
+        private final SocketChannel channel;
+        private final InetAddress address;
+
+        //set by the selector thread when the channel is registered
+        private volatile SelectionKey key;
+
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+
+        Connection(IoLoop loop, SocketChannel channel, InetAddress address) {
+            this.loop = loop;
+            this.channel = channel;
+            this.address = address;
+        }
+
+        void read(ByteBuffer buffer) {
+            try {
+                int read;
+                while ((read = channel.read(buffer)) > 0) {
+                    buffer.flip();
+                    decode(buffer);
+                    buffer.clear();
+                }
+
+                if (read < 0) {
+                    close();
+                }
+
+            } catch (IOException e) {
+                buffer.clear();
+                close();
+            }
+        }
+
+        //the hello line may switch the framing in the middle of the buffer
+        private void decode(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (isBinaryFraming()) {
+                    getCodec().decodeFrames(buffer, this::received, () -> true);
+                } else {
+                    getCodec().decodeLines(buffer, this::received, () -> !isBinaryFraming());
+                }
+            }
+        }
+
+        private void received(String message) {
+            requestDispatcher.received(this, message);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        protected void write(ByteBuffer data) {
+            if (!channel.isOpen()) {
+                sent(data.remaining());
+                return;
+            }
+            writes.add(data);
+            loop.requestWrite(this);
+        }
+
+        //called only by the selector thread of this connection
+        void flush() {
+            try {
+                ByteBuffer buffer;
+                while ((buffer = writes.peek()) != null) {
+                    sent(channel.write(buffer));
+                    if (buffer.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    writes.poll();
+                }
+
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        //the idle reaper closes connections from its own thread
+        @Override
+        public void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.error("Can not close client channel", e);
+            }
+            ByteBuffer dropped;
+            while ((dropped = writes.poll()) != null) {
+                sent(dropped.remaining());
+            }
+            released();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package ua.artcode.taxi.server;
+
+import com.google.gson.Gson;
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.dao.OrderDao;
+import ua.artcode.taxi.dao.OrderListener;
+import ua.artcode.taxi.exception.DriverNotFoundException;
+import ua.artcode.taxi.exception.InputDataWrongException;
+import ua.artcode.taxi.model.Address;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.geolocation.GoogleMapsAPI;
+import ua.artcode.taxi.utils.geolocation.Location;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NEW orders near a driver, pushed to the driver's connection as they change.
+ *
+ * A driver subscribes with its "accessToken", a location ("addressDriver"
+ * line, or "lat" and "lon") and a "radius" in km, and gets the NEW orders
+ * inside the radius,
+ * nearest first. After that the session gets messages without requestId:
+ * {@link Protocol#ORDER_ADDED} with the order and its "distance" in km, and
+ * {@link Protocol#ORDER_TAKEN} or {@link Protocol#ORDER_CANCELLED} for the
+ * orders it was told about. One subscription per session, subscribing
+ * again replaces it.
+ *
+ * The answer and all events are sent by one feed thread, so every order is
+ * either in the answer or in an event after it, and the threads which
+ * change orders never wait for slow connections. Events are queued from
+ * the moment a subscription is asked for, the orders the answer already
+ * has are not sent again. The driver's address and orders without
+ * coordinates are looked up on the geo pool of the
+ * {@link AsyncUserServiceAdapter}, orders come as events once they are found.
+ */
+public class OrderFeed implements OrderListener {
+
+    private final static Logger LOG = Logger.getLogger(OrderFeed.class);
+
+    private static final double EARTH_RADIUS_KM = 6371;
+
+    private final OrderDao orderDao;
+    private final GoogleMapsAPI googleMapsAPI;
+    private final AsyncUserServiceAdapter asyncUserService;
+    private final Executor geoExecutor;
+    private final Gson gson;
+
+    private final ExecutorService feedThread = Executors.newSingleThreadExecutor(new NamedThreadFactory("order-feed-"));
+    private final Map<Session, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    //subscriptions asked for and not yet answered, their events must not be dropped
+    private final AtomicInteger subscribing = new AtomicInteger();
+
+    //orders being looked up on the geo pool
+    private final Set<Long> locating = ConcurrentHashMap.newKeySet();
+
+    public OrderFeed(OrderDao orderDao, GoogleMapsAPI googleMapsAPI, AsyncUserServiceAdapter asyncUserService,
+                     Gson gson) {
+        this.orderDao = orderDao;
+        this.googleMapsAPI = googleMapsAPI;
+        this.asyncUserService = asyncUserService;
+        this.geoExecutor = asyncUserService.getGeoExecutor();
+        this.gson = gson;
+    }
+
+    public boolean accepts(String methodName) {
+        return Protocol.SUBSCRIBE_NEW_ORDERS.equals(methodName) || Protocol.UNSUBSCRIBE_NEW_ORDERS.equals(methodName);
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    //sends the answer itself and returns when it is sent
+    public void handle(Session session, Message request) {
+        try {
+            if (Protocol.SUBSCRIBE_NEW_ORDERS.equals(request.getMethodName())) {
+                //before the feed thread reads the NEW orders, an order made meanwhile is in them or in an event
+                subscribing.incrementAndGet();
+                try {
+                    Subscription subscription = subscription(session, request);
+                    feedThread.submit(() -> subscribe(subscription, request)).get();
+                } finally {
+                    subscribing.decrementAndGet();
+                }
+            } else {
+                feedThread.submit(() -> unsubscribe(session, request)).get();
+            }
+
+        } catch (ExecutionException e) {
+            send(session, error(request, e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            send(session, error(request, e));
+        }
+    }
+
+    @Override
+    public void orderCreated(Order order) {
+        if (listening() && order.getOrderStatus() == OrderStatus.NEW) {
+            feedThread.execute(() -> added(order));
+        }
+    }
+
+    @Override
+    public void orderUpdated(Order order) {
+        if (!listening()) {
+            return;
+        }
+
+        //the order may change again before the feed thread gets to it
+        OrderStatus status = order.getOrderStatus();
+        feedThread.execute(() -> {
+            if (status == OrderStatus.NEW) {
+                added(order);
+            } else {
+                removed(order, status == OrderStatus.IN_PROGRESS ? Protocol.ORDER_TAKEN : Protocol.ORDER_CANCELLED);
+            }
+        });
+    }
+
+    public void shutdown() {
+        feedThread.shutdownNow();
+    }
+
+    private boolean listening() {
+        return !subscriptions.isEmpty() || subscribing.get() > 0;
+    }
+
+    private Subscription subscription(Session session, Message request) throws Exception {
+
+        if (session.getProtocolVersion() < Protocol.VERSION_2) {
+            throw new IllegalStateException(Protocol.SUBSCRIBE_NEW_ORDERS + " needs protocol v2");
+        }
+
+        Map<String, Object> map = request.getMessageBody().getMap();
+
+        //the events carry whole orders with the passenger's phone, only drivers get them
+        checkDriver(map.get("accessToken"));
+
+        double radius = Double.parseDouble(map.get("radius").toString());
+
+        if (map.get("lat") != null && map.get("lon") != null) {
+            return new Subscription(session, Double.parseDouble(map.get("lat").toString()),
+                    Double.parseDouble(map.get("lon").toString()), radius);
+        }
+
+        //looked up on the geo pool, a full pool answers ServerBusyException as the other lookups do
+        Address address = new Address(map.get("addressDriver").toString());
+        Location location = asyncUserService.lookUp(() -> googleMapsAPI.findLocation(address.getCountry(),
+                address.getCity(), address.getStreet(), address.getHouseNum())).get();
+
+        return new Subscription(session, location.getLat(), location.getLng(), radius);
+    }
+
+    private void checkDriver(Object accessToken) throws DriverNotFoundException {
+
+        User user = null;
+        if (accessToken != null) {
+            try {
+                user = asyncUserService.getUser(accessToken.toString()).getNow(null);
+            } catch (CompletionException e) {
+                //unknown tokens fail inside the service
+            }
+        }
+
+        if (user == null || user.getIdentifier() != UserIdentifier.D) {
+            throw new DriverNotFoundException(Protocol.SUBSCRIBE_NEW_ORDERS + " needs the accessToken of a driver");
+        }
+    }
+
+    //feed thread
+    private void subscribe(Subscription subscription, Message request) {
+
+        List<Order> nearest = new ArrayList<>();
+        for (Order order : orderDao.getOrdersByStatus(OrderStatus.NEW)) {
+            if (locate(order) && subscription.contains(order)) {
+                nearest.add(order);
+                subscription.orderIds.add(order.getId());
+            }
+        }
+        nearest.sort(Comparator.comparingDouble(subscription::distanceTo));
+
+        subscriptions.put(subscription.session, subscription);
+
+        MessageBody body = new MessageBody();
+        body.getMap().put(Protocol.ORDERS, nearest);
+        send(subscription.session, reply(request, body));
+
+        LOG.info("Session " + subscription.session.getId() + " subscribed to new orders in "
+                + subscription.radius + " km, " + nearest.size() + " orders now");
+    }
+
+    //feed thread
+    private void unsubscribe(Session session, Message request) {
+        subscriptions.remove(session);
+        send(session, reply(request, new MessageBody()));
+    }
+
+    //feed thread
+    private void added(Order order) {
+
+        if (!locate(order)) {
+            return;
+        }
+
+        for (Subscription subscription : subscriptions.values()) {
+            if (!subscription.session.isOpen()) {
+                subscriptions.remove(subscription.session);
+
+            } else if (subscription.contains(order) && subscription.orderIds.add(order.getId())) {
+                Message event = event(Protocol.ORDER_ADDED, order);
+                event.getMessageBody().getMap().put("distance", Math.round(subscription.distanceTo(order)));
+                send(subscription.session, event);
+            }
+        }
+    }
+
+    //feed thread, only the sessions which know the order are told
+    private void removed(Order order, String eventName) {
+
+        Message event = null;
+
+        for (Subscription subscription : subscriptions.values()) {
+            if (!subscription.session.isOpen()) {
+                subscriptions.remove(subscription.session);
+
+            } else if (subscription.orderIds.remove(order.getId())) {
+                if (event == null) {
+                    event = event(eventName, order);
+                }
+                send(subscription.session, event);
+            }
+        }
+    }
+
+    //feed thread; orders made before the coordinates were kept are looked up on the geo pool,
+    //the feed thread sets the coordinates and tells the subscriptions about the order then
+    private boolean locate(Order order) {
+
+        Address from = order.getFrom();
+        if (from.getLat() != 0 || from.getLon() != 0) {
+            return true;
+        }
+
+        if (locating.add(order.getId())) {
+            try {
+                geoExecutor.execute(() -> lookUp(order));
+            } catch (RejectedExecutionException e) {
+                locating.remove(order.getId());
+                LOG.warn("Can not look up location of order " + order.getId() + ", geo pool is full");
+            }
+        }
+        return false;
+    }
+
+    //geo pool
+    private void lookUp(Order order) {
+
+        Address from = order.getFrom();
+        try {
+            Location location = googleMapsAPI.findLocation(from.getCountry(), from.getCity(),
+                    from.getStreet(), from.getHouseNum());
+
+            feedThread.execute(() -> {
+                locating.remove(order.getId());
+                from.setLat(location.getLat());
+                from.setLon(location.getLng());
+                if (order.getOrderStatus() == OrderStatus.NEW) {
+                    added(order);
+                }
+            });
+
+        } catch (InputDataWrongException | RuntimeException e) {
+            locating.remove(order.getId());
+            LOG.warn("Can not find location of order " + order.getId() + ": " + e);
+        }
+    }
+
+    private static Message event(String name, Order order) {
+        MessageBody body = new MessageBody();
+        body.getMap().put(Protocol.ORDER, order);
+        return new Message(name, body);
+    }
+
+    private static Message reply(Message request, MessageBody body) {
+        Message response = new Message();
+        response.setRequestId(request.getRequestId());
+        response.setMessageBody(body);
+        return response;
+    }
+
+    private static Message error(Message request, Throwable e) {
+        Message response = new Message();
+        response.setRequestId(request.getRequestId());
+        response.setError(e.toString());
+        return response;
+    }
+
+    private void send(Session session, Message message) {
+
+        if (!session.isOpen()) {
+            return;
+        }
+
+        //untagged requests get the bare exception line, as in RequestHandler
+        if (message.getRequestId() == null && message.getError() != null) {
+            session.send(message.getError());
+            return;
+        }
+
+        session.send(FrameCodec.encode(gson, message, session.isBinaryFraming()));
+    }
+
+    private static class Subscription {
+
+        private final Session session;
+        private final double lat;
+        private final double lon;
+        private final double radius;
+
+        //orders this session was told about, only they get taken and cancelled events
+        private final Set<Long> orderIds = new HashSet<>();
+
+        Subscription(Session session, double lat, double lon, double radius) {
+            this.session = session;
+            this.lat = lat;
+            this.lon = lon;
+            this.radius = radius;
+        }
+
+        boolean contains(Order order) {
+            return distanceTo(order) <= radius;
+        }
+
+        //great circle distance in km, no requests to Google
+        double distanceTo(Order order) {
+            double dLat = Math.toRadians(order.getFrom().getLat() - lat);
+            double dLon = Math.toRadians(order.getFrom().getLon() - lon);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                    + Math.cos(Math.toRadians(lat)) * Math.cos(Math.toRadians(order.getFrom().getLat()))
+                    * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.RateLimitedException;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets of the expensive commands, one per command and access
+ * token and one per command and client address, so neither a logged in
+ * user nor one host can spend the Google Maps quota of everybody.
+ *
+ * Limits come as {@code command=permitsPerSecond:burst,...}, e.g.
+ * {@code calculateOrder=2:10} lets a client send 10 quotes at once and
+ * then 2 a second. Commands without a limit are never checked.
+ *
+ * A bucket is one {@link AtomicLong} updated with compare-and-set, so
+ * requests never take a lock here. Full buckets are dropped by a reaper
+ * after {@code idleMs}; a dropped bucket is the same as a new one.
+ */
+public class RateLimiter {
+
+    private final static Logger LOG = Logger.getLogger(RateLimiter.class);
+
+    private final Map<String, Limit> limits;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final long idleNanos;
+
+    private ScheduledExecutorService reaper;
+
+    public RateLimiter(String limits, long idleMs) {
+        this.limits = parse(limits);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+    }
+
+    public RateLimiter(ServerConfig config) {
+        this(config.getRateLimits(), config.getRateLimitIdleMs());
+    }
+
+    public void start() {
+        if (limits.isEmpty()) {
+            return;
+        }
+        long period = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 2);
+        reaper = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("taxi-rate-"));
+        reaper.scheduleWithFixedDelay(this::dropIdle, period, period, TimeUnit.MILLISECONDS);
+
+        LOG.info("Rate limits " + limits);
+    }
+
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    public boolean isLimited(String methodName) {
+        return limits.containsKey(methodName);
+    }
+
+    /**
+     * Takes one permit from the bucket of the address and one from the
+     * bucket of the token, either may be null. The address is checked
+     * first, a request refused by it does not cost a permit of the token.
+     */
+    public void acquire(String methodName, InetAddress address, String accessToken) throws RateLimitedException {
+
+        Limit limit = limits.get(methodName);
+        if (limit == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (address != null) {
+            take(methodName, "ip:" + address.getHostAddress(), limit, now);
+        }
+        if (accessToken != null) {
+            take(methodName, "token:" + accessToken, limit, now);
+        }
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    private void take(String methodName, String client, Limit limit, long now) throws RateLimitedException {
+
+        String key = methodName + '|' + client;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(limit, now));
+        }
+
+        long waitNanos = bucket.take(now);
+        if (waitNanos > 0) {
+            throw new RateLimitedException(methodName, Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        }
+    }
+
+    //reaper thread
+    private void dropIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFullSince(now - idleNanos));
+    }
+
+    static Map<String, Limit> parse(String limits) {
+
+        Map<String, Limit> result = new HashMap<>();
+        if (limits == null || limits.trim().isEmpty()) {
+            return result;
+        }
+
+        for (String entry : limits.split(",")) {
+            String[] nameAndLimit = entry.trim().split("=");
+            String[] rateAndBurst = nameAndLimit.length == 2 ? nameAndLimit[1].split(":") : new String[0];
+            if (rateAndBurst.length != 2) {
+                throw new IllegalArgumentException("Rate limit must look like command=permitsPerSecond:burst, not "
+                        + entry);
+            }
+            result.put(nameAndLimit[0].trim(),
+                    new Limit(Double.parseDouble(rateAndBurst[0]), Integer.parseInt(rateAndBurst[1].trim())));
+        }
+        return result;
+    }
+
+    static class Limit {
+
+        //time one permit takes to come back
+        private final long intervalNanos;
+        private final int burst;
+
+        Limit(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate limit needs permitsPerSecond > 0 and burst >= 1");
+            }
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            this.burst = burst;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f/s burst %d", (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos, burst);
+        }
+    }
+
+    /**
+     * The bucket keeps the time when it is full again instead of the
+     * number of permits left: taking a permit moves that time one interval
+     * forward, and it may be at most {@code burst} intervals ahead of now.
+     */
+    static class Bucket {
+
+        private final Limit limit;
+        private final AtomicLong fullAt;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.fullAt = new AtomicLong(now);
+        }
+
+        // 0 when a permit was taken, otherwise the nanos until there is one
+        long take(long now) {
+            long capacity = limit.intervalNanos * limit.burst;
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + limit.intervalNanos;
+                if (next - now > capacity) {
+                    return next - now - capacity;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFullSince(long time) {
+            return fullAt.get() - time <= 0;
+        }
+    }
+}
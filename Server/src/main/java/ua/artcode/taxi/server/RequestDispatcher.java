@@ -0,0 +1,189 @@
+package ua.artcode.taxi.server;
+
+import com.google.gson.JsonSyntaxException;
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.ServerBusyException;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Moves requests of a session to the {@link RequestExecutor}.
+ *
+ * Requests without requestId are answered strictly in the order they came,
+ * as the old clients expect. Requests with requestId run in parallel and
+ * their responses may come back in any order; the slow ones do not keep
+ * a request thread while they wait, see {@link RequestHandler#handleAsync}.
+ */
+public class RequestDispatcher {
+
+    private final static Logger LOG = Logger.getLogger(RequestDispatcher.class);
+
+    private RequestHandler requestHandler;
+    private RequestExecutor requestExecutor;
+    private int maxQueuedRequests;
+    private long busyRetryAfterMs;
+    private boolean binaryFramingAllowed;
+    private boolean compressionAllowed;
+    private int compressionThreshold;
+    private long idleTimeoutMs;
+
+    public RequestDispatcher(RequestHandler requestHandler, RequestExecutor requestExecutor, ServerConfig config) {
+        this.requestHandler = requestHandler;
+        this.requestExecutor = requestExecutor;
+        this.maxQueuedRequests = config.getSessionQueueDepth();
+        this.busyRetryAfterMs = config.getBusyRetryAfterMs();
+        this.binaryFramingAllowed = config.isBinaryFraming();
+        this.compressionAllowed = config.isCompression();
+        this.compressionThreshold = config.getCompressionThreshold();
+        this.idleTimeoutMs = config.getIdleTimeoutMs();
+    }
+
+    //called by the transport thread of the session
+    public void received(Session session, String line) {
+
+        session.touch();
+
+        //the framing must be switched before the transport reads the next byte
+        if (session.firstRequest() && line.contains(FrameCodec.HELLO)) {
+            Message request = parse(line);
+            if (request != null && FrameCodec.HELLO.equals(request.getMethodName())) {
+                hello(session, request);
+                return;
+            }
+        }
+
+        if (session.queuedRequests() >= maxQueuedRequests) {
+            reject(session, line, new ServerBusyException(busyRetryAfterMs));
+            return;
+        }
+
+        if (!session.enqueue(line)) {
+            return;
+        }
+
+        try {
+            requestExecutor.execute(() -> process(session));
+
+        } catch (ServerBusyException e) {
+            //nobody will take the queued lines, reject them all
+            String queued;
+            while ((queued = session.nextRequest()) != null) {
+                reject(session, queued, e);
+            }
+        }
+    }
+
+    private void hello(Session session, Message request) {
+
+        Map<String, Object> requested = request.getMessageBody() == null || request.getMessageBody().getMap() == null
+                ? Collections.emptyMap() : request.getMessageBody().getMap();
+
+        boolean binary = binaryFramingAllowed && FrameCodec.FRAMING_BINARY.equals(requested.get("framing"));
+
+        //clients which do not tell the version speak v1
+        Object requestedVersion = requested.get("version");
+        int version = requestedVersion instanceof Number
+                ? Math.max(Protocol.VERSION_1, Math.min(((Number) requestedVersion).intValue(), Protocol.VERSION))
+                : Protocol.VERSION_1;
+
+        //compressed bytes need frames, lines can not carry them
+        Object requestedCompression = requested.get("compression");
+        boolean compressed = binary && compressionAllowed
+                && FrameCompression.isSupported(String.valueOf(requestedCompression));
+
+        MessageBody body = new MessageBody();
+        body.getMap().put("framing", binary ? FrameCodec.FRAMING_BINARY : FrameCodec.FRAMING_LINE);
+        body.getMap().put("version", version);
+        body.getMap().put("compression", compressed ? requestedCompression : FrameCompression.NONE);
+
+        //clients ping when they have nothing to ask for that long
+        if (idleTimeoutMs > 0) {
+            body.getMap().put("idleTimeout", idleTimeoutMs);
+        }
+
+        //the answer itself still goes as a line
+        requestHandler.send(session, requestHandler.reply(request, body));
+        session.setBinaryFraming(binary);
+        session.setProtocolVersion(version);
+        if (compressed) {
+            session.setCompression(new FrameCompression(requestedCompression.toString(), compressionThreshold));
+        }
+
+        LOG.info("Session " + session.getId() + " uses " + body.getMap().get("framing")
+                + " framing, protocol v" + version + ", compression " + session.getCompression());
+    }
+
+    private void process(Session session) {
+
+        String line;
+        while ((line = session.nextRequest()) != null) {
+
+            Message request = parse(line);
+            if (request == null) {
+                continue;
+            }
+
+            //the loop must run until the queue is empty, or the session is left processing for good
+            try {
+                if (request.getRequestId() == null) {
+                    send(session, requestHandler.handle(session, request));
+                } else {
+                    runTagged(session, request);
+                }
+            } catch (RuntimeException e) {
+                failed(session, request, e);
+            }
+        }
+    }
+
+    private void runTagged(Session session, Message request) {
+        try {
+            requestExecutor.execute(() -> {
+                try {
+                    requestHandler.handleAsync(session, request).thenAccept(response -> send(session, response));
+                } catch (RuntimeException e) {
+                    failed(session, request, e);
+                }
+            });
+
+        } catch (ServerBusyException e) {
+            send(session, requestHandler.error(request, e));
+        }
+    }
+
+    private void failed(Session session, Message request, RuntimeException e) {
+        LOG.error("Request " + request.getMethodName() + " of session " + session.getId() + " failed", e);
+        send(session, requestHandler.error(request, e));
+    }
+
+    private void reject(Session session, String line, ServerBusyException e) {
+        Message request = parse(line);
+        if (request != null) {
+            send(session, requestHandler.error(request, e));
+        }
+    }
+
+    private Message parse(String line) {
+        try {
+            return requestHandler.parse(line);
+
+        } catch (JsonSyntaxException e) {
+            LOG.warn("Wrong request " + line);
+            return null;
+
+        } catch (RuntimeException e) {
+            LOG.warn("Can not read request " + line, e);
+            return null;
+        }
+    }
+
+    private void send(Session session, Message response) {
+        requestHandler.send(session, response);
+    }
+}
@@ -0,0 +1,125 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.ServerBusyException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+
+/**
+ * Runs client requests against the UserService with a fixed concurrency cap
+ * and a bounded queue in front of it. When both are full the request is not
+ * queued at all and the caller gets a {@link ServerBusyException} at once.
+ *
+ * Two modes are supported:
+ * pool    - bounded ThreadPoolExecutor with {@code maxConcurrentRequests} threads
+ * virtual - one virtual thread per request, concurrency limited by a semaphore;
+ *           needs a JVM with virtual threads, otherwise falls back to pool
+ */
+public class RequestExecutor {
+
+    private final static Logger LOG = Logger.getLogger(RequestExecutor.class);
+
+    public static final String MODE_POOL = "pool";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private final ExecutorService executor;
+    private final ThreadFactory connectionThreadFactory;
+    private final long retryAfterMs;
+
+    //used only in virtual mode, the pool mode is limited by the executor itself
+    private final Semaphore admitted;
+    private final Semaphore running;
+
+    public RequestExecutor(ServerConfig config) {
+
+        int maxConcurrent = config.getMaxConcurrentRequests();
+        int queueDepth = config.getRequestQueueDepth();
+        retryAfterMs = config.getBusyRetryAfterMs();
+
+        ThreadFactory virtualFactory = MODE_VIRTUAL.equalsIgnoreCase(config.getExecutorMode())
+                ? virtualThreadFactory() : null;
+
+        if (virtualFactory != null) {
+            executor = Executors.newCachedThreadPool(virtualFactory);
+            connectionThreadFactory = virtualFactory;
+            admitted = new Semaphore(maxConcurrent + queueDepth);
+            running = new Semaphore(maxConcurrent);
+
+            LOG.info("Requests run on virtual threads, max " + maxConcurrent + " at once");
+
+        } else {
+            BlockingQueue<Runnable> queue = queueDepth > 0
+                    ? new ArrayBlockingQueue<>(queueDepth) : new SynchronousQueue<>();
+
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent,
+                    60, TimeUnit.SECONDS, queue, new NamedThreadFactory("taxi-worker-"));
+            connectionThreadFactory = new NamedThreadFactory("taxi-client-");
+            admitted = null;
+            running = null;
+
+            LOG.info("Requests run on a pool of " + maxConcurrent + " threads, queue depth " + queueDepth);
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> request) throws ServerBusyException {
+
+        FutureTask<T> task = new FutureTask<>(request);
+
+        if (admitted == null) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                throw new ServerBusyException(retryAfterMs);
+            }
+            return task;
+        }
+
+        if (!admitted.tryAcquire()) {
+            throw new ServerBusyException(retryAfterMs);
+        }
+
+        executor.execute(() -> {
+            try {
+                running.acquire();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                }
+            } catch (InterruptedException e) {
+                task.cancel(false);
+                Thread.currentThread().interrupt();
+            } finally {
+                admitted.release();
+            }
+        });
+
+        return task;
+    }
+
+    public void execute(Runnable request) throws ServerBusyException {
+        submit(Executors.callable(request));
+    }
+
+    public Thread newConnectionThread(Runnable connectionLogic) {
+        return connectionThreadFactory.newThread(connectionLogic);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //Thread.ofVirtual().factory() is looked up reflectively to keep the 1.8 build
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Virtual threads are not supported by this JVM, using thread pool instead");
+            return null;
+        }
+    }
+}
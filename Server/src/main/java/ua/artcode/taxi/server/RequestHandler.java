@@ -0,0 +1,258 @@
+package ua.artcode.taxi.server;
+
+import com.google.gson.Gson;
+import org.apache.log4j.Logger;
+import ua.artcode.taxi.exception.RateLimitedException;
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.metrics.OperationStats;
+import ua.artcode.taxi.server.command.Command;
+import ua.artcode.taxi.server.command.CommandRegistry;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Turns one request of the json protocol into one response.
+ * Does not touch sockets, so the same handler is shared by the blocking
+ * and the selector based transports.
+ */
+public class RequestHandler {
+
+    private final static Logger LOG = Logger.getLogger(RequestHandler.class);
+
+    private Gson gson;
+    private CommandRegistry commandRegistry;
+    private OrderFeed orderFeed;
+    private Metrics metrics;
+    private RateLimiter rateLimiter;
+
+    public RequestHandler(Gson gson, CommandRegistry commandRegistry) {
+        this(gson, commandRegistry, null);
+    }
+
+    public RequestHandler(Gson gson, CommandRegistry commandRegistry, OrderFeed orderFeed) {
+        this(gson, commandRegistry, orderFeed, new Metrics());
+    }
+
+    //every command is counted in metrics as "command." + its name
+    public RequestHandler(Gson gson, CommandRegistry commandRegistry, OrderFeed orderFeed, Metrics metrics) {
+        this(gson, commandRegistry, orderFeed, metrics, null);
+    }
+
+    //commands over their limit are refused with RateLimitedException before they run
+    public RequestHandler(Gson gson, CommandRegistry commandRegistry, OrderFeed orderFeed, Metrics metrics,
+                          RateLimiter rateLimiter) {
+        this.gson = gson;
+        this.commandRegistry = commandRegistry;
+        this.orderFeed = orderFeed;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public Message parse(String requestBody) {
+
+        System.out.print("\nCLIENT OUT ---> SERVER TAKE: " + requestBody + "\n");
+
+        return gson.fromJson(requestBody, Message.class);
+    }
+
+    // returns null when there is nothing to send back
+    public Message handle(Session session, Message message) {
+
+        //the feed answers on its own thread, in line with the events it pushes
+        if (orderFeed != null && orderFeed.accepts(message.getMethodName())) {
+            Message refused = limit(session, message);
+            if (refused != null) {
+                return refused;
+            }
+            orderFeed.handle(session, message);
+            return null;
+        }
+
+        return handle(session, message, session.getProtocolVersion());
+    }
+
+    /**
+     * Same as {@link #handle(Session, Message)}, but commands which wait for
+     * slow services complete the future later, on another thread, and the
+     * calling thread is free at once.
+     */
+    public CompletableFuture<Message> handleAsync(Session session, Message message) {
+
+        //ping, batch, the feed and unknown methods
+        Command<?, ?> command = commandRegistry.find(message.getMethodName());
+        if (command == null) {
+            return CompletableFuture.completedFuture(handle(session, message));
+        }
+
+        Message refused = limit(session, message);
+        if (refused != null) {
+            return CompletableFuture.completedFuture(refused);
+        }
+
+        //the time until the future completes, not until the thread is free
+        OperationStats stats = metrics.get(Metrics.COMMAND + command.getName());
+        long start = stats.start();
+        try {
+            return executeAsync(command, message, session.getProtocolVersion())
+                    .whenComplete((response, e) -> stats.stop(start, e != null))
+                    .exceptionally(e -> error(message, e instanceof CompletionException ? e.getCause() : e));
+
+        } catch (Exception e) {
+            stats.stop(start, true);
+            return CompletableFuture.completedFuture(error(message, e));
+        }
+    }
+
+    public Message handle(Message message, int protocolVersion) {
+        return handle(null, message, protocolVersion);
+    }
+
+    private Message handle(Session session, Message message, int protocolVersion) {
+
+        if (Protocol.PING.equals(message.getMethodName())) {
+            return reply(message, new MessageBody());
+        }
+
+        if (Protocol.BATCH.equals(message.getMethodName())) {
+            return batch(session, message, protocolVersion);
+        }
+
+        Command<?, ?> command = commandRegistry.find(message.getMethodName());
+        if (command == null) {
+            LOG.warn("Unknown method " + message.getMethodName());
+
+            //old clients never get an answer for unknown methods
+            return message.getRequestId() == null ? null : unknownMethod(message);
+        }
+
+        return run(session, command, message, protocolVersion);
+    }
+
+    //sub-requests run one after another, each gets its own body or error
+    private Message batch(Session session, Message message, int protocolVersion) {
+
+        List<Message> requests = message.getBatch();
+        if (requests == null || requests.size() > Protocol.MAX_BATCH_SIZE) {
+            return error(message, new IllegalArgumentException(
+                    "Batch must have from 0 to " + Protocol.MAX_BATCH_SIZE + " requests"));
+        }
+
+        List<Message> responses = new ArrayList<>(requests.size());
+        for (Message request : requests) {
+
+            //no batches inside a batch
+            Command<?, ?> command = Protocol.BATCH.equals(request.getMethodName())
+                    ? null : commandRegistry.find(request.getMethodName());
+
+            responses.add(command == null ? unknownMethod(request) : run(session, command, request, protocolVersion));
+        }
+
+        Message response = reply(message, null);
+        response.setBatch(responses);
+
+        return response;
+    }
+
+    public Message reply(Message request, MessageBody body) {
+
+        Message responseMessage = new Message();
+        responseMessage.setRequestId(request.getRequestId());
+        responseMessage.setMessageBody(body);
+
+        return responseMessage;
+    }
+
+    public Message error(Message request, Throwable e) {
+
+        Message responseMessage = new Message();
+        responseMessage.setRequestId(request.getRequestId());
+        responseMessage.setError(e.toString());
+
+        return responseMessage;
+    }
+
+    public void send(Session session, Message response) {
+
+        if (response == null || !session.isOpen()) {
+            return;
+        }
+
+        //untagged requests get the bare exception line, as the old clients expect
+        if (response.getRequestId() == null && response.getError() != null) {
+            session.send(response.getError());
+            return;
+        }
+
+        session.send(FrameCodec.encode(gson, response, session.isBinaryFraming()));
+    }
+
+    private Message run(Session session, Command<?, ?> command, Message message, int protocolVersion) {
+
+        Message refused = limit(session, message);
+        if (refused != null) {
+            return refused;
+        }
+
+        OperationStats stats = metrics.get(Metrics.COMMAND + command.getName());
+        long start = stats.start();
+        try {
+            Message response = execute(command, message, protocolVersion);
+            stats.stop(start, false);
+            return response;
+
+        } catch (Exception e) {
+            stats.stop(start, true);
+            return error(message, e);
+        }
+    }
+
+    //null when the request may run, the error to answer with otherwise
+    private Message limit(Session session, Message message) {
+
+        if (rateLimiter == null || !rateLimiter.isLimited(message.getMethodName())) {
+            return null;
+        }
+
+        Map<String, Object> map = message.getMessageBody() == null ? null : message.getMessageBody().getMap();
+        Object accessToken = map == null ? null : map.get("accessToken");
+        try {
+            rateLimiter.acquire(message.getMethodName(), session == null ? null : session.getAddress(),
+                    accessToken == null ? null : accessToken.toString());
+            return null;
+
+        } catch (RateLimitedException e) {
+            return error(message, e);
+        }
+    }
+
+    private Message unknownMethod(Message message) {
+        return error(message, new IllegalArgumentException("Unknown method " + message.getMethodName()));
+    }
+
+    private <A, R> Message execute(Command<A, R> command, Message message, int protocolVersion) throws Exception {
+
+        Map<String, Object> map = message.getMessageBody().getMap();
+
+        A args = command.decode(map);
+        R result = command.execute(args);
+
+        return reply(message, command.encode(result, protocolVersion));
+    }
+
+    private <A, R> CompletableFuture<Message> executeAsync(Command<A, R> command, Message message,
+                                                           int protocolVersion) {
+
+        A args = command.decode(message.getMessageBody().getMap());
+
+        return command.executeAsync(args)
+                .thenApply(result -> reply(message, command.encode(result, protocolVersion)));
+    }
+}
@@ -0,0 +1,318 @@
+package ua.artcode.taxi.server;
+
+/**
+ * Server settings. Every value can be overridden with a system property,
+ * e.g. {@code java -Dtaxi.server.mode=nio -jar Server.jar}.
+ */
+public class ServerConfig {
+
+    public static final String MODE_BLOCKING = "blocking";
+    public static final String MODE_NIO = "nio";
+
+    public static final String USERS_JDBC = "jdbc";
+    public static final String USERS_MEMORY = "memory";
+
+    public static final String GEO_GOOGLE = "google";
+    public static final String GEO_STUB = "stub";
+
+    private int port;
+    private String mode;
+    private int ioThreads;
+    private String executorMode;
+    private int maxConcurrentRequests;
+    private int requestQueueDepth;
+    private long busyRetryAfterMs;
+    private int sessionQueueDepth;
+    private boolean binaryFraming;
+    private boolean compression;
+    private int compressionThreshold;
+    private long idleTimeoutMs;
+    private long maxQueuedBytes;
+    private int maxConnections;
+    private int maxConnectionsPerIp;
+    private int geoThreads;
+    private String adminHost;
+    private int adminPort;
+    private String rateLimits;
+    private long rateLimitIdleMs;
+    private String userStorage;
+    private String geo;
+    private long geoStubLatencyMs;
+
+    public ServerConfig() {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        port = 43009;
+        mode = MODE_BLOCKING;
+        ioThreads = Math.max(1, cores / 2);
+        executorMode = RequestExecutor.MODE_POOL;
+        maxConcurrentRequests = cores * 2;
+        requestQueueDepth = 256;
+        busyRetryAfterMs = 200;
+        sessionQueueDepth = 64;
+        binaryFraming = true;
+        compression = true;
+        compressionThreshold = 1024;
+        idleTimeoutMs = 10 * 60 * 1000;
+        maxQueuedBytes = 4 * 1024 * 1024;
+        maxConnections = 10000;
+        maxConnectionsPerIp = 256;
+        geoThreads = 16;
+        adminHost = "127.0.0.1";
+        adminPort = 0;
+        rateLimits = "calculateOrder=2:10,makeOrder=0.2:3,makeOrderAnonymous=0.2:3,getMapDistancesToDriver=1:5,"
+                + "subscribeNewOrders=1:5";
+        rateLimitIdleMs = 10 * 60 * 1000;
+        userStorage = USERS_JDBC;
+        geo = GEO_GOOGLE;
+        geoStubLatencyMs = 0;
+    }
+
+    public static ServerConfig fromSystemProperties() {
+
+        ServerConfig config = new ServerConfig();
+
+        config.setPort(Integer.getInteger("taxi.server.port", config.getPort()));
+        config.setMode(System.getProperty("taxi.server.mode", config.getMode()));
+        config.setIoThreads(Integer.getInteger("taxi.server.ioThreads", config.getIoThreads()));
+        config.setExecutorMode(System.getProperty("taxi.server.executor", config.getExecutorMode()));
+        config.setMaxConcurrentRequests(Integer.getInteger("taxi.server.maxConcurrentRequests",
+                config.getMaxConcurrentRequests()));
+        config.setRequestQueueDepth(Integer.getInteger("taxi.server.requestQueueDepth",
+                config.getRequestQueueDepth()));
+        config.setBusyRetryAfterMs(Long.getLong("taxi.server.busyRetryAfterMs", config.getBusyRetryAfterMs()));
+        config.setSessionQueueDepth(Integer.getInteger("taxi.server.sessionQueueDepth",
+                config.getSessionQueueDepth()));
+        config.setBinaryFraming(Boolean.parseBoolean(System.getProperty("taxi.server.binaryFraming",
+                String.valueOf(config.isBinaryFraming()))));
+        config.setCompression(Boolean.parseBoolean(System.getProperty("taxi.server.compression",
+                String.valueOf(config.isCompression()))));
+        config.setCompressionThreshold(Integer.getInteger("taxi.server.compressionThreshold",
+                config.getCompressionThreshold()));
+        config.setIdleTimeoutMs(Long.getLong("taxi.server.idleTimeoutMs", config.getIdleTimeoutMs()));
+        config.setMaxQueuedBytes(Long.getLong("taxi.server.maxQueuedBytes", config.getMaxQueuedBytes()));
+        config.setMaxConnections(Integer.getInteger("taxi.server.maxConnections", config.getMaxConnections()));
+        config.setMaxConnectionsPerIp(Integer.getInteger("taxi.server.maxConnectionsPerIp",
+                config.getMaxConnectionsPerIp()));
+        config.setGeoThreads(Integer.getInteger("taxi.server.geoThreads", config.getGeoThreads()));
+        config.setAdminHost(System.getProperty("taxi.server.adminHost", config.getAdminHost()));
+        config.setAdminPort(Integer.getInteger("taxi.server.adminPort", config.getAdminPort()));
+        config.setRateLimits(System.getProperty("taxi.server.rateLimits", config.getRateLimits()));
+        config.setRateLimitIdleMs(Long.getLong("taxi.server.rateLimitIdleMs", config.getRateLimitIdleMs()));
+        config.setUserStorage(System.getProperty("taxi.server.userStorage", config.getUserStorage()));
+        config.setGeo(System.getProperty("taxi.server.geo", config.getGeo()));
+        config.setGeoStubLatencyMs(Long.getLong("taxi.server.geoStubLatencyMs", config.getGeoStubLatencyMs()));
+
+        return config;
+    }
+
+    public boolean isNio() {
+        return MODE_NIO.equalsIgnoreCase(mode);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public String getExecutorMode() {
+        return executorMode;
+    }
+
+    public void setExecutorMode(String executorMode) {
+        this.executorMode = executorMode;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getRequestQueueDepth() {
+        return requestQueueDepth;
+    }
+
+    public void setRequestQueueDepth(int requestQueueDepth) {
+        this.requestQueueDepth = requestQueueDepth;
+    }
+
+    public long getBusyRetryAfterMs() {
+        return busyRetryAfterMs;
+    }
+
+    public void setBusyRetryAfterMs(long busyRetryAfterMs) {
+        this.busyRetryAfterMs = busyRetryAfterMs;
+    }
+
+    public int getSessionQueueDepth() {
+        return sessionQueueDepth;
+    }
+
+    public void setSessionQueueDepth(int sessionQueueDepth) {
+        this.sessionQueueDepth = sessionQueueDepth;
+    }
+
+    public boolean isBinaryFraming() {
+        return binaryFraming;
+    }
+
+    public void setBinaryFraming(boolean binaryFraming) {
+        this.binaryFraming = binaryFraming;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    //0 keeps idle connections open
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    //responses and pushes waiting for one slow client, the connection is closed above it; 0 for no limit
+    public long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    public void setMaxQueuedBytes(long maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerIp() {
+        return maxConnectionsPerIp;
+    }
+
+    public void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+    }
+
+    //threads which wait for Google Maps, see AsyncUserServiceAdapter
+    public int getGeoThreads() {
+        return geoThreads;
+    }
+
+    public void setGeoThreads(int geoThreads) {
+        this.geoThreads = Math.max(1, geoThreads);
+    }
+
+    //http listener of /metrics, /health and /ready, see AdminServer
+    public String getAdminHost() {
+        return adminHost;
+    }
+
+    public void setAdminHost(String adminHost) {
+        this.adminHost = adminHost;
+    }
+
+    //0 turns the admin listener off
+    public int getAdminPort() {
+        return adminPort;
+    }
+
+    public void setAdminPort(int adminPort) {
+        this.adminPort = adminPort;
+    }
+
+    public boolean isAdmin() {
+        return adminPort > 0;
+    }
+
+    //command=permitsPerSecond:burst,... per access token and per client address, empty for no limits
+    public String getRateLimits() {
+        return rateLimits;
+    }
+
+    public void setRateLimits(String rateLimits) {
+        this.rateLimits = rateLimits;
+    }
+
+    //buckets of clients which sent nothing that long are dropped
+    public long getRateLimitIdleMs() {
+        return rateLimitIdleMs;
+    }
+
+    public void setRateLimitIdleMs(long rateLimitIdleMs) {
+        this.rateLimitIdleMs = rateLimitIdleMs;
+    }
+
+    //jdbc - users go to the MySQL database, memory - users live in AppDB only
+    public String getUserStorage() {
+        return userStorage;
+    }
+
+    public void setUserStorage(String userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    public boolean isMemoryUserStorage() {
+        return USERS_MEMORY.equalsIgnoreCase(userStorage);
+    }
+
+    //google - the real Google Maps service, stub - StubGoogleMapsAPI, no network needed
+    public String getGeo() {
+        return geo;
+    }
+
+    public void setGeo(String geo) {
+        this.geo = geo;
+    }
+
+    public boolean isGeoStub() {
+        return GEO_STUB.equalsIgnoreCase(geo);
+    }
+
+    //how long every call of the stub waits
+    public long getGeoStubLatencyMs() {
+        return geoStubLatencyMs;
+    }
+
+    public void setGeoStubLatencyMs(long geoStubLatencyMs) {
+        this.geoStubLatencyMs = geoStubLatencyMs;
+    }
+}
@@ -0,0 +1,184 @@
+package ua.artcode.taxi.server;
+
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Protocol;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One client connection as seen by the {@link RequestDispatcher}.
+ * Transports feed received requests in and implement how a response
+ * goes back to the client in the framing of the session.
+ */
+public abstract class Session {
+
+    private static final AtomicLong ids = new AtomicLong(1);
+
+    private final long id = ids.getAndIncrement();
+
+    //switched once by the hello request, before that the session speaks lines
+    private volatile boolean binaryFraming;
+    private volatile int protocolVersion = Protocol.VERSION_1;
+    private volatile FrameCompression compression;
+    private boolean helloExpected = true;
+
+    //time of the last request, idle sessions are closed by the ConnectionManager
+    private volatile long lastReadNanos = System.nanoTime();
+    private volatile ConnectionManager connectionManager;
+    private volatile InetAddress address;
+
+    //bytes handed to the transport and not written to the socket yet
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private volatile long maxQueuedBytes = Long.MAX_VALUE;
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+
+    //used only by the transport thread which reads this session
+    private final FrameCodec codec = new FrameCodec();
+
+    //request lines are taken from the connection one by one to keep untagged responses in order
+    private final Queue<String> requests = new ArrayDeque<>();
+    private boolean processing;
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isBinaryFraming() {
+        return binaryFraming;
+    }
+
+    void setBinaryFraming(boolean binaryFraming) {
+        this.binaryFraming = binaryFraming;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    public String getCompression() {
+        FrameCompression current = compression;
+        return current == null ? FrameCompression.NONE : current.getAlgorithm();
+    }
+
+    //binary framing only, lines can not carry compressed bytes
+    void setCompression(FrameCompression compression) {
+        this.compression = compression;
+        codec.setCompression(compression);
+    }
+
+    public FrameCodec getCodec() {
+        return codec;
+    }
+
+    void touch() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    void setConnectionManager(ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    //address of the client, null until the ConnectionManager has the session
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    void setAddress(InetAddress address) {
+        this.address = address;
+    }
+
+    void setMaxQueuedBytes(long maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    // true only for the first request, called by the transport thread
+    boolean firstRequest() {
+        boolean first = helloExpected;
+        helloExpected = false;
+        return first;
+    }
+
+    public void send(String message) {
+        send(isBinaryFraming() ? FrameCodec.encodeFrame(message) : FrameCodec.encodeLine(message));
+    }
+
+    // the data is already in the framing of this session
+    public void send(ByteBuffer data) {
+        FrameCompression current = compression;
+        ByteBuffer out = current != null && isBinaryFraming() ? current.compress(data) : data;
+
+        //a client which does not read its responses must not fill the heap of the server
+        int size = out.remaining();
+        if (queuedBytes.addAndGet(size) > maxQueuedBytes) {
+            queuedBytes.addAndGet(-size);
+            ConnectionManager manager = connectionManager;
+            if (overflowed.compareAndSet(false, true) && manager != null) {
+                manager.overflowed(this);
+            }
+            close();
+            return;
+        }
+
+        write(out);
+    }
+
+    //the transport calls sent() for every byte of the data once it is on the wire or dropped
+    protected abstract void write(ByteBuffer data);
+
+    protected void sent(int bytes) {
+        queuedBytes.addAndGet(-bytes);
+    }
+
+    public abstract boolean isOpen();
+
+    public abstract void close();
+
+    //transports call this when the connection is closed, may be called more than once
+    protected void released() {
+        FrameCompression current = compression;
+        if (current != null) {
+            current.end();
+        }
+        ConnectionManager manager = connectionManager;
+        if (manager != null) {
+            manager.closed(this);
+        }
+    }
+
+    synchronized int queuedRequests() {
+        return requests.size();
+    }
+
+    // returns true when nobody takes lines from this session yet
+    synchronized boolean enqueue(String line) {
+        requests.add(line);
+        if (processing) {
+            return false;
+        }
+        processing = true;
+        return true;
+    }
+
+    // returns null and stops processing when the queue is empty
+    synchronized String nextRequest() {
+        String line = requests.poll();
+        if (line == null) {
+            processing = false;
+        }
+        return line;
+    }
+}
@@ -0,0 +1,108 @@
+package ua.artcode.taxi.server;
+
+import org.apache.log4j.Logger;
+
+import ua.artcode.taxi.to.FrameCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session of the blocking server mode, responses are written to the socket stream.
+ *
+ * Responses and pushes are queued and written by one task of the writer
+ * pool at a time, so request threads and the order feed never wait for a
+ * slow client. The queue is capped by the queued bytes of the Session.
+ */
+public class StreamSession extends Session {
+
+    private final static Logger LOG = Logger.getLogger(StreamSession.class);
+
+    private Socket socket;
+    private OutputStream out;
+    private final Executor writer;
+
+    private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    public StreamSession(Socket socket, OutputStream out, Executor writer) {
+        this.socket = socket;
+        this.out = out;
+        this.writer = writer;
+    }
+
+    @Override
+    protected void write(ByteBuffer data) {
+        writes.add(data);
+        if (!isOpen()) {
+            drop();
+            return;
+        }
+        startWriting();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.error("Can not close client socket", e);
+        }
+        drop();
+        released();
+    }
+
+    private void startWriting() {
+        if (writes.isEmpty() || !writing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writer.execute(this::writeQueued);
+        } catch (RejectedExecutionException e) {
+            writing.set(false);
+            close();
+        }
+    }
+
+    //writer pool, one task per session at a time
+    private void writeQueued() {
+        ByteBuffer data;
+        try {
+            while ((data = writes.poll()) != null) {
+                int size = data.remaining();
+                try {
+                    FrameCodec.write(out, data);
+                } finally {
+                    sent(size);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Can not send response to session " + getId());
+            close();
+        } finally {
+            writing.set(false);
+        }
+
+        //data queued after the last poll and before the flag was cleared
+        startWriting();
+    }
+
+    private void drop() {
+        ByteBuffer dropped;
+        while ((dropped = writes.poll()) != null) {
+            sent(dropped.remaining());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.MessageBody;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class CalculateOrderCommand extends Command<CalculateOrderCommand.Args, Map<String, Object>> {
+
+    private UserService userService;
+    private AsyncUserService asyncUserService;
+
+    public CalculateOrderCommand(UserService userService) {
+        this(userService, null);
+    }
+
+    //the async service runs the request without a request thread waiting for it
+    public CalculateOrderCommand(UserService userService, AsyncUserService asyncUserService) {
+        super("calculateOrder");
+        this.userService = userService;
+        this.asyncUserService = asyncUserService;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("addressFrom").toString(), map.get("addressTo").toString());
+    }
+
+    @Override
+    public Map<String, Object> execute(Args args) throws Exception {
+        return userService.calculateOrder(args.addressFrom, args.addressTo);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> executeAsync(Args args) {
+        if (asyncUserService == null) {
+            return super.executeAsync(args);
+        }
+        return asyncUserService.calculateOrder(args.addressFrom, args.addressTo);
+    }
+
+    @Override
+    public MessageBody encode(Map<String, Object> result) {
+        return new MessageBody(result);
+    }
+
+    public static class Args {
+
+        private String addressFrom;
+        private String addressTo;
+
+        public Args(String addressFrom, String addressTo) {
+            this.addressFrom = addressFrom;
+            this.addressTo = addressTo;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class CancelOrderCommand extends OrderCommand<Long> {
+
+    private UserService userService;
+
+    public CancelOrderCommand(UserService userService) {
+        super("cancelOrder");
+        this.userService = userService;
+    }
+
+    @Override
+    public Long decode(Map<String, Object> map) {
+        return toLong(map.get("orderId"));
+    }
+
+    @Override
+    public Order execute(Long args) throws Exception {
+        return userService.cancelOrder(args);
+    }
+}
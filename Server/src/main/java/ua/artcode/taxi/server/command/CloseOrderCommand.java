@@ -0,0 +1,37 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class CloseOrderCommand extends OrderCommand<CloseOrderCommand.Args> {
+
+    private UserService userService;
+
+    public CloseOrderCommand(UserService userService) {
+        super("closeOrder");
+        this.userService = userService;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("accessToken").toString(), toLong(map.get("orderId")));
+    }
+
+    @Override
+    public Order execute(Args args) throws Exception {
+        return userService.closeOrder(args.accessToken, args.orderId);
+    }
+
+    public static class Args {
+
+        private String accessToken;
+        private long orderId;
+
+        public Args(String accessToken, long orderId) {
+            this.accessToken = accessToken;
+            this.orderId = orderId;
+        }
+    }
+}
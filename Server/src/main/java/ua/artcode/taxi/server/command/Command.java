@@ -0,0 +1,64 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.to.MessageBody;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One remote method of the server.
+ *
+ * @param <A> arguments decoded from the request body
+ * @param <R> result which is encoded to the response body
+ */
+public abstract class Command<A, R> {
+
+    private final String name;
+
+    protected Command(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public abstract A decode(Map<String, Object> map);
+
+    public abstract R execute(A args) throws Exception;
+
+    //commands which wait for slow services override this, so no request thread waits with them
+    public CompletableFuture<R> executeAsync(A args) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        try {
+            result.complete(execute(args));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public abstract MessageBody encode(R result);
+
+    //commands which answer differently in newer protocol versions override this
+    public MessageBody encode(R result, int protocolVersion) {
+        return encode(result);
+    }
+
+    //numbers come from gson as doubles ("5.0"), ids sent as text as strings ("5")
+    protected static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Double.valueOf(value.toString()).longValue();
+    }
+
+    protected static Map<String, String> toStringMap(Map<String, Object> map) {
+        Map<String, String> result = new HashMap<>();
+        for (String key : map.keySet()) {
+            result.put(key, map.get(key).toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package ua.artcode.taxi.server.command;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Method name -> command lookup used by the request dispatch.
+ */
+public class CommandRegistry {
+
+    private final Map<String, Command<?, ?>> commands = new ConcurrentHashMap<>();
+
+    public CommandRegistry register(Command<?, ?> command) {
+        commands.put(command.getName(), command);
+        return this;
+    }
+
+    public Command<?, ?> find(String name) {
+        return name == null ? null : commands.get(name);
+    }
+
+    public Collection<Command<?, ?>> getAll() {
+        return commands.values();
+    }
+
+    //all methods of UserService available for remote clients
+    public static CommandRegistry create(UserService userService, Gson gson) {
+        return create(userService, null, gson);
+    }
+
+    //the methods which wait for Google Maps go through asyncUserService, when it is given
+    public static CommandRegistry create(UserService userService, AsyncUserService asyncUserService, Gson gson) {
+        return new CommandRegistry()
+                .register(new RegisterPassengerCommand(userService))
+                .register(new RegisterDriverCommand(userService))
+                .register(new LoginCommand(userService))
+                .register(new MakeOrderCommand(userService, asyncUserService))
+                .register(new MakeOrderAnonymousCommand(userService, asyncUserService))
+                .register(new CalculateOrderCommand(userService, asyncUserService))
+                .register(new GetOrderInfoCommand(userService))
+                .register(new GetLastOrderInfoCommand(userService))
+                .register(new CancelOrderCommand(userService))
+                .register(new CloseOrderCommand(userService))
+                .register(new TakeOrderCommand(userService))
+                .register(new GetMapDistancesToDriverCommand(userService, asyncUserService, gson))
+                .register(new GetUserCommand(userService))
+                .register(new GetAllOrdersUserCommand(userService, gson))
+                .register(new GetOrdersUserPageCommand(userService, gson))
+                .register(new GetChangedOrdersUserCommand(userService, gson))
+                .register(new UpdateUserCommand(userService))
+                .register(new DeleteUserCommand(userService));
+    }
+}
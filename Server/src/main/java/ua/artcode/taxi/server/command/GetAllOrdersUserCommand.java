@@ -0,0 +1,63 @@
+package ua.artcode.taxi.server.command;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.ReflectionFormatter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GetAllOrdersUserCommand extends Command<String, List<Order>> {
+
+    private UserService userService;
+    private Gson gson;
+
+    public GetAllOrdersUserCommand(UserService userService, Gson gson) {
+        super("getAllOrdersUser");
+        this.userService = userService;
+        this.gson = gson;
+    }
+
+    @Override
+    public String decode(Map<String, Object> map) {
+        return map.get("accessToken").toString();
+    }
+
+    @Override
+    public List<Order> execute(String args) throws Exception {
+        return userService.getAllOrdersUser(args);
+    }
+
+    //every order is sent as a separate json message inside the map
+    @Override
+    public MessageBody encode(List<Order> result) {
+
+        Map<String, Object> mapForMessage = new HashMap<>();
+        for (Order order : result) {
+            mapForMessage.put(order.getId() + "", toJson(order));
+        }
+        return new MessageBody(mapForMessage);
+    }
+
+    //v2 sends a json array, every order is written by OrderTypeAdapter while the response is sent
+    @Override
+    public MessageBody encode(List<Order> result, int protocolVersion) {
+        if (protocolVersion < Protocol.VERSION_2) {
+            return encode(result);
+        }
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put(Protocol.ORDERS, result);
+        return messageBody;
+    }
+
+    private String toJson(Order order) {
+        Message concreteMessage = new Message();
+        concreteMessage.setMessageBody(new MessageBody(ReflectionFormatter.orderToJsonMap(order)));
+        return gson.toJson(concreteMessage);
+    }
+}
@@ -0,0 +1,57 @@
+package ua.artcode.taxi.server.command;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.MessageBody;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders of a user created or changed after the version the client has.
+ * An unchanged history is answered with an empty list.
+ */
+public class GetChangedOrdersUserCommand extends Command<GetChangedOrdersUserCommand.Args, List<Order>> {
+
+    private UserService userService;
+    private GetAllOrdersUserCommand allOrders;
+
+    public GetChangedOrdersUserCommand(UserService userService, Gson gson) {
+        super("getChangedOrdersUser");
+        this.userService = userService;
+        this.allOrders = new GetAllOrdersUserCommand(userService, gson);
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("accessToken").toString(),
+                map.get("sinceVersion") == null ? 0 : toLong(map.get("sinceVersion")));
+    }
+
+    @Override
+    public List<Order> execute(Args args) throws Exception {
+        return userService.getChangedOrdersUser(args.accessToken, args.sinceVersion);
+    }
+
+    @Override
+    public MessageBody encode(List<Order> result) {
+        return allOrders.encode(result);
+    }
+
+    @Override
+    public MessageBody encode(List<Order> result, int protocolVersion) {
+        return allOrders.encode(result, protocolVersion);
+    }
+
+    public static class Args {
+
+        private String accessToken;
+        private long sinceVersion;
+
+        public Args(String accessToken, long sinceVersion) {
+            this.accessToken = accessToken;
+            this.sinceVersion = sinceVersion;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class GetLastOrderInfoCommand extends OrderCommand<String> {
+
+    private UserService userService;
+
+    public GetLastOrderInfoCommand(UserService userService) {
+        super("getLastOrderInfo");
+        this.userService = userService;
+    }
+
+    @Override
+    public String decode(Map<String, Object> map) {
+        return map.get("accessToken").toString();
+    }
+
+    @Override
+    public Order execute(String args) throws Exception {
+        return userService.getLastOrderInfo(args);
+    }
+}
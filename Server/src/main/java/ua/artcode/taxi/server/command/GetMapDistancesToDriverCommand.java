@@ -0,0 +1,90 @@
+package ua.artcode.taxi.server.command;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.ReflectionFormatter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class GetMapDistancesToDriverCommand extends Command<GetMapDistancesToDriverCommand.Args, Map<Integer, Order>> {
+
+    private UserService userService;
+    private AsyncUserService asyncUserService;
+    private Gson gson;
+
+    public GetMapDistancesToDriverCommand(UserService userService, Gson gson) {
+        this(userService, null, gson);
+    }
+
+    //the async service runs the request without a request thread waiting for it
+    public GetMapDistancesToDriverCommand(UserService userService, AsyncUserService asyncUserService, Gson gson) {
+        super("getMapDistancesToDriver");
+        this.userService = userService;
+        this.asyncUserService = asyncUserService;
+        this.gson = gson;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("orderStatus").toString(), map.get("addressDriver").toString());
+    }
+
+    @Override
+    public Map<Integer, Order> execute(Args args) throws Exception {
+        return userService.getMapDistancesToDriver(args.orderStatus, args.addressDriver);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Order>> executeAsync(Args args) {
+        if (asyncUserService == null) {
+            return super.executeAsync(args);
+        }
+        return asyncUserService.getMapDistancesToDriver(args.orderStatus, args.addressDriver);
+    }
+
+    //every order is sent as a separate json message inside the map
+    @Override
+    public MessageBody encode(Map<Integer, Order> result) {
+
+        Map<String, Object> mapForMessage = new HashMap<>();
+        for (Integer key : result.keySet()) {
+            mapForMessage.put(key + "", toJson(result.get(key)));
+        }
+        return new MessageBody(mapForMessage);
+    }
+
+    //v2 sends a json array, every order is written by OrderTypeAdapter while the response is sent
+    @Override
+    public MessageBody encode(Map<Integer, Order> result, int protocolVersion) {
+        if (protocolVersion < Protocol.VERSION_2) {
+            return encode(result);
+        }
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put(Protocol.DISTANCES, result);
+        return messageBody;
+    }
+
+    private String toJson(Order order) {
+        Message concreteMessage = new Message();
+        concreteMessage.setMessageBody(new MessageBody(ReflectionFormatter.orderToJsonMap(order)));
+        return gson.toJson(concreteMessage);
+    }
+
+    public static class Args {
+
+        private String orderStatus;
+        private String addressDriver;
+
+        public Args(String orderStatus, String addressDriver) {
+            this.orderStatus = orderStatus;
+            this.addressDriver = addressDriver;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ua.artcode.taxi.server.command;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.MessageBody;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of the orders of a user, newest first. The answer looks like
+ * the one of getAllOrdersUser, so the same decoder reads both.
+ */
+public class GetOrdersUserPageCommand extends Command<GetOrdersUserPageCommand.Args, List<Order>> {
+
+    private UserService userService;
+    private GetAllOrdersUserCommand allOrders;
+
+    public GetOrdersUserPageCommand(UserService userService, Gson gson) {
+        super("getOrdersUserPage");
+        this.userService = userService;
+        this.allOrders = new GetAllOrdersUserCommand(userService, gson);
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("accessToken").toString(),
+                map.get("cursor") == null ? 0 : toLong(map.get("cursor")),
+                (int) toLong(map.get("pageSize")));
+    }
+
+    @Override
+    public List<Order> execute(Args args) throws Exception {
+        return userService.getOrdersUserPage(args.accessToken, args.cursor, args.pageSize);
+    }
+
+    @Override
+    public MessageBody encode(List<Order> result) {
+        return allOrders.encode(result);
+    }
+
+    @Override
+    public MessageBody encode(List<Order> result, int protocolVersion) {
+        return allOrders.encode(result, protocolVersion);
+    }
+
+    public static class Args {
+
+        private String accessToken;
+        private long cursor;
+        private int pageSize;
+
+        public Args(String accessToken, long cursor, int pageSize) {
+            this.accessToken = accessToken;
+            this.cursor = cursor;
+            this.pageSize = pageSize;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class GetUserCommand extends UserCommand<String> {
+
+    private UserService userService;
+
+    public GetUserCommand(UserService userService) {
+        super("getUser");
+        this.userService = userService;
+    }
+
+    @Override
+    public String decode(Map<String, Object> map) {
+        return map.get("accessToken").toString();
+    }
+
+    @Override
+    public User execute(String args) throws Exception {
+        return userService.getUser(args);
+    }
+}
@@ -0,0 +1,44 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.MessageBody;
+
+import java.util.Map;
+
+public class LoginCommand extends Command<LoginCommand.Args, String> {
+
+    private UserService userService;
+
+    public LoginCommand(UserService userService) {
+        super("login");
+        this.userService = userService;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        return new Args(map.get("phone").toString(), map.get("pass").toString());
+    }
+
+    @Override
+    public String execute(Args args) throws Exception {
+        return userService.login(args.phone, args.pass);
+    }
+
+    @Override
+    public MessageBody encode(String result) {
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put("accessKey", result);
+        return messageBody;
+    }
+
+    public static class Args {
+
+        private String phone;
+        private String pass;
+
+        public Args(String phone, String pass) {
+            this.phone = phone;
+            this.pass = pass;
+        }
+    }
+}
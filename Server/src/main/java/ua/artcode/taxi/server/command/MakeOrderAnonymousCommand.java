@@ -0,0 +1,60 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class MakeOrderAnonymousCommand extends OrderCommand<MakeOrderAnonymousCommand.Args> {
+
+    private UserService userService;
+    private AsyncUserService asyncUserService;
+
+    public MakeOrderAnonymousCommand(UserService userService) {
+        this(userService, null);
+    }
+
+    //the async service runs the request without a request thread waiting for it
+    public MakeOrderAnonymousCommand(UserService userService, AsyncUserService asyncUserService) {
+        super("makeOrderAnonymous");
+        this.userService = userService;
+        this.asyncUserService = asyncUserService;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        Args args = new Args();
+        args.phone = map.get("phone").toString();
+        args.name = map.get("name").toString();
+        args.addressFrom = map.get("addressFrom").toString();
+        args.addressTo = map.get("addressTo").toString();
+        args.message = map.get("message").toString();
+        return args;
+    }
+
+    @Override
+    public Order execute(Args args) throws Exception {
+        return userService.makeOrderAnonymous(args.phone, args.name,
+                args.addressFrom, args.addressTo, args.message);
+    }
+
+    @Override
+    public CompletableFuture<Order> executeAsync(Args args) {
+        if (asyncUserService == null) {
+            return super.executeAsync(args);
+        }
+        return asyncUserService.makeOrderAnonymous(args.phone, args.name,
+                args.addressFrom, args.addressTo, args.message);
+    }
+
+    public static class Args {
+
+        private String phone;
+        private String name;
+        private String addressFrom;
+        private String addressTo;
+        private String message;
+    }
+}
@@ -0,0 +1,56 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.service.AsyncUserService;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class MakeOrderCommand extends OrderCommand<MakeOrderCommand.Args> {
+
+    private UserService userService;
+    private AsyncUserService asyncUserService;
+
+    public MakeOrderCommand(UserService userService) {
+        this(userService, null);
+    }
+
+    //the async service runs the request without a request thread waiting for it
+    public MakeOrderCommand(UserService userService, AsyncUserService asyncUserService) {
+        super("makeOrder");
+        this.userService = userService;
+        this.asyncUserService = asyncUserService;
+    }
+
+    @Override
+    public Args decode(Map<String, Object> map) {
+        Args args = new Args();
+        args.accessToken = map.get("accessToken").toString();
+        args.addressFrom = map.get("addressFrom").toString();
+        args.addressTo = map.get("addressTo").toString();
+        args.messageText = map.get("messageText").toString();
+        return args;
+    }
+
+    @Override
+    public Order execute(Args args) throws Exception {
+        return userService.makeOrder(args.accessToken, args.addressFrom, args.addressTo, args.messageText);
+    }
+
+    @Override
+    public CompletableFuture<Order> executeAsync(Args args) {
+        if (asyncUserService == null) {
+            return super.executeAsync(args);
+        }
+        return asyncUserService.makeOrder(args.accessToken, args.addressFrom, args.addressTo, args.messageText);
+    }
+
+    public static class Args {
+
+        private String accessToken;
+        private String addressFrom;
+        private String addressTo;
+        private String messageText;
+    }
+}
@@ -0,0 +1,32 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.ReflectionFormatter;
+
+/**
+ * Command which answers with one order.
+ */
+public abstract class OrderCommand<A> extends Command<A, Order> {
+
+    protected OrderCommand(String name) {
+        super(name);
+    }
+
+    @Override
+    public MessageBody encode(Order result) {
+        return new MessageBody(ReflectionFormatter.orderToJsonMap(result));
+    }
+
+    //the order is written by OrderTypeAdapter when the response is sent
+    @Override
+    public MessageBody encode(Order result, int protocolVersion) {
+        if (protocolVersion < Protocol.VERSION_2) {
+            return encode(result);
+        }
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put(Protocol.ORDER, result);
+        return messageBody;
+    }
+}
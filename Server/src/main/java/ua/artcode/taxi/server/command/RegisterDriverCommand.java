@@ -0,0 +1,26 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class RegisterDriverCommand extends UserCommand<Map<String, String>> {
+
+    private UserService userService;
+
+    public RegisterDriverCommand(UserService userService) {
+        super("registerDriver");
+        this.userService = userService;
+    }
+
+    @Override
+    public Map<String, String> decode(Map<String, Object> map) {
+        return toStringMap(map);
+    }
+
+    @Override
+    public User execute(Map<String, String> args) throws Exception {
+        return userService.registerDriver(args);
+    }
+}
@@ -0,0 +1,41 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counters and latencies of the commands and UserService methods,
+ * e.g. {"command.makeOrder": {"count": 12, "errors": 1, "inFlight": 0,
+ * "averagePerSecond": 0.2, "p50": 840, "p99": 2100, "p999": 2100, "max": 2100}}.
+ * Latencies are in microseconds, "averagePerSecond" is the average since
+ * the server started. The optional "prefix" picks a part of
+ * them, e.g. "command." for the commands only.
+ */
+public class StatsCommand extends Command<String, Map<String, Map<String, Object>>> {
+
+    private Metrics metrics;
+
+    public StatsCommand(Metrics metrics) {
+        super(Protocol.STATS);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String decode(Map<String, Object> map) {
+        return map.get("prefix") == null ? null : map.get("prefix").toString();
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> execute(String prefix) throws Exception {
+        return metrics.snapshot(prefix);
+    }
+
+    @Override
+    public MessageBody encode(Map<String, Map<String, Object>> result) {
+        return new MessageBody(new HashMap<>(result));
+    }
+}
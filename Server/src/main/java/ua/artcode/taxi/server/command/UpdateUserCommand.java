@@ -0,0 +1,26 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.Map;
+
+public class UpdateUserCommand extends UserCommand<Map<String, String>> {
+
+    private UserService userService;
+
+    public UpdateUserCommand(UserService userService) {
+        super("updateUser");
+        this.userService = userService;
+    }
+
+    @Override
+    public Map<String, String> decode(Map<String, Object> map) {
+        return toStringMap(map);
+    }
+
+    @Override
+    public User execute(Map<String, String> args) throws Exception {
+        return userService.updateUser(args, args.get("accessToken"));
+    }
+}
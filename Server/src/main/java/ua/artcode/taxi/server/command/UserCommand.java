@@ -0,0 +1,32 @@
+package ua.artcode.taxi.server.command;
+
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.ReflectionFormatter;
+
+/**
+ * Command which answers with one user.
+ */
+public abstract class UserCommand<A> extends Command<A, User> {
+
+    protected UserCommand(String name) {
+        super(name);
+    }
+
+    @Override
+    public MessageBody encode(User result) {
+        return new MessageBody(ReflectionFormatter.userToJsonMap(result));
+    }
+
+    //the user is written by UserTypeAdapter when the response is sent
+    @Override
+    public MessageBody encode(User result, int protocolVersion) {
+        if (protocolVersion < Protocol.VERSION_2) {
+            return encode(result);
+        }
+        MessageBody messageBody = new MessageBody();
+        messageBody.getMap().put(Protocol.USER, result);
+        return messageBody;
+    }
+}
@@ -5,6 +5,7 @@ import ua.artcode.taxi.dao.OrderDao;
 import ua.artcode.taxi.dao.UserDao;
 import ua.artcode.taxi.exception.*;
 import ua.artcode.taxi.model.*;
+import ua.artcode.taxi.to.Protocol;
 import ua.artcode.taxi.utils.geolocation.GoogleMapsAPI;
 import ua.artcode.taxi.utils.geolocation.GoogleMapsAPIImpl;
 import ua.artcode.taxi.utils.geolocation.Location;
@@ -26,14 +27,23 @@ public class UserServiceImpl implements UserService {
     private Map<String, User> accessKeys;
 
     public UserServiceImpl(UserDao userDao, OrderDao orderDao, ValidatorImpl validator) {
+        this(userDao, orderDao, validator, new GoogleMapsAPIImpl());
+    }
+
+    public UserServiceImpl(UserDao userDao, OrderDao orderDao, ValidatorImpl validator, GoogleMapsAPI googleMapsAPI) {
         this.userDao = userDao;
         this.orderDao = orderDao;
         this.validator = validator;
         pricePerKilometer = Constants.pricePerKilometer;
-        googleMapsAPI = new GoogleMapsAPIImpl();
+        this.googleMapsAPI = googleMapsAPI;
         accessKeys = new ConcurrentHashMap<>();
     }
 
+    //access tokens given out by login
+    public int getSessionCount() {
+        return accessKeys.size();
+    }
+
     @Override
     public User registerPassenger(Map<String, String> map) throws RegisterException {
 
@@ -53,6 +63,14 @@ public class UserServiceImpl implements UserService {
 
         User createdUser = userDao.createUser(newUser);
 
+        //another registration took the phone after the validation
+        if (createdUser == null) {
+
+            LOG.error("RegisterException: failed attempt to register with phone " + map.get("phone"));
+
+            throw new RegisterException("This phone using already");
+        }
+
         LOG.info("New passenger " + createdUser.getName() + " registered");
 
         return createdUser;
@@ -77,6 +95,14 @@ public class UserServiceImpl implements UserService {
 
         User createdUser = userDao.createUser(newUser);
 
+        //another registration took the phone after the validation
+        if (createdUser == null) {
+
+            LOG.error("RegisterException: failed attempt to register with phone " + map.get("phone"));
+
+            throw new RegisterException("This phone using already");
+        }
+
         LOG.info("New driver " + createdUser.getName() + " registered");
 
         return createdUser;
@@ -90,12 +116,10 @@ public class UserServiceImpl implements UserService {
         boolean valid = validator.validateLogin(phone, pass);
 
         if (valid) {
-            Collection<User> users = userDao.getAllUsers();
-            for (User user : users) {
-                found = user.getPhone().equals(phone) ? user : found ;
-            }
+            found = userDao.find(phone);
+        }
 
-        } else {
+        if (found == null) {
 
             LOG.error("LoginException: failed attempt to log in with phone " + phone);
 
@@ -134,6 +158,8 @@ public class UserServiceImpl implements UserService {
                         to.getStreet(), to.getHouseNum());
                 int distance = (int) (googleMapsAPI.getDistance(location, location1) / 1000);
                 int price = (int) pricePerKilometer * distance + 30;
+                setLocation(from, location);
+                setLocation(to, location1);
                 message = message.equals("") ? "" : accessKeys.get(accessToken).getName() + ": " + message;
 
                 newOrder = new Order(from, to, accessKeys.get(accessToken), distance, price, message);
@@ -176,6 +202,8 @@ public class UserServiceImpl implements UserService {
                     to.getStreet(), to.getHouseNum());
             int distance = (int) (googleMapsAPI.getDistance(location, location1) / 1000);
             int price = (int) pricePerKilometer * distance + 30;
+            setLocation(from, location);
+            setLocation(to, location1);
 
             User anonymousUser = userDao.createUser(new User(UserIdentifier.A, phone, name));
             newOrder = new Order(from, to, anonymousUser, distance, price, message);
@@ -415,6 +443,31 @@ public class UserServiceImpl implements UserService {
         return ordersOfUser;
     }
 
+    @Override
+    public List<Order> getOrdersUserPage(String accessToken, long cursor, int pageSize) {
+
+        User user = accessKeys.get(accessToken);
+
+        int limit = Math.max(1, Math.min(pageSize, Protocol.MAX_PAGE_SIZE));
+        List<Order> page = userDao.getOrdersOfUser(user, cursor, limit);
+
+        LOG.info("Get " + page.size() + " orders of user " + user.getPhone() + " before order " + cursor);
+
+        return page;
+    }
+
+    @Override
+    public List<Order> getChangedOrdersUser(String accessToken, long sinceVersion) {
+
+        User user = accessKeys.get(accessToken);
+
+        List<Order> changed = orderDao.getChangedOrders(user, sinceVersion);
+
+        LOG.info("Get " + changed.size() + " orders of user " + user.getPhone() + " changed after " + sinceVersion);
+
+        return changed;
+    }
+
     @Override
     public Map<Integer, Order> getMapDistancesToDriver(String orderStatus, String lineAddressDriver)
                                                                             throws InputDataWrongException {
@@ -473,6 +526,16 @@ public class UserServiceImpl implements UserService {
             newUser.setOrderIds(user.getOrderIds());
 
             User updatedUser = userDao.updateUser(newUser);
+
+            //another user took the phone after the validation
+            if (updatedUser == null) {
+
+                LOG.error("RegisterException: failed attempt to update user " +
+                        user.getPhone() + " (phone " + map.get("phone") + " already in use by another user)");
+
+                throw new RegisterException("This phone is already in use by another user");
+            }
+
             accessKeys.put(accessToken, updatedUser);
 
             LOG.info("Change registered data for user. User " + updatedUser.getPhone() + " was updated");
@@ -513,9 +576,16 @@ public class UserServiceImpl implements UserService {
         return distances;
     }
 
+    //the coordinates are kept with the order, so it is not looked up again for nearby drivers
+    private static void setLocation(Address address, Location location) {
+        address.setLat(location.getLat());
+        address.setLon(location.getLng());
+    }
+
     public List<Order> getAllOrdersByStatus(OrderStatus status) {
 
-        List<Order> ordersByStatus = orderDao.getOrdersByStatus(status);
+        //the distances are counted by index, so they need a fixed copy
+        List<Order> ordersByStatus = new ArrayList<>(orderDao.getOrdersByStatus(status));
 
         LOG.info("Get all order by status " + status.toString());
 
@@ -537,7 +607,7 @@ public class UserServiceImpl implements UserService {
         public Distance(Location fromLocation, Location toLocation) {
             this.fromLocation = fromLocation;
             this.toLocation = toLocation;
-            googleMapsAPI = new GoogleMapsAPIImpl();
+            googleMapsAPI = UserServiceImpl.this.googleMapsAPI;
             averageSpeedKmH = Constants.averageSpeedKmH;
         }
 
@@ -8,8 +8,6 @@ import ua.artcode.taxi.model.ClientAccessToken;
 import ua.artcode.taxi.model.User;
 import ua.artcode.taxi.model.UserIdentifier;
 
-import java.util.Collection;
-
 public class ValidatorImpl implements Validator {
 
     private AppDB appDB;
@@ -21,28 +19,17 @@ public class ValidatorImpl implements Validator {
 
     @Override
     public boolean validateLogin(String phone, String password) {
-        boolean result = false;
-
-        Collection<User> users = appDB.getUsers().keySet();
 
-        for (User user : users) {
-            if (user.getPhone().equals(phone) && user.getPass().equals(password)) {
-                result = true;
-            }
-        }
+        User user = appDB.findUser(phone);
 
-        return result;
+        return user != null && user.getPass().equals(password);
     }
 
     @Override
     public boolean validateRegistration(String phone) throws RegisterException {
 
-        Collection<User> users = appDB.getUsers().keySet();
-
-        for (User user : users) {
-            if (user.getPhone().equals(phone)) {
-                throw new RegisterException("This phone using already");
-            }
+        if (appDB.findUser(phone) != null) {
+            throw new RegisterException("This phone using already");
         }
 
         return true;
@@ -72,13 +59,11 @@ public class ValidatorImpl implements Validator {
     public boolean validateChangeRegistration(UserIdentifier identifier, int id, String phone)
                                                                         throws RegisterException {
 
-        Collection<User> users = appDB.getUsers().keySet();
+        //phones are unique among passengers and drivers together, as on registration
+        User user = appDB.findUser(phone);
 
-        for (User user : users) {
-            if (user.getPhone().equals(phone) && user.getId() != id &&
-                        user.getIdentifier().equals(identifier)) {
-                throw new RegisterException("This phone using already");
-            }
+        if (user != null && user.getId() != id) {
+            throw new RegisterException("This phone using already");
         }
 
         return true;
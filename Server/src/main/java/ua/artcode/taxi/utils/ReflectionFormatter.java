@@ -8,11 +8,17 @@ import ua.artcode.taxi.to.MessageBody;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+/**
+ * Entity maps of the protocol v1. Clients which said "version": 2 in the
+ * hello request get typed objects written by the Gson type adapters instead.
+ */
 public class ReflectionFormatter {
 
+    //Gson is thread safe, there is no need to create one for every field
+    private static final Gson GSON = new Gson();
+
     public static Map<String, Object> userToJsonMap(User user) {
 
         Map<String, Object> map = new HashMap<>();
@@ -22,19 +28,20 @@ public class ReflectionFormatter {
         map.put("phone", user.getPhone());
         map.put("pass", user.getPass());
         map.put("name", user.getName());
-        map.put("homeAddress", new Gson().toJson(user.getHomeAddress()));
-        map.put("car", new Gson().toJson(user.getCar()));
+        map.put("homeAddress", GSON.toJson(user.getHomeAddress()));
+        map.put("car", GSON.toJson(user.getCar()));
 
         //create string list of ids with split sigh ","
         if (user.getOrderIds().size() > 0) {
-            List<Long> orderIds = new ArrayList<>(user.getOrderIds());
-            String stringIds = "";
-            for (int i = 0; i < orderIds.size(); i++) {
-                stringIds += orderIds.get(i) + ",";
+            StringBuilder stringIds = new StringBuilder();
+            for (Long orderId : new ArrayList<>(user.getOrderIds())) {
+                if (stringIds.length() > 0) {
+                    stringIds.append(',');
+                }
+                stringIds.append(orderId);
             }
-            int indexEnd = orderIds.size() > 0 ? stringIds.length()-1 : stringIds.length() ;
 
-            map.put("orderIds", stringIds.substring(0, indexEnd));
+            map.put("orderIds", stringIds.toString());
         }
 
         return map;
@@ -50,24 +57,25 @@ public class ReflectionFormatter {
             map.put("orderStatus", order.getOrderStatus().toString());
         }
 
-        map.put("addressFrom", new Gson().toJson(order.getFrom()));
-        map.put("addressTo", new Gson().toJson(order.getTo()));
+        map.put("addressFrom", GSON.toJson(order.getFrom()));
+        map.put("addressTo", GSON.toJson(order.getTo()));
 
         Message messagePassenger = new Message();
         messagePassenger.setMessageBody(new MessageBody(userToJsonMap(order.getPassenger())));
-        map.put("passenger", new Gson().toJson(messagePassenger));
+        map.put("passenger", GSON.toJson(messagePassenger));
 
         if (order.getDriver() != null) {
             Message messageDriver = new Message();
 
             messageDriver.setMessageBody(new MessageBody(userToJsonMap(order.getDriver())));
-            map.put("driver", new Gson().toJson(messageDriver));
+            map.put("driver", GSON.toJson(messageDriver));
         }
 
         map.put("distance", order.getDistance() + "");
         map.put("price", order.getPrice() + "");
         map.put("message", order.getMessage() + "");
+        map.put("version", order.getVersion() + "");
 
         return map;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package ua.artcode.taxi.utils.geolocation;
+
+import ua.artcode.taxi.exception.InputDataWrongException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline stand-in for {@link GoogleMapsAPIImpl}, for load tests and
+ * machines without internet access. Every address gets a fixed point
+ * inside Kiev made from its text, so the same address is always found at
+ * the same place, and the distance is the straight line between two
+ * points times {@link #ROAD_FACTOR}. Each call can wait for
+ * {@code latencyMs} to look like the real service.
+ */
+public class StubGoogleMapsAPI implements GoogleMapsAPI {
+
+    private static final double MIN_LAT = 50.35;
+    private static final double MIN_LNG = 30.35;
+    private static final double SIZE_DEGREES = 0.2;
+    private static final double EARTH_RADIUS_M = 6371000;
+
+    //roads are longer than the straight line
+    public static final double ROAD_FACTOR = 1.3;
+
+    private final long latencyMs;
+
+    public StubGoogleMapsAPI() {
+        this(0);
+    }
+
+    public StubGoogleMapsAPI(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public Location findLocation(String unformatted) throws InputDataWrongException {
+
+        if (unformatted == null || unformatted.trim().isEmpty()) {
+            throw new InputDataWrongException("Empty address");
+        }
+        pause();
+
+        String address = unformatted.trim();
+        int hash = address.hashCode();
+        double lat = MIN_LAT + SIZE_DEGREES * ((hash >>> 16) / 65536.0);
+        double lng = MIN_LNG + SIZE_DEGREES * ((hash & 0xFFFF) / 65536.0);
+
+        return new Location(address, lat, lng, "stub:" + Integer.toHexString(hash));
+    }
+
+    @Override
+    public Location findLocation(String country, String city, String street, String houseNum)
+                                                                            throws InputDataWrongException {
+        return findLocation(country + " " + city + " " + street + " " + houseNum);
+    }
+
+    //in meters, as the directions service answers
+    @Override
+    public double getDistance(Location pointA, Location pointB) throws InputDataWrongException {
+
+        if (pointA == null || pointB == null) {
+            throw new InputDataWrongException("Wrong calculation in Google API");
+        }
+        pause();
+
+        double dLat = Math.toRadians(pointB.getLat() - pointA.getLat());
+        double dLng = Math.toRadians(pointB.getLng() - pointA.getLng());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(pointA.getLat())) * Math.cos(Math.toRadians(pointB.getLat()))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+
+        return ROAD_FACTOR * EARTH_RADIUS_M * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private void pause() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
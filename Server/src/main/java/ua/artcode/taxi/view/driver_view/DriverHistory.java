@@ -57,14 +57,15 @@ public class DriverHistory extends JFrame {
         //create list orders
 
 
-        List<Order> allUserOrders = userService.getAllOrdersUser(ClientAccessToken.getAccessToken());
+        //the newest 10 orders, newest first
+        List<Order> allUserOrders = userService.getOrdersUserPage(ClientAccessToken.getAccessToken(), 0, 10);
         int length = allUserOrders.size() < 10 ? allUserOrders.size() : 10;
         String[] textOrders = new String[10];
 
         orderLabel = new JLabel("YOU HAVE " + length + " ORDERS:");
 
-        for (int i = length - 1; i >= 0; i--) {
-            textOrders[length - 1 - i] = allUserOrders.get(i).toStringForView();
+        for (int i = 0; i < length; i++) {
+            textOrders[i] = allUserOrders.get(i).toStringForView();
         }
         for (int i = length; i < 10; i++) {
             textOrders[i] = "";
@@ -0,0 +1,158 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestAppDBPhones {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    @Test()
+    public void _01onlyFirstRegistrationGetsPhone() throws Exception {
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                AppDB appDB = new AppDB();
+                String phone = "p" + round;
+
+                List<User> added = race(threads, () -> appDB.addUser(new User(UserIdentifier.P, phone, "test")));
+
+                Assert.assertEquals(1, added.size());
+                Assert.assertSame(added.get(0), appDB.findUser(phone));
+                Assert.assertSame(added.get(0), appDB.findUser(added.get(0).getId()));
+                Assert.assertEquals(1, appDB.getUsers().size());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test()
+    public void _02onlyOneUserChangesToPhone() throws Exception {
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                AppDB appDB = new AppDB();
+                List<User> users = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    users.add(appDB.addUser(new User(UserIdentifier.D, "d" + i, "test")));
+                }
+
+                int[] next = {0};
+                List<User> changed = race(threads, () -> {
+                    User user;
+                    synchronized (next) {
+                        user = users.get(next[0]++);
+                    }
+                    return appDB.changePhone(user, "new") ? user : null;
+                });
+
+                Assert.assertEquals(1, changed.size());
+                Assert.assertSame(changed.get(0), appDB.findUser("new"));
+                Assert.assertEquals("new", changed.get(0).getPhone());
+                Assert.assertNull(appDB.findUser("d" + users.indexOf(changed.get(0))));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test()
+    public void _03takenPhoneLeavesNoUser() {
+
+        AppDB appDB = new AppDB();
+        User first = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+
+        Assert.assertNull(appDB.addUser(new User(UserIdentifier.D, "1234", "test")));
+        Assert.assertEquals(1, appDB.getUsers().size());
+        Assert.assertSame(first, appDB.findUser("1234"));
+
+        //anonymous users share phones, they are not in the index
+        Assert.assertNotNull(appDB.addUser(new User(UserIdentifier.A, "1234", "test")));
+        Assert.assertNotNull(appDB.addUser(new User(UserIdentifier.A, "1234", "test")));
+        Assert.assertSame(first, appDB.findUser("1234"));
+    }
+
+    @Test()
+    public void _04userIsFoundWithItsId() throws Exception {
+
+        AppDB appDB = new AppDB();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+
+        try {
+            //a login looks the phone up while it is registered
+            Future<Integer> login = threads.submit(() -> {
+                int found = 0;
+                //one more pass after the writer is done, a slow start still finds the users
+                boolean last;
+                do {
+                    last = done.get();
+                    for (int i = 0; i < 1000; i++) {
+                        User user = appDB.findUser("p" + i);
+                        if (user != null) {
+                            Assert.assertNotEquals(0, user.getId());
+                            Assert.assertSame(user, appDB.findUser(user.getId()));
+                            found++;
+                        }
+                    }
+                } while (!last);
+                return found;
+            });
+
+            for (int i = 0; i < 1000; i++) {
+                appDB.addUser(new User(UserIdentifier.P, "p" + i, "test"));
+            }
+            done.set(true);
+
+            Assert.assertTrue(login.get() > 0);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test()
+    public void _05removedUserFreesPhone() {
+
+        AppDB appDB = new AppDB();
+        User user = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+
+        Assert.assertSame(user, appDB.removeUser(user));
+        Assert.assertNull(appDB.findUser("1234"));
+        Assert.assertFalse(appDB.changePhone(user, "5678"));
+        Assert.assertNotNull(appDB.addUser(new User(UserIdentifier.P, "1234", "test")));
+    }
+
+    //runs the call on all threads at once, returns the results which are not null
+    private static List<User> race(ExecutorService threads, Callable<User> call) throws Exception {
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<User>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(threads.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+
+        List<User> results = new ArrayList<>();
+        for (Future<User> future : futures) {
+            User user = future.get();
+            if (user != null) {
+                results.add(user);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,108 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestAppDBUserOrders {
+
+    @Test()
+    public void _01passengerPagesNewestFirst() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        for (int i = 0; i < 10; i++) {
+            newOrder(appDB, passenger);
+        }
+
+        Assert.assertEquals("[10, 9, 8, 7] [6, 5, 4, 3] [2, 1]", pages(appDB, passenger, 4));
+        Assert.assertEquals("[4, 3, 2]", ids(appDB.findOrdersOfUser(passenger, 5, 3)));
+        Assert.assertEquals(10, appDB.findOrdersOfUser(passenger).size());
+    }
+
+    @Test()
+    public void _02driverPagesInTheOrderOrdersWereTaken() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        User driver = appDB.addUser(new User(UserIdentifier.D, "5678", "test"));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            orders.add(newOrder(appDB, passenger));
+        }
+
+        for (int index : new int[]{6, 2, 8, 0}) {
+            appDB.addOrderToDriver(driver, orders.get(index));
+        }
+
+        Assert.assertEquals("[1, 9] [3, 7]", pages(appDB, driver, 2));
+        Assert.assertEquals("[7, 3, 9, 1]", ids(appDB.findOrdersOfUser(driver)));
+
+        //an id the driver does not have pages by the lower ids
+        Assert.assertEquals("[1, 3]", ids(appDB.findOrdersOfUser(driver, 5, 10)));
+    }
+
+    @Test()
+    public void _03removedUserHasNoOrders() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        newOrder(appDB, passenger);
+
+        appDB.removeUser(passenger);
+
+        Assert.assertEquals(0, appDB.findOrdersOfUser(passenger).size());
+        Assert.assertEquals(0, appDB.findOrdersOfUser(passenger, 0, 10).size());
+        Assert.assertEquals(0, appDB.findChangedOrders(passenger, 0).size());
+        Assert.assertEquals(1, appDB.getOrders().size());
+    }
+
+    @Test()
+    public void _04viewKeepsItsSize() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        newOrder(appDB, passenger);
+        newOrder(appDB, passenger);
+
+        List<Order> orders = appDB.findOrdersOfUser(passenger);
+        newOrder(appDB, passenger);
+
+        Assert.assertEquals(2, orders.size());
+        Assert.assertEquals("[1, 2]", ids(orders));
+        Assert.assertEquals(3, appDB.findOrdersOfUser(passenger).size());
+    }
+
+    static Order newOrder(AppDB appDB, User passenger) {
+        Order order = new Order();
+        order.setPassenger(passenger);
+        order.setOrderStatus(OrderStatus.NEW);
+        return appDB.addOrder(passenger, order);
+    }
+
+    static String ids(List<Order> orders) {
+        List<Long> ids = new ArrayList<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+        }
+        return ids.toString();
+    }
+
+    private static String pages(AppDB appDB, User user, int limit) {
+
+        StringBuilder pages = new StringBuilder();
+        long beforeId = 0;
+        List<Order> page;
+        while (!(page = appDB.findOrdersOfUser(user, beforeId, limit)).isEmpty()) {
+            pages.append(pages.length() == 0 ? "" : " ").append(ids(page));
+            beforeId = page.get(page.size() - 1).getId();
+        }
+        return pages.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ua.artcode.taxi.dao.TestAppDBUserOrders.ids;
+import static ua.artcode.taxi.dao.TestAppDBUserOrders.newOrder;
+
+public class TestChangedOrders {
+
+    @Test()
+    public void _01oldestChangeFirst() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        Order first = newOrder(appDB, passenger);
+        Order second = newOrder(appDB, passenger);
+        Order third = newOrder(appDB, passenger);
+        long since = appDB.getOrderVersion();
+
+        changeStatus(appDB, second, OrderStatus.CANCELLED);
+        changeStatus(appDB, first, OrderStatus.CANCELLED);
+
+        Assert.assertEquals("[2, 1]", ids(appDB.findChangedOrders(passenger, since)));
+        Assert.assertEquals("[3, 2, 1]", ids(appDB.findChangedOrders(passenger, third.getVersion() - 1)));
+    }
+
+    @Test()
+    public void _02orderComesOnceByItsLastChange() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        Order first = newOrder(appDB, passenger);
+        newOrder(appDB, passenger);
+        long since = appDB.getOrderVersion();
+
+        changeStatus(appDB, first, OrderStatus.IN_PROGRESS);
+        newOrder(appDB, passenger);
+        changeStatus(appDB, first, OrderStatus.DONE);
+
+        List<Order> changed = appDB.findChangedOrders(passenger, since);
+        Assert.assertEquals("[3, 1]", ids(changed));
+        Assert.assertEquals(appDB.getOrderVersion(), changed.get(changed.size() - 1).getVersion());
+    }
+
+    @Test()
+    public void _03nothingChanged() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        User other = appDB.addUser(new User(UserIdentifier.P, "5678", "test"));
+        newOrder(appDB, passenger);
+        long since = appDB.getOrderVersion();
+
+        newOrder(appDB, other);
+
+        Assert.assertEquals(0, appDB.findChangedOrders(passenger, since).size());
+        Assert.assertEquals(0, appDB.findChangedOrders(passenger, appDB.getOrderVersion()).size());
+        Assert.assertEquals(1, appDB.findChangedOrders(passenger, 0).size());
+    }
+
+    @Test()
+    public void _04versionOfAnotherRunGetsEveryOrder() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        newOrder(appDB, passenger);
+        newOrder(appDB, passenger);
+
+        //the run is kept above the lower 32 bits, a client of another run has a higher counter
+        long otherRun = ((appDB.getOrderVersion() >>> 32 ^ 1) << 32) + 5;
+
+        Assert.assertEquals("[1, 2]", ids(appDB.findChangedOrders(passenger, otherRun)));
+        Assert.assertEquals(0, appDB.findChangedOrders(passenger, appDB.getOrderVersion()).size());
+    }
+
+    @Test()
+    public void _05driverGetsTakenOrders() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        User driver = appDB.addUser(new User(UserIdentifier.D, "5678", "test"));
+        Order order = newOrder(appDB, passenger);
+        long since = appDB.getOrderVersion();
+
+        order.setDriver(driver);
+        order.setOrderStatus(OrderStatus.IN_PROGRESS);
+        appDB.addOrderToDriver(driver, order);
+
+        Assert.assertEquals("[1]", ids(appDB.findChangedOrders(driver, since)));
+        Assert.assertEquals("[1]", ids(appDB.findChangedOrders(passenger, since)));
+    }
+
+    @Test()
+    public void _06statusViewsShowTheCurrentStatus() {
+
+        AppDB appDB = new AppDB();
+        User passenger = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        newOrder(appDB, passenger);
+        Order taken = newOrder(appDB, passenger);
+        newOrder(appDB, passenger);
+
+        changeStatus(appDB, taken, OrderStatus.IN_PROGRESS);
+        Assert.assertEquals("[1, 3]", sortedIds(appDB.findOrdersByStatus(OrderStatus.NEW)));
+        Assert.assertEquals("[2]", sortedIds(appDB.findOrdersByStatus(OrderStatus.IN_PROGRESS)));
+        Assert.assertEquals(2, appDB.countOrders(OrderStatus.NEW));
+
+        //the status is set before the order is moved, the view does not show it meanwhile
+        Order cancelled = appDB.findOrder(3);
+        cancelled.setOrderStatus(OrderStatus.CANCELLED);
+        Assert.assertEquals("[1]", sortedIds(appDB.findOrdersByStatus(OrderStatus.NEW)));
+
+        appDB.orderChanged(cancelled);
+        Assert.assertEquals("[3]", sortedIds(appDB.findOrdersByStatus(OrderStatus.CANCELLED)));
+        Assert.assertEquals(1, appDB.countOrders(OrderStatus.NEW));
+    }
+
+    private static void changeStatus(AppDB appDB, Order order, OrderStatus status) {
+        order.setOrderStatus(status);
+        appDB.orderChanged(order);
+    }
+
+    private static String sortedIds(Iterable<Order> orders) {
+        List<Order> list = new ArrayList<>();
+        orders.forEach(list::add);
+        list.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return ids(list);
+    }
+}
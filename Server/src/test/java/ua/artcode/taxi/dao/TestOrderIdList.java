@@ -0,0 +1,102 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class TestOrderIdList {
+
+    @Test()
+    public void _01keepsIdsInOrderWhileGrowing() {
+
+        OrderIdList ids = new OrderIdList();
+        for (long id = 1; id <= 1000; id++) {
+            ids.add(id * 3);
+        }
+
+        Assert.assertEquals(1000, ids.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals((i + 1) * 3L, ids.get(i));
+        }
+        Assert.assertEquals(1000, ids.toArray().length);
+        Assert.assertEquals(3000, ids.toArray()[999]);
+    }
+
+    @Test()
+    public void _02noIdsBeyondSize() {
+
+        OrderIdList ids = new OrderIdList();
+        ids.add(7);
+
+        for (int index : new int[]{-1, 1, 4}) {
+            try {
+                ids.get(index);
+                Assert.fail("Id at " + index + " of 1");
+            } catch (IndexOutOfBoundsException e) {
+                Assert.assertEquals(1, ids.size());
+            }
+        }
+    }
+
+    @Test()
+    public void _03lastIndexOf() {
+
+        OrderIdList ids = new OrderIdList();
+        for (long id : new long[]{5, 9, 7, 9, 12}) {
+            ids.add(id);
+        }
+
+        Assert.assertEquals(3, ids.lastIndexOf(9, 4));
+        Assert.assertEquals(1, ids.lastIndexOf(9, 2));
+        Assert.assertEquals(0, ids.lastIndexOf(5, 100));
+        Assert.assertEquals(-1, ids.lastIndexOf(12, 3));
+        Assert.assertEquals(-1, ids.lastIndexOf(4, 4));
+    }
+
+    @Test()
+    public void _04readersSeeEveryIdBelowTheSize() throws Exception {
+
+        int count = 2000000;
+        OrderIdList ids = new OrderIdList();
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+
+        try {
+            Future<?> writer = threads.submit(() -> {
+                for (long id = 1; id <= count; id++) {
+                    ids.add(id);
+                }
+            });
+
+            Future<?>[] readers = new Future<?>[2];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = threads.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int size;
+                    while ((size = ids.size()) < count) {
+                        if (size > 0) {
+                            Assert.assertEquals(size, ids.get(size - 1));
+                            int index = random.nextInt(size);
+                            Assert.assertEquals(index + 1L, ids.get(index));
+                        }
+                        long[] copy = ids.toArray();
+                        if (copy.length > 0) {
+                            Assert.assertEquals(copy.length, copy[copy.length - 1]);
+                        }
+                    }
+                });
+            }
+
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+            Assert.assertEquals(count, ids.size());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+
+public class TestOrderIndex {
+
+    //chunks hold 16384 ids
+    private static final long[] IDS = {1, 16383, 16384, 16385, 32767, 32768, 1 << 20, Integer.MAX_VALUE};
+
+    @Test()
+    public void _01getAcrossChunkBoundaries() {
+
+        OrderIndex index = new OrderIndex();
+        for (long id : IDS) {
+            index.put(order(id));
+        }
+
+        for (long id : IDS) {
+            Assert.assertEquals(id, index.get(id).getId());
+        }
+        Assert.assertNull(index.get(2));
+        Assert.assertNull(index.get(16382));
+        Assert.assertNull(index.get(16386));
+        Assert.assertNull(index.get(32769));
+        Assert.assertEquals(IDS.length, index.size());
+        Assert.assertEquals(Integer.MAX_VALUE, index.getHighestId());
+    }
+
+    @Test()
+    public void _02getOutOfRange() {
+
+        OrderIndex index = new OrderIndex();
+        index.put(order(1));
+
+        Assert.assertNull(index.get(0));
+        Assert.assertNull(index.get(-1));
+        Assert.assertNull(index.get(Integer.MAX_VALUE + 1L));
+    }
+
+    @Test()
+    public void _03putOutOfRange() {
+
+        OrderIndex index = new OrderIndex();
+
+        for (long id : new long[]{0, -1, Integer.MAX_VALUE + 1L}) {
+            try {
+                index.put(order(id));
+                Assert.fail("Order with id " + id + " was put");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals(0, index.size());
+            }
+        }
+    }
+
+    @Test()
+    public void _04putAgainReplaces() {
+
+        OrderIndex index = new OrderIndex();
+        Order first = order(16384);
+        Order second = order(16384);
+
+        index.put(first);
+        index.put(second);
+
+        Assert.assertSame(second, index.get(16384));
+        Assert.assertEquals(1, index.size());
+    }
+
+    static Order order(long id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+}
@@ -0,0 +1,143 @@
+package ua.artcode.taxi.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestOrderLog {
+
+    @Test()
+    public void _01ordersComeByIdAcrossChunks() {
+
+        OrderIndex index = new OrderIndex();
+        OrderLog log = new OrderLog(index);
+        for (long id = 1; id <= 40000; id++) {
+            index.put(TestOrderIndex.order(id));
+        }
+
+        long expected = 1;
+        for (Order order : log) {
+            Assert.assertEquals(expected++, order.getId());
+        }
+        Assert.assertEquals(40001, expected);
+        Assert.assertEquals(40000, log.size());
+    }
+
+    @Test()
+    public void _02stopsAtFirstUnwrittenId() {
+
+        OrderIndex index = new OrderIndex();
+        OrderLog log = new OrderLog(index);
+        index.put(TestOrderIndex.order(1));
+        index.put(TestOrderIndex.order(2));
+        index.put(TestOrderIndex.order(4));
+
+        //id 3 is taken and will be put, the orders after it wait for it
+        Assert.assertArrayEquals(new long[]{1, 2}, ids(log));
+
+        index.put(TestOrderIndex.order(3));
+        Assert.assertArrayEquals(new long[]{1, 2, 3, 4}, ids(log));
+    }
+
+    @Test()
+    public void _03skipsIdsMissingFromLoadedOrders() {
+
+        AppDB appDB = new AppDB();
+        appDB.setOrders(Arrays.asList(order(1), order(2), order(5), order(9)));
+
+        Assert.assertArrayEquals(new long[]{1, 2, 5, 9}, ids(appDB.getOrders()));
+
+        User user = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        Order order = order(0);
+        order.setPassenger(user);
+        appDB.addOrder(user, order);
+
+        Assert.assertEquals(10, order.getId());
+        Assert.assertArrayEquals(new long[]{1, 2, 5, 9, 10}, ids(appDB.getOrders()));
+    }
+
+    @Test()
+    public void _04iteratorsSeeNoGapsWhileOrdersAreAdded() throws Exception {
+
+        AppDB appDB = new AppDB();
+        User user = appDB.addUser(new User(UserIdentifier.P, "1234", "test"));
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(threads.submit(() -> {
+                    for (int j = 0; j < 50000; j++) {
+                        Order order = order(0);
+                        order.setPassenger(user);
+                        appDB.addOrder(user, order);
+                    }
+                }));
+            }
+
+            boolean writing = true;
+            while (writing) {
+                writing = false;
+                for (Future<?> writer : writers) {
+                    writing |= !writer.isDone();
+                }
+
+                long expected = 1;
+                for (Order order : appDB.getOrders()) {
+                    Assert.assertEquals(expected++, order.getId());
+                }
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+
+            Assert.assertEquals(200000, ids(appDB.getOrders()).length);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test()
+    public void _05emptyIterator() {
+
+        Iterator<Order> iterator = new OrderLog(new OrderIndex()).iterator();
+
+        Assert.assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            Assert.fail("Empty log has an order");
+        } catch (NoSuchElementException e) {
+            Assert.assertFalse(iterator.hasNext());
+        }
+    }
+
+    private static Order order(long id) {
+        Order order = TestOrderIndex.order(id);
+        order.setOrderStatus(OrderStatus.NEW);
+        return order;
+    }
+
+    private static long[] ids(Iterable<Order> orders) {
+        List<Long> ids = new ArrayList<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+}
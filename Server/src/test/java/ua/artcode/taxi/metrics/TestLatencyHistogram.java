@@ -0,0 +1,82 @@
+package ua.artcode.taxi.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestLatencyHistogram {
+
+    @Test()
+    public void _01bucketsFollowTheValues() {
+
+        Assert.assertEquals(1152, LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE) + 1);
+
+        int previous = -1;
+        for (long value = 0; value < 1 << 16; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue("Index of " + value, index == previous || index == previous + 1);
+            Assert.assertTrue("Bucket " + index + " holds " + value, value <= LatencyHistogram.highestValueOf(index));
+            previous = index;
+        }
+
+        //the highest value of a bucket is the last one in it
+        for (int index = 0; index < 1152; index++) {
+            long highest = LatencyHistogram.highestValueOf(index);
+            Assert.assertEquals(index, LatencyHistogram.indexOf(highest));
+            Assert.assertEquals(index + 1, LatencyHistogram.indexOf(highest + 1));
+        }
+    }
+
+    @Test()
+    public void _02bucketIsWithinThreePercent() {
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long value = (long) Math.pow(2, random.nextDouble() * 40);
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            Assert.assertTrue("Value " + value + " is in bucket up to " + highest,
+                    highest >= value && highest - value <= value / 32);
+        }
+    }
+
+    @Test()
+    public void _03percentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1_000_000);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+
+        long[] percentiles = histogram.percentiles(0.5, 0.9, 0.99, 1);
+        long[] expected = {500_000_000, 900_000_000, 990_000_000, 1_000_000_000};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], percentiles[i], expected[i] * 0.03);
+        }
+        Assert.assertEquals(percentiles[1], histogram.percentile(0.9));
+    }
+
+    @Test()
+    public void _04emptyHistogram() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.percentile(0.99));
+        Assert.assertArrayEquals(new long[]{0, 0}, histogram.percentiles(0.5, 0.99));
+    }
+
+    @Test()
+    public void _05valuesOutOfRangeAreClamped() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(0, histogram.percentile(0.5));
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, histogram.percentile(1));
+    }
+}
@@ -0,0 +1,94 @@
+package ua.artcode.taxi.remote;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+
+public class TestClientConnection {
+
+    static final String HELLO_ANSWER = "{\"requestId\":1,\"messageBody\":{\"map\":{\"framing\":\"binary\","
+            + "\"version\":2,\"compression\":\"gzip\",\"idleTimeout\":600}}}";
+
+    @Test()
+    public void _01lostConnectionStopsItsPings() throws Exception {
+
+        try (ServerSocket server = new ServerSocket(0)) {
+            int pingThreads = threads("taxi-client-ping");
+
+            for (int i = 0; i < 5; i++) {
+                //the server answers hello and hangs up
+                Thread answering = answer(server, HELLO_ANSWER);
+                ClientConnection connection = new ClientConnection(config(server.getLocalPort()), Protocol.createGson());
+                answering.join();
+
+                Assert.assertEquals("gzip", connection.getCompression());
+                waitUntil(connection::isClosed);
+                Assert.assertTrue(connection.send(new Message(Protocol.PING, null)).isCompletedExceptionally());
+            }
+
+            //every lost connection shut its ping thread down without close()
+            waitUntil(() -> threads("taxi-client-ping") <= pingThreads);
+        }
+    }
+
+    static ClientConfig config(int port) {
+        ClientConfig config = new ClientConfig();
+        config.setHost("127.0.0.1");
+        config.setPort(port);
+        config.setBinaryFraming(true);
+        config.setCompression("gzip");
+        return config;
+    }
+
+    //accepts one connection, reads the hello line, answers it with the given lines and closes
+    static Thread answer(ServerSocket server, String... lines) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Assert.assertTrue(in.readLine().contains(FrameCodec.HELLO));
+
+                OutputStream out = socket.getOutputStream();
+                for (String line : lines) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    static int threads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Condition is not met in 5 s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
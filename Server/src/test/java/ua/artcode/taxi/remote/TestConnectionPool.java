@@ -0,0 +1,70 @@
+package ua.artcode.taxi.remote;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.run.LocalServer;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static ua.artcode.taxi.remote.TestClientConnection.*;
+
+public class TestConnectionPool {
+
+    @Test()
+    public void _01lostConnectionIsReplacedAndReleased() throws Exception {
+
+        try (ServerSocket server = new ServerSocket(0)) {
+            ClientConfig config = config(server.getLocalPort());
+            config.setConnections(1);
+            int pingThreads = threads("taxi-client-ping");
+
+            try (ConnectionPool pool = new ConnectionPool(config, Protocol.createGson())) {
+                ClientConnection previous = null;
+                for (int i = 0; i < 5; i++) {
+                    Thread answering = answer(server, HELLO_ANSWER);
+                    ClientConnection connection = pool.first();
+                    answering.join();
+
+                    Assert.assertNotSame(previous, connection);
+                    waitUntil(connection::isClosed);
+                    previous = connection;
+                }
+            }
+
+            waitUntil(() -> threads("taxi-client-ping") <= pingThreads);
+        }
+    }
+
+    @Test()
+    public void _02requestsGoOverEveryConnection() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        ClientConfig config = config(server.getPort());
+        config.setConnections(3);
+
+        try (ConnectionPool pool = new ConnectionPool(config, Protocol.createGson())) {
+            pool.connect();
+            waitUntil(() -> server.getConnectionManager().getOpenConnections() == 3);
+
+            List<CompletableFuture<Message>> responses = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                responses.add(pool.send(new Message(Protocol.PING, new MessageBody())));
+            }
+            for (CompletableFuture<Message> response : responses) {
+                Assert.assertNull(response.get(5, TimeUnit.SECONDS).getError());
+            }
+            Assert.assertEquals(3, server.getConnectionManager().getOpenConnections());
+
+        } finally {
+            server.stop();
+        }
+    }
+}
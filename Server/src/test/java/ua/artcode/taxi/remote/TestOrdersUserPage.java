@@ -0,0 +1,90 @@
+package ua.artcode.taxi.remote;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.run.LocalServer;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.service.UserService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ua.artcode.taxi.remote.TestClientConnection.config;
+
+public class TestOrdersUserPage {
+
+    @Test()
+    public void _01pagesNewestFirstUntilEmpty() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (RemoteUserService service = new RemoteUserService(config(server.getPort()))) {
+
+            UserService userService = server.getUserService();
+            String passenger = passenger(userService, "0501234567");
+            String other = passenger(userService, "0507654321");
+
+            List<Long> made = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                made.add(userService.makeOrder(passenger, "Ukraine Kiev Khreschatik " + i,
+                        "Ukraine Kiev Zhukova " + i, "").getId());
+                userService.makeOrder(other, "Ukraine Kiev Lesi " + i, "Ukraine Kiev Zhukova " + i, "");
+            }
+            Collections.reverse(made);
+
+            //the last id of a page is the cursor of the next one
+            List<Long> paged = new ArrayList<>();
+            long cursor = 0;
+            List<Integer> sizes = new ArrayList<>();
+            while (true) {
+                List<Order> page = service.getOrdersUserPage(passenger, cursor, 3);
+                sizes.add(page.size());
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (Order order : page) {
+                    paged.add(order.getId());
+                }
+                cursor = page.get(page.size() - 1).getId();
+            }
+
+            Assert.assertEquals(made, paged);
+            Assert.assertEquals("[3, 3, 1, 0]", sizes.toString());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _02pageSizeIsAtLeastOne() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (RemoteUserService service = new RemoteUserService(config(server.getPort()))) {
+
+            UserService userService = server.getUserService();
+            String passenger = passenger(userService, "0501234567");
+            userService.makeOrder(passenger, "Ukraine Kiev Khreschatik 1", "Ukraine Kiev Zhukova 1", "");
+            long newest = userService.makeOrder(passenger, "Ukraine Kiev Khreschatik 2", "Ukraine Kiev Zhukova 2", "")
+                    .getId();
+
+            List<Order> page = service.getOrdersUserPage(passenger, 0, 0);
+            Assert.assertEquals(1, page.size());
+            Assert.assertEquals(newest, page.get(0).getId());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String passenger(UserService userService, String phone) throws Exception {
+        Map<String, String> map = new HashMap<>();
+        map.put("phone", phone);
+        map.put("pass", "page");
+        map.put("name", "Passenger");
+        map.put("homeAddress", "Ukraine Kiev Khreschatik 5");
+        userService.registerPassenger(map);
+        return userService.login(phone, "page");
+    }
+}
@@ -0,0 +1,90 @@
+package ua.artcode.taxi.remote;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.exception.OrderNotFoundException;
+import ua.artcode.taxi.exception.RegisterException;
+import ua.artcode.taxi.model.Order;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ua.artcode.taxi.remote.TestClientConnection.config;
+
+/**
+ * A server from before hello: unknown methods get no answer, requests go
+ * without requestId and failures come back as bare exception lines.
+ */
+public class TestServerWithoutHello {
+
+    @Test()
+    public void _01failuresKeepTheirExceptions() throws Exception {
+
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread serving = new Thread(() -> serve(server));
+            serving.start();
+
+            ClientConfig config = config(server.getLocalPort());
+            config.setConnections(1);
+            config.setRequestTimeoutMs(10000);
+            try (RemoteUserService service = new RemoteUserService(config)) {
+
+                Map<String, String> registration = new HashMap<>();
+                registration.put("phone", "1234");
+                try {
+                    service.registerPassenger(registration);
+                    Assert.fail("Taken phone is registered");
+                } catch (RegisterException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().contains("phone is taken"));
+                }
+
+                try {
+                    service.getOrderInfo(5);
+                    Assert.fail("Missing order is found");
+                } catch (OrderNotFoundException e) {
+                    //expected
+                }
+
+                //the connection goes on after the failures, in the order of the requests
+                Order order = service.getOrderInfo(7);
+                Assert.assertEquals(7, order.getId());
+            }
+            serving.join(5000);
+        }
+    }
+
+    private static void serve(ServerSocket server) {
+        try (Socket socket = server.accept()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains("hello")) {
+                    continue;
+                }
+                Assert.assertFalse(line, line.contains("requestId"));
+
+                String answer;
+                if (line.contains("registerPassenger")) {
+                    answer = "ua.artcode.taxi.exception.RegisterException: phone is taken";
+                } else if (line.contains("\"orderId\":5")) {
+                    answer = "ua.artcode.taxi.exception.OrderNotFoundException: order 5 is not found";
+                } else {
+                    answer = "{\"messageBody\":{\"map\":{\"order\":{\"id\":7,\"orderStatus\":\"NEW\"}}}}";
+                }
+                out.write((answer + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            //closed by the client
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ua.artcode.taxi.run;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.dao.AppDB;
+import ua.artcode.taxi.dao.ObservableOrderDao;
+import ua.artcode.taxi.dao.OrderDaoInnerDbImpl;
+import ua.artcode.taxi.dao.UserDaoInnerDbImpl;
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.server.*;
+import ua.artcode.taxi.server.command.CommandRegistry;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.service.UserServiceImpl;
+import ua.artcode.taxi.service.ValidatorImpl;
+import ua.artcode.taxi.to.Protocol;
+import ua.artcode.taxi.utils.geolocation.StubGoogleMapsAPI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The server wired the way {@link RunServer} does it, on a free port, with
+ * users in memory and the stub instead of Google Maps. The blocking mode
+ * accepts on its own thread; both modes are closed with {@link #stop()}.
+ */
+public class LocalServer {
+
+    private final ServerConfig config;
+
+    private final AppDB appDB = new AppDB();
+    private final ObservableOrderDao orderDao = new ObservableOrderDao(new OrderDaoInnerDbImpl(appDB));
+    private final UserService userService;
+    private final AsyncUserServiceAdapter asyncUserService;
+    private final OrderFeed orderFeed;
+    private final RateLimiter rateLimiter;
+    private final RequestExecutor requestExecutor;
+    private final RequestDispatcher requestDispatcher;
+    private final ConnectionManager connectionManager;
+
+    private NioServer nioServer;
+    private ServerSocket serverSocket;
+    private ExecutorService writer;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    public LocalServer(String mode) {
+        this(config(mode));
+    }
+
+    public LocalServer(ServerConfig config) {
+        this.config = config;
+
+        Gson gson = Protocol.createGson();
+        StubGoogleMapsAPI googleMapsAPI = new StubGoogleMapsAPI(config.getGeoStubLatencyMs());
+        userService = new UserServiceImpl(new UserDaoInnerDbImpl(appDB), orderDao, new ValidatorImpl(appDB),
+                googleMapsAPI);
+        asyncUserService = new AsyncUserServiceAdapter(userService, config);
+
+        orderFeed = new OrderFeed(orderDao, googleMapsAPI, asyncUserService, gson);
+        orderDao.addListener(orderFeed);
+
+        rateLimiter = new RateLimiter(config);
+        RequestHandler requestHandler = new RequestHandler(gson,
+                CommandRegistry.create(userService, asyncUserService, gson), orderFeed, new Metrics(), rateLimiter);
+        requestExecutor = new RequestExecutor(config);
+        requestDispatcher = new RequestDispatcher(requestHandler, requestExecutor, config);
+        connectionManager = new ConnectionManager(config);
+    }
+
+    //nio or blocking, free port, memory users, stub geo
+    public static ServerConfig config(String mode) {
+        ServerConfig config = new ServerConfig();
+        config.setMode(mode);
+        config.setPort(0);
+        config.setIoThreads(1);
+        config.setUserStorage(ServerConfig.USERS_MEMORY);
+        config.setGeo(ServerConfig.GEO_STUB);
+        return config;
+    }
+
+    public LocalServer start() throws IOException {
+        rateLimiter.start();
+        connectionManager.start();
+
+        if (config.isNio()) {
+            nioServer = new NioServer(config, requestDispatcher, connectionManager);
+            nioServer.start();
+            return this;
+        }
+
+        serverSocket = new ServerSocket(0);
+        writer = Executors.newCachedThreadPool(new NamedThreadFactory("test-write-"));
+        Thread acceptor = new Thread(this::accept, "test-accept");
+        acceptor.start();
+        return this;
+    }
+
+    public int getPort() {
+        return nioServer != null ? nioServer.getPort() : serverSocket.getLocalPort();
+    }
+
+    public Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    public AppDB getAppDB() {
+        return appDB;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    public OrderFeed getOrderFeed() {
+        return orderFeed;
+    }
+
+    public ConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public void stop() throws IOException {
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            serverSocket.close();
+            for (Session session : sessions) {
+                session.close();
+            }
+            writer.shutdown();
+        }
+
+        connectionManager.stop();
+        rateLimiter.stop();
+        orderFeed.shutdown();
+        asyncUserService.shutdown();
+        requestExecutor.shutdown();
+    }
+
+    //the accept loop of RunServer.main
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                if (!connectionManager.admit(clientSocket.getInetAddress())) {
+                    clientSocket.close();
+                    continue;
+                }
+
+                Session session = new StreamSession(clientSocket,
+                        new BufferedOutputStream(clientSocket.getOutputStream()), writer);
+                sessions.add(session);
+                connectionManager.opened(session, clientSocket.getInetAddress());
+
+                requestExecutor.newConnectionThread(new ClientThreadLogic(requestDispatcher, session,
+                        new BufferedInputStream(clientSocket.getInputStream()))).start();
+
+            } catch (IOException e) {
+                //closed by stop()
+            }
+        }
+    }
+}
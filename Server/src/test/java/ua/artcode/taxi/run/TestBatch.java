@@ -0,0 +1,103 @@
+package ua.artcode.taxi.run;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestBatch {
+
+    @Test()
+    public void _01batchSizeLimit() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+            client.hello(FrameCodec.FRAMING_BINARY, Protocol.VERSION_2, FrameCompression.NONE);
+            String orderId = String.valueOf(makeOrder(server));
+
+            Message full = batch(client, 1L, orderInfos(orderId, Protocol.MAX_BATCH_SIZE));
+            Assert.assertNull(full.getError());
+            Assert.assertEquals(Protocol.MAX_BATCH_SIZE, full.getBatch().size());
+            for (Message response : full.getBatch()) {
+                Assert.assertNull(response.getError());
+            }
+
+            Message tooLong = batch(client, 2L, orderInfos(orderId, Protocol.MAX_BATCH_SIZE + 1));
+            Assert.assertTrue(tooLong.getError(), tooLong.getError().contains("Batch must have"));
+            Assert.assertNull(tooLong.getBatch());
+
+            Message empty = batch(client, 3L, new ArrayList<>());
+            Assert.assertNull(empty.getError());
+            Assert.assertEquals(0, empty.getBatch().size());
+
+            Message missing = batch(client, 4L, null);
+            Assert.assertTrue(missing.getError(), missing.getError().contains("Batch must have"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _02everyRequestGetsItsOwnAnswer() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+            client.hello(FrameCodec.FRAMING_BINARY, Protocol.VERSION_2, FrameCompression.NONE);
+            long orderId = makeOrder(server);
+
+            List<Message> requests = Arrays.asList(
+                    WireClient.message(null, "getOrderInfo", "orderId", String.valueOf(orderId)),
+                    WireClient.message(null, Protocol.BATCH),
+                    WireClient.message(null, "noSuchMethod"),
+                    WireClient.message(null, "getOrderInfo", "orderId", "-1"),
+                    WireClient.message(null, "getOrderInfo", "orderId", String.valueOf(orderId)));
+
+            Message response = batch(client, 5L, requests);
+            Assert.assertNull(response.getError());
+            Assert.assertEquals(5L, (long) response.getRequestId());
+
+            List<Message> responses = response.getBatch();
+            Assert.assertEquals(requests.size(), responses.size());
+            Assert.assertEquals(orderId, orderOf(responses.get(0)).getId());
+            Assert.assertTrue(responses.get(1).getError(), responses.get(1).getError().contains("Unknown method batch"));
+            Assert.assertTrue(responses.get(2).getError(), responses.get(2).getError().contains("Unknown method"));
+            Assert.assertTrue(responses.get(3).getError(), responses.get(3).getError().contains("OrderNotFoundException"));
+            Assert.assertEquals(orderId, orderOf(responses.get(4)).getId());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Message batch(WireClient client, Long requestId, List<Message> requests) throws Exception {
+        Message batch = WireClient.message(requestId, Protocol.BATCH);
+        batch.setBatch(requests);
+        client.send(batch);
+        return client.readMessage();
+    }
+
+    private static List<Message> orderInfos(String orderId, int count) {
+        List<Message> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(WireClient.message(null, "getOrderInfo", "orderId", orderId));
+        }
+        return requests;
+    }
+
+    private static long makeOrder(LocalServer server) throws Exception {
+        return server.getUserService().makeOrderAnonymous("0500000001", "Anonym",
+                "Ukraine Kiev Khreschatik 5", "Ukraine Kiev Zhukova 51", "").getId();
+    }
+
+    private static Order orderOf(Message response) {
+        Assert.assertNull(response.getError());
+        return (Order) response.getMessageBody().getMap().get(Protocol.ORDER);
+    }
+}
@@ -0,0 +1,115 @@
+package ua.artcode.taxi.run;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.Map;
+
+public class TestHelloNegotiation {
+
+    @Test()
+    public void _01binaryFramingWithCompression() throws Exception {
+
+        for (String mode : new String[]{ServerConfig.MODE_NIO, ServerConfig.MODE_BLOCKING}) {
+            LocalServer server = new LocalServer(mode).start();
+            try (WireClient client = new WireClient(server.connect())) {
+
+                Map<String, Object> agreed = client.hello(FrameCodec.FRAMING_BINARY, Protocol.VERSION_2,
+                        FrameCompression.GZIP);
+                Assert.assertEquals(mode, FrameCodec.FRAMING_BINARY, agreed.get("framing"));
+                Assert.assertEquals(mode, Protocol.VERSION_2, ((Number) agreed.get("version")).intValue());
+                Assert.assertEquals(mode, FrameCompression.GZIP, agreed.get("compression"));
+
+                //the next answer already comes in a frame
+                Assert.assertEquals(mode, 1L, (long) client.request(1L, Protocol.PING).getRequestId());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    @Test()
+    public void _02compressionOnlyWithFrames() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+
+            Map<String, Object> agreed = client.hello(FrameCodec.FRAMING_LINE, Protocol.VERSION_2,
+                    FrameCompression.GZIP);
+            Assert.assertEquals(FrameCodec.FRAMING_LINE, agreed.get("framing"));
+            Assert.assertEquals(FrameCompression.NONE, agreed.get("compression"));
+
+            Assert.assertEquals(2L, (long) client.request(2L, Protocol.PING).getRequestId());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _03versionIsClamped() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try {
+            Assert.assertEquals(Protocol.VERSION, agreedVersion(server, 99));
+            Assert.assertEquals(Protocol.VERSION_1, agreedVersion(server, 0));
+            Assert.assertEquals(Protocol.VERSION_1, agreedVersion(server, null));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _04serverWithoutBinaryFraming() throws Exception {
+
+        ServerConfig config = LocalServer.config(ServerConfig.MODE_NIO);
+        config.setBinaryFraming(false);
+        config.setIdleTimeoutMs(60000);
+
+        LocalServer server = new LocalServer(config).start();
+        try (WireClient client = new WireClient(server.connect())) {
+
+            Map<String, Object> agreed = client.hello(FrameCodec.FRAMING_BINARY, Protocol.VERSION_2,
+                    FrameCompression.DEFLATE);
+            Assert.assertEquals(FrameCodec.FRAMING_LINE, agreed.get("framing"));
+            Assert.assertEquals(FrameCompression.NONE, agreed.get("compression"));
+            Assert.assertEquals(60000L, ((Number) agreed.get("idleTimeout")).longValue());
+
+            Assert.assertEquals(3L, (long) client.request(3L, Protocol.PING).getRequestId());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _05helloOnlyAsTheFirstRequest() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+
+            Message pong = client.request(4L, Protocol.PING);
+            Assert.assertEquals(4L, (long) pong.getRequestId());
+
+            //a hello after the first request is just an unknown method
+            Message late = client.request(5L, FrameCodec.HELLO, "framing", FrameCodec.FRAMING_BINARY);
+            Assert.assertTrue(late.getError(), late.getError().contains("Unknown method"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    //hello without the version when it is null
+    private static int agreedVersion(LocalServer server, Integer version) throws Exception {
+        try (WireClient client = new WireClient(server.connect())) {
+            Message hello = version == null
+                    ? WireClient.message(null, FrameCodec.HELLO, "framing", FrameCodec.FRAMING_LINE)
+                    : WireClient.message(null, FrameCodec.HELLO, "framing", FrameCodec.FRAMING_LINE, "version", version);
+            client.send(hello);
+            return ((Number) client.readMessage().getMessageBody().getMap().get("version")).intValue();
+        }
+    }
+}
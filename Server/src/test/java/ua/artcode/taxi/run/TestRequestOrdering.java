@@ -0,0 +1,79 @@
+package ua.artcode.taxi.run;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestRequestOrdering {
+
+    private static final int ORDERS = 20;
+
+    @Test()
+    public void _01untaggedInOrderTaggedByIdOverNio() throws Exception {
+        pipelined(ServerConfig.MODE_NIO);
+    }
+
+    @Test()
+    public void _02untaggedInOrderTaggedByIdOverBlockingSockets() throws Exception {
+        pipelined(ServerConfig.MODE_BLOCKING);
+    }
+
+    //all requests are sent before the first answer is read
+    private static void pipelined(String mode) throws Exception {
+
+        LocalServer server = new LocalServer(mode).start();
+        try (WireClient client = new WireClient(server.connect())) {
+            client.hello(FrameCodec.FRAMING_BINARY, Protocol.VERSION_2, FrameCompression.NONE);
+
+            List<Long> orderIds = makeOrders(server.getUserService());
+            for (int i = 0; i < ORDERS; i++) {
+                String orderId = String.valueOf(orderIds.get(i));
+                client.send(WireClient.message(null, "getOrderInfo", "orderId", orderId));
+                client.send(WireClient.message(100L + i, "getOrderInfo", "orderId", orderId));
+            }
+
+            List<Long> untagged = new ArrayList<>();
+            Map<Long, Long> tagged = new HashMap<>();
+            for (int i = 0; i < 2 * ORDERS; i++) {
+                Message response = client.readMessage();
+                Assert.assertNull(mode, response.getError());
+                long orderId = ((Order) response.getMessageBody().getMap().get(Protocol.ORDER)).getId();
+
+                if (response.getRequestId() == null) {
+                    untagged.add(orderId);
+                } else {
+                    Assert.assertNull(mode, tagged.put(response.getRequestId(), orderId));
+                }
+            }
+
+            //untagged answers keep the order of the requests, tagged ones find theirs by id
+            Assert.assertEquals(mode, orderIds, untagged);
+            for (int i = 0; i < ORDERS; i++) {
+                Assert.assertEquals(mode, orderIds.get(i), tagged.get(100L + i));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static List<Long> makeOrders(UserService userService) throws Exception {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = userService.makeOrderAnonymous("050000000" + (i % 10), "Anonym",
+                    "Ukraine Kiev Khreschatik " + i, "Ukraine Kiev Zhukova " + i, "");
+            orderIds.add(order.getId());
+        }
+        return orderIds;
+    }
+}
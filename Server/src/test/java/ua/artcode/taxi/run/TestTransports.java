@@ -0,0 +1,82 @@
+package ua.artcode.taxi.run;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.server.ServerConfig;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+public class TestTransports {
+
+    private static final String[] MALFORMED = {
+            "{\"methodName\":\"hello\",\"messageBody\":{\"map\":{\"order\":{\"orderStatus\":\"X\"}}}}",
+            "{\"methodName\":\"hello\",\"messageBody\":{\"map\":{\"user\":{\"id\":\"x\"}}}}",
+            "{\"methodName\":\"hello\"",
+            "hello"
+    };
+
+    @Test()
+    public void _01malformedHelloOverNio() throws Exception {
+        malformedHello(ServerConfig.MODE_NIO);
+    }
+
+    @Test()
+    public void _02malformedHelloOverBlockingSockets() throws Exception {
+        malformedHello(ServerConfig.MODE_BLOCKING);
+    }
+
+    @Test()
+    public void _03malformedRequestsAfterHello() throws Exception {
+
+        for (String mode : new String[]{ServerConfig.MODE_NIO, ServerConfig.MODE_BLOCKING}) {
+            LocalServer server = new LocalServer(mode).start();
+            try (WireClient client = new WireClient(server.connect())) {
+                client.hello("binary", Protocol.VERSION_2, "none");
+
+                client.send("{\"requestId\":1,\"methodName\":\"getOrderInfo\","
+                        + "\"messageBody\":{\"map\":{\"order\":{\"id\":\"x\"}}}}");
+                client.send("not json");
+                client.send("{\"requestId\":2,\"methodName\":\"batch\",\"batch\":[null]}");
+                client.send("{\"methodName\":\"batch\",\"batch\":[null]}");
+
+                //unreadable lines are dropped, the failed batches are answered with errors in any order
+                String first = client.read();
+                String second = client.read();
+                String untagged = first.startsWith("java.lang.") ? first : second;
+                Message tagged = WireClient.parse(first.startsWith("java.lang.") ? second : first);
+                Assert.assertTrue(mode + " " + untagged, untagged.startsWith("java.lang."));
+                Assert.assertEquals(mode, 2L, (long) tagged.getRequestId());
+                Assert.assertNotNull(mode, tagged.getError());
+
+                Assert.assertEquals(mode, 3L, (long) client.request(3L, Protocol.PING).getRequestId());
+                Assert.assertNull(mode, client.request(null, Protocol.PING).getError());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    //one connection sends a broken hello, it and the other connections of the loop go on
+    private static void malformedHello(String mode) throws Exception {
+
+        LocalServer server = new LocalServer(mode).start();
+        try (WireClient other = new WireClient(server.connect())) {
+            other.hello("line", Protocol.VERSION_2, "none");
+
+            for (String hello : MALFORMED) {
+                try (WireClient client = new WireClient(server.connect())) {
+                    client.send(hello);
+
+                    //not answered, the connection stays in line framing
+                    Message pong = client.request(7L, Protocol.PING);
+                    Assert.assertEquals(hello, 7L, (long) pong.getRequestId());
+                    Assert.assertNull(hello, pong.getError());
+                }
+
+                Assert.assertEquals(hello, 8L, (long) other.request(8L, Protocol.PING).getRequestId());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ua.artcode.taxi.run;
+
+import com.google.gson.Gson;
+import ua.artcode.taxi.to.FrameCodec;
+import ua.artcode.taxi.to.FrameCompression;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.MessageBody;
+import ua.artcode.taxi.to.Protocol;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Map;
+
+/**
+ * Raw client of the wire protocol: writes the given json as it is and
+ * reads back whatever the server sends, in the framing agreed by hello.
+ */
+public class WireClient implements Closeable {
+
+    private static final Gson GSON = Protocol.createGson();
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final FrameCodec codec = new FrameCodec();
+    private boolean binary;
+
+    public WireClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = socket.getOutputStream();
+    }
+
+    //the body the server agreed on
+    public Map<String, Object> hello(String framing, int version, String compression) throws IOException {
+
+        Message hello = new Message(FrameCodec.HELLO, new MessageBody());
+        hello.getMessageBody().getMap().put("framing", framing);
+        hello.getMessageBody().getMap().put("version", version);
+        hello.getMessageBody().getMap().put("compression", compression);
+        send(GSON.toJson(hello));
+
+        Map<String, Object> agreed = readMessage().getMessageBody().getMap();
+        binary = FrameCodec.FRAMING_BINARY.equals(agreed.get("framing"));
+        if (FrameCompression.isSupported(String.valueOf(agreed.get("compression")))) {
+            codec.setCompression(new FrameCompression(agreed.get("compression").toString(), Integer.MAX_VALUE));
+        }
+        return agreed;
+    }
+
+    public void send(String json) throws IOException {
+        FrameCodec.write(out, json, binary);
+    }
+
+    public void send(Message message) throws IOException {
+        send(GSON.toJson(message));
+    }
+
+    public Message request(Long requestId, String methodName, Object... keysAndValues) throws IOException {
+        send(message(requestId, methodName, keysAndValues));
+        return readMessage();
+    }
+
+    // null when the server has closed the connection
+    public String read() throws IOException {
+        return binary ? codec.readFrame(in) : codec.readLine(in);
+    }
+
+    public Message readMessage() throws IOException {
+        String json = read();
+        if (json == null) {
+            throw new IOException("Connection is closed by the server");
+        }
+        return parse(json);
+    }
+
+    public static Message parse(String json) {
+        return GSON.fromJson(json, Message.class);
+    }
+
+    public boolean isClosedByServer() throws IOException {
+        try {
+            return in.read() < 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static Message message(Long requestId, String methodName, Object... keysAndValues) {
+        Message message = new Message(methodName, new MessageBody());
+        message.setRequestId(requestId);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            message.getMessageBody().getMap().put(keysAndValues[i].toString(), keysAndValues[i + 1]);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,99 @@
+package ua.artcode.taxi.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.metrics.Metrics;
+import ua.artcode.taxi.metrics.OperationStats;
+import ua.artcode.taxi.run.LocalServer;
+import ua.artcode.taxi.run.WireClient;
+import ua.artcode.taxi.service.UserServiceImpl;
+import ua.artcode.taxi.to.Protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+public class TestAdminServer {
+
+    @Test()
+    public void _01metricsOfCommandsAndConnections() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        AdminServer admin = admin(server, LocalServer.config(ServerConfig.MODE_NIO), metrics());
+        try (WireClient client = new WireClient(server.connect())) {
+            client.request(1L, Protocol.PING);
+
+            String metrics = get(admin, "/metrics", 200);
+            Assert.assertTrue(metrics, metrics.contains("taxi_command_seconds_count{name=\"getOrderInfo\"} 2\n"));
+            Assert.assertTrue(metrics, metrics.contains("taxi_command_errors_total{name=\"getOrderInfo\"} 1\n"));
+            Assert.assertTrue(metrics, metrics.contains("taxi_connections_open 1\n"));
+            Assert.assertTrue(metrics, metrics.contains("taxi_feed_subscriptions 0\n"));
+        } finally {
+            admin.stop();
+            server.stop();
+        }
+    }
+
+    @Test()
+    public void _02readyOnlyWithFreeSlots() throws Exception {
+
+        ServerConfig config = LocalServer.config(ServerConfig.MODE_NIO);
+        config.setMaxConnections(1);
+
+        LocalServer server = new LocalServer(config).start();
+        AdminServer admin = admin(server, config, new Metrics());
+        try {
+            //not ready until the client port is bound
+            Assert.assertTrue(get(admin, "/ready", 503).contains("\"ready\":false"));
+            Assert.assertTrue(get(admin, "/health", 200).contains("\"status\":\"UP\""));
+
+            admin.setReady(true);
+            Assert.assertTrue(get(admin, "/ready", 200).contains("\"ready\":true"));
+
+            try (WireClient client = new WireClient(server.connect())) {
+                client.request(2L, Protocol.PING);
+                Assert.assertTrue(get(admin, "/ready", 503).contains("\"connections\":1"));
+            }
+        } finally {
+            admin.stop();
+            server.stop();
+        }
+    }
+
+    private static AdminServer admin(LocalServer server, ServerConfig config, Metrics metrics) throws IOException {
+        config.setAdminPort(0);
+        AdminServer admin = new AdminServer(config, metrics, server.getAppDB(),
+                (UserServiceImpl) server.getUserService(), server.getConnectionManager(), server.getOrderFeed(),
+                Protocol.createGson());
+        admin.start();
+        return admin;
+    }
+
+    private static Metrics metrics() {
+        Metrics metrics = new Metrics();
+        OperationStats stats = metrics.get(Metrics.COMMAND + "getOrderInfo");
+        stats.stop(stats.start(), false);
+        stats.stop(stats.start(), true);
+        return metrics;
+    }
+
+    private static String get(AdminServer admin, String path, int status) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + admin.getPort() + path).openConnection();
+        try {
+            Assert.assertEquals(path, status, connection.getResponseCode());
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
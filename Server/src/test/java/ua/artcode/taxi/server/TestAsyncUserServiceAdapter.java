@@ -0,0 +1,85 @@
+package ua.artcode.taxi.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.exception.ServerBusyException;
+import ua.artcode.taxi.service.UserService;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestAsyncUserServiceAdapter {
+
+    @Test()
+    public void _01geoPoolWithoutQueue() throws Exception {
+        Assert.assertEquals("[ok, busy, ok]", calculate(0, 2));
+    }
+
+    @Test()
+    public void _02geoPoolQueuesUpToTheDepth() throws Exception {
+        Assert.assertEquals("[ok, ok, ok, busy, ok]", calculate(2, 4));
+    }
+
+    //one geo thread waits until the calls are made, then the pool takes calls again
+    private static String calculate(int queueDepth, int calls) throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        UserService userService = (UserService) Proxy.newProxyInstance(UserService.class.getClassLoader(),
+                new Class<?>[]{UserService.class}, (proxy, method, args) -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return Collections.emptyMap();
+                });
+
+        ServerConfig config = new ServerConfig();
+        config.setGeoThreads(1);
+        config.setRequestQueueDepth(queueDepth);
+        AsyncUserServiceAdapter adapter = new AsyncUserServiceAdapter(userService, config);
+
+        try {
+            List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                results.add(adapter.calculateOrder("from", "to"));
+            }
+            release.countDown();
+            for (CompletableFuture<Map<String, Object>> result : results) {
+                result.handle((map, e) -> null).get(5, TimeUnit.SECONDS);
+            }
+            results.add(afterRelease(adapter));
+
+            List<String> outcomes = new ArrayList<>();
+            for (CompletableFuture<Map<String, Object>> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    outcomes.add("ok");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof ServerBusyException);
+                    outcomes.add("busy");
+                }
+            }
+            return outcomes.toString();
+
+        } finally {
+            adapter.shutdown();
+        }
+    }
+
+    //the freed thread takes a moment to wait for work again
+    private static CompletableFuture<Map<String, Object>> afterRelease(AsyncUserServiceAdapter adapter)
+                                                                            throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            CompletableFuture<Map<String, Object>> result = adapter.calculateOrder("from", "to");
+            if (!result.isCompletedExceptionally() || System.currentTimeMillis() > deadline) {
+                return result;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
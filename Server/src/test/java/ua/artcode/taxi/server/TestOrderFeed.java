@@ -0,0 +1,107 @@
+package ua.artcode.taxi.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.run.LocalServer;
+import ua.artcode.taxi.run.WireClient;
+import ua.artcode.taxi.service.UserService;
+import ua.artcode.taxi.to.Message;
+import ua.artcode.taxi.to.Protocol;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestOrderFeed {
+
+    private static final String FROM = "Ukraine Kiev Khreschatik 5";
+    private static final String TO = "Ukraine Kiev Zhukova 51";
+
+    @Test()
+    public void _01onlyDriversSubscribe() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+            client.hello("binary", Protocol.VERSION_2, "none");
+            String passenger = passenger(server.getUserService());
+
+            Message anonymous = client.request(1L, Protocol.SUBSCRIBE_NEW_ORDERS, "addressDriver", FROM, "radius", 50);
+            Assert.assertTrue(anonymous.getError(), anonymous.getError().contains("DriverNotFoundException"));
+
+            Message byPassenger = client.request(2L, Protocol.SUBSCRIBE_NEW_ORDERS, "accessToken", passenger,
+                    "addressDriver", FROM, "radius", 50);
+            Assert.assertTrue(byPassenger.getError(), byPassenger.getError().contains("DriverNotFoundException"));
+
+            Assert.assertEquals(0, server.getOrderFeed().getSubscriptionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test()
+    @SuppressWarnings("unchecked")
+    public void _02addedTakenAndCancelledEvents() throws Exception {
+
+        LocalServer server = new LocalServer(ServerConfig.MODE_NIO).start();
+        try (WireClient client = new WireClient(server.connect())) {
+            client.hello("binary", Protocol.VERSION_2, "none");
+
+            UserService userService = server.getUserService();
+            String passenger = passenger(userService);
+            String driver = driver(userService);
+
+            Order before = userService.makeOrder(passenger, FROM, TO, "before");
+
+            //the whole stub map is less than 30 km across
+            Message subscribed = client.request(1L, Protocol.SUBSCRIBE_NEW_ORDERS, "accessToken", driver,
+                    "addressDriver", TO, "radius", 50);
+            Assert.assertNull(subscribed.getError());
+            List<Order> orders = (List<Order>) subscribed.getMessageBody().getMap().get(Protocol.ORDERS);
+            Assert.assertEquals(1, orders.size());
+            Assert.assertEquals(before.getId(), orders.get(0).getId());
+
+            Order after = userService.makeOrder(passenger, TO, FROM, "after");
+            assertEvent(client.readMessage(), Protocol.ORDER_ADDED, after);
+
+            userService.takeOrder(driver, before.getId());
+            assertEvent(client.readMessage(), Protocol.ORDER_TAKEN, before);
+
+            userService.cancelOrder(after.getId());
+            assertEvent(client.readMessage(), Protocol.ORDER_CANCELLED, after);
+
+            Assert.assertNull(client.request(2L, Protocol.UNSUBSCRIBE_NEW_ORDERS).getError());
+            Assert.assertEquals(0, server.getOrderFeed().getSubscriptionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void assertEvent(Message event, String name, Order order) {
+        Assert.assertEquals(name, event.getMethodName());
+        Assert.assertNull(event.getRequestId());
+        Assert.assertEquals(order.getId(), ((Order) event.getMessageBody().getMap().get(Protocol.ORDER)).getId());
+    }
+
+    private static String passenger(UserService userService) throws Exception {
+        Map<String, String> map = new HashMap<>();
+        map.put("phone", "0501112233");
+        map.put("pass", "feed");
+        map.put("name", "Passenger");
+        map.put("homeAddress", FROM);
+        userService.registerPassenger(map);
+        return userService.login(map.get("phone"), map.get("pass"));
+    }
+
+    private static String driver(UserService userService) throws Exception {
+        Map<String, String> map = new HashMap<>();
+        map.put("phone", "0504445566");
+        map.put("pass", "feed");
+        map.put("name", "Driver");
+        map.put("carType", "sedan");
+        map.put("carModel", "skoda");
+        map.put("carNumber", "AA1111");
+        userService.registerDriver(map);
+        return userService.login(map.get("phone"), map.get("pass"));
+    }
+}
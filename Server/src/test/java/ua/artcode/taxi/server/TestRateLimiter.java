@@ -0,0 +1,105 @@
+package ua.artcode.taxi.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.exception.RateLimitedException;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+public class TestRateLimiter {
+
+    private static final long NOW = 1_000_000_000L;
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test()
+    public void _01burstThenWait() {
+
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(new RateLimiter.Limit(10, 3), NOW);
+
+        Assert.assertEquals(0, bucket.take(NOW));
+        Assert.assertEquals(0, bucket.take(NOW));
+        Assert.assertEquals(0, bucket.take(NOW));
+        Assert.assertEquals(INTERVAL, bucket.take(NOW));
+
+        //a refused request does not move the bucket
+        Assert.assertEquals(INTERVAL - 1, bucket.take(NOW + 1));
+    }
+
+    @Test()
+    public void _02permitComesBackAfterTheInterval() {
+
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(new RateLimiter.Limit(10, 3), NOW);
+        for (int i = 0; i < 3; i++) {
+            bucket.take(NOW);
+        }
+
+        Assert.assertEquals(0, bucket.take(NOW + INTERVAL));
+        Assert.assertEquals(INTERVAL, bucket.take(NOW + INTERVAL));
+
+        //an idle bucket fills up to the burst, not above
+        long later = NOW + TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, bucket.take(later));
+        }
+        Assert.assertEquals(INTERVAL, bucket.take(later));
+    }
+
+    @Test()
+    public void _03fullSince() {
+
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(new RateLimiter.Limit(10, 3), NOW);
+        Assert.assertTrue(bucket.isFullSince(NOW));
+
+        bucket.take(NOW);
+        bucket.take(NOW);
+        Assert.assertFalse(bucket.isFullSince(NOW));
+        Assert.assertFalse(bucket.isFullSince(NOW + 2 * INTERVAL - 1));
+        Assert.assertTrue(bucket.isFullSince(NOW + 2 * INTERVAL));
+    }
+
+    @Test()
+    public void _04wrongLimits() {
+
+        for (String limits : new String[]{"calculateOrder=0:10", "calculateOrder=2:0", "calculateOrder=2",
+                "calculateOrder", "calculateOrder=-1:3"}) {
+            try {
+                RateLimiter.parse(limits);
+                Assert.fail("Limits " + limits + " are accepted");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+
+        Assert.assertEquals(2, RateLimiter.parse(" calculateOrder=2:10, makeOrder=0.5:1 ").size());
+        Assert.assertEquals(0, RateLimiter.parse("").size());
+    }
+
+    @Test()
+    public void _05addressAndTokenAreCheckedApart() throws Exception {
+
+        RateLimiter limiter = new RateLimiter("calculateOrder=1:2", 60000);
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+
+        limiter.acquire("calculateOrder", address, "a");
+        limiter.acquire("calculateOrder", address, "b");
+        try {
+            limiter.acquire("calculateOrder", address, "c");
+            Assert.fail("The address is over its limit");
+        } catch (RateLimitedException e) {
+            Assert.assertEquals("calculateOrder", e.getMethodName());
+            Assert.assertTrue(e.getRetryAfterMs() > 0 && e.getRetryAfterMs() <= 1000);
+        }
+
+        //the refused request did not cost a permit of the token
+        limiter.acquire("calculateOrder", null, "c");
+        limiter.acquire("calculateOrder", null, "c");
+
+        //methods without a limit are never checked
+        Assert.assertFalse(limiter.isLimited("login"));
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("login", address, "a");
+        }
+        Assert.assertEquals(4, limiter.getBucketCount());
+    }
+}
@@ -0,0 +1,167 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Address;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestFrameCodec {
+
+    private static final Gson GSON = Protocol.createGson();
+
+    @Test()
+    public void _01ordersComeBackTyped() throws Exception {
+
+        for (boolean binary : new boolean[]{false, true}) {
+            ByteBuffer encoded = FrameCodec.encode(GSON, ordersMessage(3), binary);
+            FrameCodec codec = new FrameCodec();
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes(encoded));
+
+            String json = binary ? codec.readFrame(in) : codec.readLine(in);
+            Message message = GSON.fromJson(json, Message.class);
+
+            Assert.assertEquals(7L, (long) message.getRequestId());
+            List<?> orders = (List<?>) message.getMessageBody().getMap().get(Protocol.ORDERS);
+            Assert.assertEquals(3, orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = (Order) orders.get(i);
+                Assert.assertEquals(i + 1, order.getId());
+                Assert.assertEquals(OrderStatus.NEW, order.getOrderStatus());
+                Assert.assertEquals("Kiev", order.getFrom().getCity());
+                Assert.assertEquals(50.45, order.getFrom().getLat(), 0);
+            }
+
+            Assert.assertNull(binary ? codec.readFrame(in) : codec.readLine(in));
+        }
+    }
+
+    @Test()
+    public void _02distancesKeepTheirOrder() throws Exception {
+
+        Map<Integer, Order> distances = new LinkedHashMap<>();
+        distances.put(12, order(2));
+        distances.put(3, order(1));
+        MessageBody body = new MessageBody();
+        body.getMap().put(Protocol.DISTANCES, distances);
+        body.getMap().put("count", 2);
+
+        String json = new FrameCodec().readFrame(new ByteArrayInputStream(
+                bytes(FrameCodec.encode(GSON, body, true))));
+        MessageBody read = GSON.fromJson(json, MessageBody.class);
+
+        Map<?, ?> readDistances = (Map<?, ?>) read.getMap().get(Protocol.DISTANCES);
+        Assert.assertEquals("[12, 3]", readDistances.keySet().toString());
+        Assert.assertEquals(2, ((Order) readDistances.get(12)).getId());
+        //values without a type are read as before, numbers as doubles
+        Assert.assertEquals(2.0, read.getMap().get("count"));
+    }
+
+    @Test()
+    public void _03framesOfOneStream() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FrameCodec.write(out, "{\"a\":1}", true);
+        FrameCodec.write(out, "", true);
+        FrameCodec.write(out, "{\"b\":\"\u0436\"}", true);
+
+        FrameCodec codec = new FrameCodec();
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        Assert.assertEquals("{\"a\":1}", codec.readFrame(in));
+        Assert.assertEquals("", codec.readFrame(in));
+        Assert.assertEquals("{\"b\":\"\u0436\"}", codec.readFrame(in));
+        Assert.assertNull(codec.readFrame(in));
+    }
+
+    @Test()
+    public void _04linesWithCarriageReturns() throws Exception {
+
+        FrameCodec codec = new FrameCodec();
+        ByteArrayInputStream in = new ByteArrayInputStream("first\r\nsecond\nlast".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals("first", codec.readLine(in));
+        Assert.assertEquals("second", codec.readLine(in));
+        Assert.assertEquals("last", codec.readLine(in));
+        Assert.assertNull(codec.readLine(in));
+    }
+
+    @Test()
+    public void _05framesSplitOverReads() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            FrameCodec.write(out, FrameCodec.encode(GSON, ordersMessage(100), true));
+        }
+        byte[] stream = out.toByteArray();
+
+        //one byte at a time and one large read give the same messages
+        for (int chunk : new int[]{1, 7, stream.length}) {
+            FrameCodec codec = new FrameCodec();
+            List<String> messages = new ArrayList<>();
+            for (int offset = 0; offset < stream.length; offset += chunk) {
+                ByteBuffer in = ByteBuffer.wrap(stream, offset, Math.min(chunk, stream.length - offset));
+                codec.decodeFrames(in, messages::add, () -> true);
+            }
+
+            Assert.assertEquals(3, messages.size());
+            Message message = GSON.fromJson(messages.get(2), Message.class);
+            Assert.assertEquals(100, ((List<?>) message.getMessageBody().getMap().get(Protocol.ORDERS)).size());
+        }
+    }
+
+    @Test()
+    public void _06wrongFrameLength() throws Exception {
+
+        ByteBuffer frame = ByteBuffer.allocate(FrameCodec.HEADER_SIZE);
+        frame.putInt(FrameCodec.MAX_FRAME_SIZE + 1);
+        try {
+            new FrameCodec().readFrame(new ByteArrayInputStream(frame.array()));
+            Assert.fail("Frame over the maximum size is read");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    static Message ordersMessage(int count) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            orders.add(order(i));
+        }
+
+        MessageBody body = new MessageBody();
+        body.getMap().put(Protocol.ORDERS, orders);
+        Message message = new Message();
+        message.setRequestId(7L);
+        message.setMessageBody(body);
+        return message;
+    }
+
+    static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static Order order(long id) {
+        Address from = new Address("Ukraine", "Kiev", "Khreschatik", "1");
+        from.setLat(50.45);
+        from.setLon(30.52);
+        Order order = new Order(from, new Address("Ukraine", "Kiev", "Khreschatik", "" + id));
+        order.setId(id);
+        order.setOrderStatus(OrderStatus.NEW);
+        order.setPrice(100);
+        order.setMessage("order " + id);
+        return order;
+    }
+}
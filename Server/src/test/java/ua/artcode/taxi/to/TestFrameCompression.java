@@ -0,0 +1,94 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static ua.artcode.taxi.to.TestFrameCodec.bytes;
+import static ua.artcode.taxi.to.TestFrameCodec.ordersMessage;
+
+public class TestFrameCompression {
+
+    private static final Gson GSON = Protocol.createGson();
+
+    @Test()
+    public void _01roundTrip() throws Exception {
+
+        for (String algorithm : new String[]{FrameCompression.DEFLATE, FrameCompression.GZIP}) {
+            ByteBuffer frame = FrameCodec.encode(GSON, ordersMessage(50), true);
+            String json = new FrameCodec().readFrame(new ByteArrayInputStream(bytes(frame)));
+
+            ByteBuffer compressed = new FrameCompression(algorithm, 256).compress(frame);
+            Assert.assertEquals(FrameCompression.FLAG_COMPRESSED, compressed.get(4));
+            Assert.assertTrue(algorithm, compressed.remaining() < frame.remaining() / 2);
+
+            FrameCodec codec = new FrameCodec();
+            codec.setCompression(new FrameCompression(algorithm, 256));
+            Assert.assertEquals(algorithm, json, codec.readFrame(new ByteArrayInputStream(bytes(compressed))));
+        }
+    }
+
+    @Test()
+    public void _02smallFramesAreNotCompressed() throws Exception {
+
+        ByteBuffer frame = FrameCodec.encodeFrame("{\"methodName\":\"ping\"}");
+        Assert.assertSame(frame, new FrameCompression(FrameCompression.GZIP, 256).compress(frame));
+
+        //a frame which does not get smaller is sent as it is
+        ByteBuffer tiny = FrameCodec.encodeFrame("{}");
+        Assert.assertSame(tiny, new FrameCompression(FrameCompression.DEFLATE, 0).compress(tiny));
+    }
+
+    @Test()
+    public void _03oneCompressionForManyFrames() throws Exception {
+
+        FrameCompression writer = new FrameCompression(FrameCompression.GZIP, 64);
+        FrameCodec codec = new FrameCodec();
+        codec.setCompression(new FrameCompression(FrameCompression.GZIP, 64));
+
+        for (int count = 1; count <= 20; count++) {
+            ByteBuffer compressed = writer.compress(FrameCodec.encode(GSON, ordersMessage(count), true));
+            Message message = GSON.fromJson(codec.readFrame(new ByteArrayInputStream(bytes(compressed))), Message.class);
+            Assert.assertEquals(count, ((List<?>) message.getMessageBody().getMap().get(Protocol.ORDERS)).size());
+        }
+    }
+
+    @Test()
+    public void _04wrongFrames() throws Exception {
+
+        ByteBuffer compressed = new FrameCompression(FrameCompression.GZIP, 0)
+                .compress(FrameCodec.encode(GSON, ordersMessage(10), true));
+
+        //a compressed frame on a connection which did not agree on compression
+        try {
+            new FrameCodec().readFrame(new ByteArrayInputStream(bytes(compressed)));
+            Assert.fail("Compressed frame is read without compression");
+        } catch (IOException e) {
+            //expected
+        }
+
+        //a broken checksum
+        byte[] broken = bytes(compressed);
+        broken[broken.length - 5] ^= 1;
+        FrameCodec codec = new FrameCodec();
+        codec.setCompression(new FrameCompression(FrameCompression.GZIP, 0));
+        try {
+            codec.readFrame(new ByteArrayInputStream(broken));
+            Assert.fail("Gzip frame with a wrong checksum is read");
+        } catch (IOException e) {
+            //expected
+        }
+
+        try {
+            new FrameCompression("brotli", 0);
+            Assert.fail("Unknown compression is made");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
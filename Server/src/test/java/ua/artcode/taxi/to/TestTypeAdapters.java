@@ -0,0 +1,61 @@
+package ua.artcode.taxi.to;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Assert;
+import org.junit.Test;
+import ua.artcode.taxi.model.Order;
+import ua.artcode.taxi.model.OrderStatus;
+import ua.artcode.taxi.model.User;
+import ua.artcode.taxi.model.UserIdentifier;
+
+public class TestTypeAdapters {
+
+    private static final Gson GSON = Protocol.createGson();
+
+    @Test()
+    public void _01wrongValuesAreJsonErrors() {
+
+        String[] bodies = {
+                "{\"order\":{\"orderStatus\":\"BOGUS\"}}",
+                "{\"order\":{\"id\":\"x\"}}",
+                "{\"order\":{\"price\":1.5}}",
+                "{\"order\":{\"from\":{\"lat\":\"north\"}}}",
+                "{\"order\":{\"passenger\":{\"identifier\":\"X\"}}}",
+                "{\"user\":{\"id\":\"x\"}}",
+                "{\"user\":{\"orderIds\":[1,\"two\"]}}",
+                "{\"user\":{\"car\":5}}",
+                "{\"orders\":[{\"version\":\"new\"}]}",
+                "{\"distances\":[{\"distance\":\"far\"}]}"
+        };
+
+        for (String body : bodies) {
+            String line = "{\"methodName\":\"hello\",\"messageBody\":{\"map\":" + body + "}}";
+            try {
+                GSON.fromJson(line, Message.class);
+                Assert.fail("Body " + body + " is read");
+            } catch (JsonSyntaxException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test()
+    public void _02rightValuesAreRead() {
+
+        String line = "{\"requestId\":3,\"messageBody\":{\"map\":{"
+                + "\"order\":{\"id\":\"12\",\"orderStatus\":\"DONE\",\"price\":100,\"from\":{\"lat\":\"50.5\"}},"
+                + "\"user\":{\"id\":4,\"identifier\":\"D\",\"orderIds\":[12]}}}}";
+
+        Message message = GSON.fromJson(line, Message.class);
+
+        Order order = (Order) message.getMessageBody().getMap().get(Protocol.ORDER);
+        Assert.assertEquals(12, order.getId());
+        Assert.assertEquals(OrderStatus.DONE, order.getOrderStatus());
+        Assert.assertEquals(50.5, order.getFrom().getLat(), 0);
+
+        User user = (User) message.getMessageBody().getMap().get(Protocol.USER);
+        Assert.assertEquals(UserIdentifier.D, user.getIdentifier());
+        Assert.assertEquals(12L, (long) user.getOrderIds().get(0));
+    }
+}